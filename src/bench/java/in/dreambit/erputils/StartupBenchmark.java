@@ -0,0 +1,113 @@
+/**
+ *
+ */
+package in.dreambit.erputils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import in.dreambit.erputils.bank.SBBJConnect;
+import in.dreambit.erputils.fake.FakeSbbjServer;
+
+/**
+ * Wall time of complete CLI runs, one fresh process per run, as a cron job
+ * pays it: the plain jar, the jar with the class data sharing archive of the
+ * <code>faststart</code> profile and the executable of the <code>native</code>
+ * profile, each when built. Every run logs in against a local
+ * {@link FakeSbbjServer}, so the network adds next to nothing.
+ *
+ * Run after packaging, e.g.
+ * <code>mvn -Pfaststart,bench verify -Dbench.main=in.dreambit.erputils.StartupBenchmark -Djmh.args="-runs 20"</code>
+ *
+ */
+public class StartupBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int runs = 10;
+		String target = "target";
+		for (int i = 0; i + 1 < args.length; i++) {
+			switch (args[i]) {
+			case "-runs":
+				runs = Integer.parseInt(args[i + 1]);
+				break;
+			case "-target":
+				target = args[i + 1];
+				break;
+			default:
+				break;
+			}
+		}
+
+		File jar = new File(target, "sbbjutils.jar");
+		File archive = new File(target, "sbbjutils.jsa");
+		File executable = new File(target, "sbbjutils");
+		if (!jar.isFile()) {
+			throw new IllegalStateException("Package the project first, missing " + jar);
+		}
+
+		FakeSbbjServer server = new FakeSbbjServer(0);
+		server.addUser("corp01", "password", "61012345678", "10372");
+		server.start();
+		File output = File.createTempFile("sbbj-startup", ".out");
+		output.deleteOnExit();
+		try {
+			String java = new File(System.getProperty("java.home"), "bin/java").getPath();
+			List<String> properties = Arrays.asList(
+					"-D" + SBBJConnect.CORP_BASE_URL_PROPERTY + "=" + server.corpBaseUrl(),
+					"-D" + SBBJConnect.RETAIL_BASE_URL_PROPERTY + "=" + server.retailBaseUrl());
+
+			List<String> plain = new ArrayList<>(Arrays.asList(java));
+			plain.addAll(properties);
+			plain.addAll(Arrays.asList("-jar", jar.getPath()));
+			measure("jar", plain, output, runs);
+
+			if (archive.isFile()) {
+				List<String> cds = new ArrayList<>(Arrays.asList(java, "-XX:SharedArchiveFile=" + archive.getPath()));
+				cds.addAll(properties);
+				cds.addAll(Arrays.asList("-jar", jar.getPath()));
+				measure("jar + AppCDS", cds, output, runs);
+			}
+
+			if (executable.canExecute()) {
+				List<String> image = new ArrayList<>(Arrays.asList(executable.getPath()));
+				image.addAll(properties);
+				measure("native image", image, output, runs);
+			}
+		} finally {
+			server.stop();
+		}
+	}
+
+	private static void measure(String name, List<String> command, File output, int runs) throws Exception {
+		List<String> run = new ArrayList<>(command);
+		run.addAll(Arrays.asList("-username", "corp01", "-password", "password", "-type", "CURRENT", "-output",
+				"json", "-log", output.getPath() + ".log"));
+		new File(output.getPath() + ".log").deleteOnExit();
+
+		// the first run only warms the page cache
+		launch(run, output);
+		long[] millis = new long[runs];
+		for (int i = 0; i < runs; i++) {
+			long start = System.nanoTime();
+			launch(run, output);
+			millis[i] = (System.nanoTime() - start) / 1000000;
+		}
+		Arrays.sort(millis);
+		long total = 0;
+		for (long value : millis) {
+			total += value;
+		}
+		System.out.printf("%-14s runs: %3d  min: %5d ms  median: %5d ms  mean: %5d ms%n", name, runs, millis[0],
+				millis[runs / 2], total / runs);
+	}
+
+	private static void launch(List<String> command, File output) throws Exception {
+		Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(output).start();
+		int exitCode = process.waitFor();
+		if (exitCode != 0) {
+			throw new IllegalStateException(command.get(0) + " exited with " + exitCode + ", see " + output);
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/**
+ *
+ */
+package in.dreambit.erputils.bank;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Key detail and transaction output of {@link SBBJConnect} to files, in each
+ * output type.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OutputBenchmark {
+
+	@Param({ "json", "text", "ndjson", "csv" })
+	public String type;
+
+	private SBBJConnect sbbjConnect;
+
+	private Path directory;
+
+	private String keyFile;
+
+	private String txFile;
+
+	@Setup
+	public void setUp() throws IOException {
+		sbbjConnect = new SBBJConnect();
+		sbbjConnect.apply(QuicklookParser
+				.parse(new StringReader(SBBJConnectBenchmark.fixture("/sbbj/quicklook/corporate.html"))));
+
+		directory = Files.createTempDirectory("sbbj-bench");
+		keyFile = directory.resolve("key").toString();
+		txFile = directory.resolve("tx").toString();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(directory.resolve("key"));
+		Files.deleteIfExists(directory.resolve("tx"));
+		Files.deleteIfExists(directory);
+	}
+
+	@Benchmark
+	public void keyDetails() throws IOException {
+		sbbjConnect.writeKeyDetails(keyFile, type, false);
+	}
+
+	@Benchmark
+	public void transactionDetails() throws IOException {
+		sbbjConnect.writeTransactionDetails(txFile, type, false);
+	}
+}
@@ -0,0 +1,131 @@
+/**
+ *
+ */
+package in.dreambit.erputils.bank;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Login crypto and page parsing of {@link SBBJConnect}, on the captured
+ * fixtures.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SBBJConnectBenchmark {
+
+	private static final String SHA_KEY = "6f1ed002ab5595859014ebf0951522d9";
+
+	private static final char[] PASSWORD = "Secret@123".toCharArray();
+
+	private SBBJConnect sbbjConnect;
+
+	private String loginHtml;
+
+	private String homeHtml;
+
+	private String statementHtml;
+
+	private Document loginPage;
+
+	private Document homePage;
+
+	private Document statementPage;
+
+	static String fixture(String name) throws IOException {
+		try (InputStream stream = SBBJConnectBenchmark.class.getResourceAsStream(name)) {
+			return IOUtils.toString(stream, StandardCharsets.UTF_8);
+		}
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+		sbbjConnect = new SBBJConnect();
+		loginHtml = fixture("/sbbj/login.html");
+		homeHtml = fixture("/sbbj/home.html");
+		statementHtml = fixture("/sbbj/quicklook/corporate.html");
+		loginPage = Jsoup.parse(loginHtml);
+		homePage = Jsoup.parse(homeHtml);
+		statementPage = Jsoup.parse(statementHtml);
+	}
+
+	@Benchmark
+	public String encryptedPassword() {
+		return sbbjConnect.getEncryptedPassword(SHA_KEY, "acme01", PASSWORD);
+	}
+
+	@Benchmark
+	public String encryptedHash() {
+		return sbbjConnect.getEncryptedHash(SHA_KEY, "acme01", PASSWORD);
+	}
+
+	@Benchmark
+	public String keyFromLoginPage() {
+		return sbbjConnect.getKeyFromLoginPage(loginPage);
+	}
+
+	@Benchmark
+	public String keyFromLoginHtml() {
+		return sbbjConnect.getKeyFromLoginPage(Jsoup.parse(loginHtml));
+	}
+
+	@Benchmark
+	public String shaKey() {
+		return sbbjConnect.getSHAKey("return submitLoginSha('" + SHA_KEY + "');");
+	}
+
+	@Benchmark
+	public String accountNumberAndBranchCode() {
+		sbbjConnect.getAccountNumberAndBranchCode(homePage);
+		return sbbjConnect.getAccountNumber();
+	}
+
+	@Benchmark
+	public String accountNumberFromHomeHtml() {
+		sbbjConnect.getAccountNumberAndBranchCode(Jsoup.parse(homeHtml));
+		return sbbjConnect.getAccountNumber();
+	}
+
+	@Benchmark
+	public QuicklookPage statementParsedDocument() {
+		return QuicklookParser.parse(statementPage);
+	}
+
+	@Benchmark
+	public QuicklookPage statementDom() {
+		return QuicklookParser.parse(Jsoup.parse(statementHtml));
+	}
+
+	@Benchmark
+	public QuicklookPage statementStream() throws IOException {
+		return QuicklookParser.parse(new StringReader(statementHtml));
+	}
+
+	@Benchmark
+	public int statementToTransactions() throws IOException {
+		sbbjConnect.apply(QuicklookParser.parse(new StringReader(statementHtml)));
+		return sbbjConnect.getTransactions().size();
+	}
+}
@@ -0,0 +1,127 @@
+/**
+ *
+ */
+package in.dreambit.erputils.export;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import in.dreambit.erputils.bank.Transaction;
+
+/**
+ * Ingesting a transaction history from the JSON output against the binary
+ * export, and writing both. Sizes of the two files are printed on setup.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExportBenchmark {
+
+	private static final String[] NARRATIONS = { "NEFT/ACME TRADERS", "CASH DEPOSIT", "CHQ CLEARING",
+			"SMS CHARGES", "IMPS/RAMESH KUMAR" };
+
+	private static final TypeReference<List<List<String>>> ROWS = new TypeReference<List<List<String>>>() {
+	};
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	@Param({ "10", "10000" })
+	public int rows;
+
+	private List<List<String>> statement;
+
+	private List<Transaction> transactions;
+
+	private Path directory;
+
+	private Path json;
+
+	private Path binary;
+
+	@Setup
+	public void setUp() throws IOException {
+		statement = new ArrayList<>(rows);
+		long balance = 5000000;
+		for (int i = 0; i < rows; i++) {
+			long amount = 1000 + (i * 7919L) % 2500000;
+			balance -= amount;
+			statement.add(Arrays.asList(String.format("%02d-Sep-2016", 1 + i % 30), NARRATIONS[i % NARRATIONS.length],
+					"REF" + i, rupees(amount), "", rupees(Math.abs(balance)) + (balance < 0 ? " Dr" : "")));
+		}
+		transactions = Transaction.fromRows(statement);
+
+		directory = Files.createTempDirectory("export-bench");
+		json = directory.resolve("tx.json");
+		binary = directory.resolve("tx.sbx");
+		mapper.writeValue(json.toFile(), statement);
+		BinaryExportWriter.write(binary, "61012345678", transactions);
+		System.out.printf("%n%d rows: json %d bytes, binary %d bytes%n", rows, Files.size(json), Files.size(binary));
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(json);
+		Files.deleteIfExists(binary);
+		Files.deleteIfExists(directory);
+	}
+
+	private static String rupees(long paise) {
+		return String.format("%,d.%02d", paise / 100, paise % 100);
+	}
+
+	@Benchmark
+	public long readJson() throws IOException {
+		long total = 0;
+		for (Transaction transaction : Transaction.fromRows(mapper.readValue(json.toFile(), ROWS))) {
+			total += transaction.getDebit();
+		}
+		return total;
+	}
+
+	@Benchmark
+	public long readBinary() throws IOException {
+		long total = 0;
+		try (BinaryExportReader reader = new BinaryExportReader(binary)) {
+			BinaryExportReader.Cursor cursor = reader.cursor();
+			while (cursor.next()) {
+				total += cursor.getDebit();
+			}
+		}
+		return total;
+	}
+
+	@Benchmark
+	public void writeJson() throws IOException {
+		mapper.writeValue(json.toFile(), statement);
+	}
+
+	@Benchmark
+	public void writeBinary() throws IOException {
+		BinaryExportWriter.write(binary, "61012345678", transactions);
+	}
+}
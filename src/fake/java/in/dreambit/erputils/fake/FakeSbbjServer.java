@@ -0,0 +1,500 @@
+/**
+ *
+ */
+package in.dreambit.erputils.fake;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import in.dreambit.erputils.bank.CredentialEncoder;
+import in.dreambit.erputils.bank.SBBJConnect;
+
+/**
+ * Local stand-in for the SBBJ online banking hosts, serving the Corporate
+ * Saral (<code>/saral</code>) and Personal Banking (<code>/retail</code>)
+ * endpoints {@link SBBJConnect} uses, for offline
+ * regression and load tests. Point a connection at {@link #corpBaseUrl()} and
+ * {@link #retailBaseUrl()}.
+ *
+ * Logins are checked against the registered users with the same encoding the
+ * bank's login page applies, and a second login of a user still logged in is
+ * refused like the bank does. With a {@link Recording} set, recorded responses
+ * are replayed instead and credentials are not checked.
+ *
+ */
+public class FakeSbbjServer {
+
+	private static final Logger logger = LogManager.getRootLogger();
+
+	private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd-MMM-yyyy", Locale.ENGLISH);
+
+	private static final String SESSION_COOKIE = "JSESSIONID";
+
+	/**
+	 * A registered user and the account the home page links to.
+	 */
+	public static class FakeUser {
+
+		private final String password;
+
+		/**
+		 * Branch code of every account linked to the login, in home page order
+		 */
+		private final Map<String, String> accounts = new LinkedHashMap<>();
+
+		private boolean passwordExpiring;
+
+		private int transactionCount = 10;
+
+		public FakeUser(String password, String accountNumber, String branchCode) {
+			this.password = password;
+			accounts.put(accountNumber, branchCode);
+		}
+
+		/**
+		 * Links another account to the login, listed on the home page after
+		 * the ones before.
+		 */
+		public FakeUser addAccount(String accountNumber, String branchCode) {
+			accounts.put(accountNumber, branchCode);
+			return this;
+		}
+
+		/**
+		 * @param passwordExpiring
+		 *            whether a login redirects to the password change display
+		 */
+		public FakeUser setPasswordExpiring(boolean passwordExpiring) {
+			this.passwordExpiring = passwordExpiring;
+			return this;
+		}
+
+		/**
+		 * @param transactionCount
+		 *            the number of rows on the statement page
+		 */
+		public FakeUser setTransactionCount(int transactionCount) {
+			this.transactionCount = transactionCount;
+			return this;
+		}
+	}
+
+	private static class Session {
+
+		private final String shaKey = UUID.randomUUID().toString().replace("-", "");
+
+		private volatile String username;
+	}
+
+	private final Map<String, FakeUser> users = new ConcurrentHashMap<>();
+
+	private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+	/**
+	 * Session each logged in user holds
+	 */
+	private final Map<String, String> activeLogins = new ConcurrentHashMap<>();
+
+	private final int port;
+
+	private boolean rejectConcurrentLogins = true;
+
+	private long latencyMillis;
+
+	private String sessionCookieDomain;
+
+	private Map<String, RecordedExchange> replay;
+
+	private HttpServer server;
+
+	private ExecutorService handlers;
+
+	public FakeSbbjServer(int port) {
+		this.port = port;
+	}
+
+	public FakeUser addUser(String username, String password, String accountNumber, String branchCode) {
+		FakeUser user = new FakeUser(password, accountNumber, branchCode);
+		users.put(username, user);
+		return user;
+	}
+
+	/**
+	 * @param rejectConcurrentLogins
+	 *            whether a user still logged in is refused a second login, as
+	 *            the bank does
+	 */
+	public void setRejectConcurrentLogins(boolean rejectConcurrentLogins) {
+		this.rejectConcurrentLogins = rejectConcurrentLogins;
+	}
+
+	/**
+	 * @param latencyMillis
+	 *            delay added to every response, to approximate the bank
+	 */
+	public void setLatencyMillis(long latencyMillis) {
+		this.latencyMillis = latencyMillis;
+	}
+
+	/**
+	 * @param sessionCookieDomain
+	 *            domain the session cookie is set for, one other than the
+	 *            host's is rejected by the client's cookie spec; null for none
+	 */
+	public void setSessionCookieDomain(String sessionCookieDomain) {
+		this.sessionCookieDomain = sessionCookieDomain;
+	}
+
+	/**
+	 * Serves the recorded responses instead of emulating the bank. The last
+	 * exchange recorded for a method and path wins.
+	 */
+	public void setReplay(Recording recording) {
+		Map<String, RecordedExchange> exchanges = new HashMap<>();
+		for (RecordedExchange exchange : recording.getExchanges()) {
+			exchanges.put(exchange.getMethod() + " " + URI.create(exchange.getUrl()).getPath(), exchange);
+		}
+		this.replay = exchanges;
+	}
+
+	public synchronized void start() throws IOException {
+		// headers and body are written separately, without this every response
+		// waits out the client's delayed ACK
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+		handlers = Executors.newFixedThreadPool(16);
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+		server.createContext("/saral/", this::handle);
+		server.createContext("/retail/", this::handle);
+		server.setExecutor(handlers);
+		server.start();
+		logger.info("Fake SBBJ server listening on {}", server.getAddress());
+	}
+
+	public synchronized void stop() {
+		if (server != null) {
+			server.stop(0);
+			handlers.shutdownNow();
+			server = null;
+		}
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	public String corpBaseUrl() {
+		return "http://127.0.0.1:" + getPort() + "/saral";
+	}
+
+	public String retailBaseUrl() {
+		return "http://127.0.0.1:" + getPort() + "/retail";
+	}
+
+	/**
+	 * Forgets every session, as the bank does once they time out.
+	 */
+	public void expireSessions() {
+		sessions.clear();
+		activeLogins.clear();
+	}
+
+	/**
+	 * @return whether the user holds a session that was not logged out
+	 */
+	public boolean isLoggedIn(String username) {
+		return activeLogins.containsKey(username);
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			if (latencyMillis > 0) {
+				Thread.sleep(latencyMillis);
+			}
+
+			String path = exchange.getRequestURI().getPath();
+			int slash = path.indexOf('/', 1);
+			String base = "http://127.0.0.1:" + getPort() + path.substring(0, slash);
+			String page = path.substring(slash + 1);
+
+			if (replay != null) {
+				replay(exchange, path);
+				return;
+			}
+
+			Map<String, String> form = form(exchange);
+			Session session = sessions.get(String.valueOf(cookie(exchange, SESSION_COOKIE)));
+
+			switch (page) {
+			case "login.htm":
+			case "sbbjlogin.htm":
+				if (session == null) {
+					String id = UUID.randomUUID().toString().replace("-", "").toUpperCase(Locale.ENGLISH);
+					session = new Session();
+					sessions.put(id, session);
+					exchange.getResponseHeaders().add("Set-Cookie", SESSION_COOKIE + "=" + id + "; Path=/; HttpOnly"
+							+ (sessionCookieDomain == null ? "" : "; Domain=" + sessionCookieDomain));
+				}
+				send(exchange, 200, loginPage(session.shaKey, ""));
+				break;
+			case "loginsubmit.htm":
+				loginSubmit(exchange, session, form, base);
+				break;
+			case "loginpwdchangedisplay.htm":
+				send(exchange, 200, "<html><body><p>Your password is about to expire.</p></body></html>");
+				break;
+			case "mypage.htm":
+				if (session == null || session.username == null) {
+					send(exchange, 200, loginPage("", "Your session has expired."));
+				} else {
+					send(exchange, 200, homePage(users.get(session.username)));
+				}
+				break;
+			case "quicklook.htm":
+				quicklook(exchange, session, form);
+				break;
+			case "logout.htm":
+				if (session != null) {
+					String sessionId = cookie(exchange, SESSION_COOKIE);
+					if (session.username != null) {
+						activeLogins.remove(session.username, sessionId);
+					}
+					sessions.remove(sessionId);
+				}
+				send(exchange, 200, "<html><body><p>You have been logged out successfully.</p></body></html>");
+				break;
+			default:
+				send(exchange, 404, "<html><body>Not Found</body></html>");
+				break;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			logger.error("ERROR in fake server while serving {}: ", exchange.getRequestURI(), e);
+			if (exchange.getResponseCode() == -1) {
+				send(exchange, 500, "<html><body>Internal Error</body></html>");
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void loginSubmit(HttpExchange exchange, Session session, Map<String, String> form, String base)
+			throws IOException {
+		if (session == null) {
+			send(exchange, 200, loginPage("", "Your session has expired."));
+			return;
+		}
+
+		String username = form.get("userName");
+		FakeUser user = username == null ? null : users.get(username);
+		if (user == null || !credentialsMatch(session.shaKey, username, user, form)) {
+			send(exchange, 200, loginPage(session.shaKey, "Invalid Username or Password"));
+			return;
+		}
+
+		String sessionId = cookie(exchange, SESSION_COOKIE);
+		String holder = activeLogins.putIfAbsent(username, sessionId);
+		if (rejectConcurrentLogins && holder != null && !holder.equals(sessionId)) {
+			send(exchange, 200, loginPage(session.shaKey, " You have already logged in. Please logout first."));
+			return;
+		}
+		activeLogins.put(username, sessionId);
+		session.username = username;
+
+		exchange.getResponseHeaders().set("Location",
+				base + (user.passwordExpiring ? "/loginpwdchangedisplay.htm" : "/mypage.htm"));
+		send(exchange, 302, "<html><body>Redirecting</body></html>");
+	}
+
+	private static boolean credentialsMatch(String shaKey, String username, FakeUser user, Map<String, String> form) {
+		char[] password = user.password.toCharArray();
+		return CredentialEncoder.encryptLoginPassword(shaKey, username, password).equals(form.get("password"))
+				&& CredentialEncoder.encryptSha2LoginPassword(shaKey, username, password)
+						.equals(form.get("shapassword"));
+	}
+
+	private void quicklook(HttpExchange exchange, Session session, Map<String, String> form) throws IOException {
+		if (session == null || session.username == null) {
+			send(exchange, 200, loginPage("", "Your session has expired."));
+			return;
+		}
+
+		FakeUser user = users.get(session.username);
+		String accountNumber = form.get("accountNo");
+		String branchCode = user.accounts.get(accountNumber);
+		if (branchCode == null || !branchCode.equals(form.get("branchCode"))) {
+			send(exchange, 200, "<html><body><p>Account not linked to this user.</p></body></html>");
+			return;
+		}
+		send(exchange, 200, statementPage(session.username, user, accountNumber, branchCode));
+	}
+
+	private void replay(HttpExchange exchange, String path) throws IOException {
+		RecordedExchange recorded = replay.get(exchange.getRequestMethod() + " " + path);
+		if (recorded == null) {
+			send(exchange, 404, "<html><body>Not recorded</body></html>");
+			return;
+		}
+
+		if (cookie(exchange, SESSION_COOKIE) == null) {
+			exchange.getResponseHeaders().add("Set-Cookie",
+					SESSION_COOKIE + "=" + UUID.randomUUID().toString().replace("-", "") + "; Path=/");
+		}
+		if (recorded.getLocation() != null) {
+			URI location = URI.create(recorded.getLocation());
+			String rewritten = location.getHost() == null ? recorded.getLocation()
+					: "http://127.0.0.1:" + getPort() + location.getRawPath();
+			exchange.getResponseHeaders().set("Location", rewritten);
+		}
+		send(exchange, recorded.getStatus(), recorded.getBody() == null ? "" : recorded.getBody());
+	}
+
+	private static String loginPage(String shaKey, String message) {
+		return "<html><head><title>State Bank of Bikaner &amp; Jaipur - Login</title></head><body>"
+				+ "<p class=\"error\">" + message + "</p>"
+				+ "<form name=\"loginForm\" method=\"post\" action=\"loginsubmit.htm\">"
+				+ "<input type=\"text\" name=\"userName\"><input type=\"password\" name=\"password\">"
+				+ "<input type=\"button\" id=\"Button2\" value=\"Login\" onclick=\"return submitLoginSha('" + shaKey
+				+ "');\"></form></body></html>";
+	}
+
+	private static String homePage(FakeUser user) {
+		StringBuilder page = new StringBuilder(
+				"<html><head><title>State Bank of Bikaner &amp; Jaipur - Home</title></head><body>"
+						+ "<table class=\"accountList\">");
+		for (Map.Entry<String, String> account : user.accounts.entrySet()) {
+			page.append("<tr><td>").append(account.getKey()).append("</td>")
+					.append("<td><a href=\"javascript:submitQuickLookForm('").append(account.getKey()).append("','")
+					.append(account.getValue()).append("')\">View balance</a></td></tr>");
+		}
+		return page.append("</table></body></html>").toString();
+	}
+
+	private static String statementPage(String username, FakeUser user, String accountNumber, String branchCode) {
+		StringBuilder page = new StringBuilder(4096);
+		long balance = 10000000L;
+		page.append("<html><head><title>State Bank of Bikaner &amp; Jaipur - Account Statement</title></head><body>")
+				.append("<table>");
+		detail(page, "Account Number", accountNumber);
+		detail(page, "Account Name", username.toUpperCase(Locale.ENGLISH));
+		detail(page, "Branch", "JAIPUR MAIN (" + branchCode + ")");
+		detail(page, "Available Balance", amount(balance) + "&nbsp;CR");
+		page.append("</table><table id=\"tblAcct\" class=\"tableborder\"><thead><tr><th>Date</th>")
+				.append("<th>Description</th><th>Ref No./Cheque No.</th><th>Debit</th><th>Credit</th>")
+				.append("<th>Balance</th></tr></thead><tbody>");
+
+		LocalDate today = LocalDate.now();
+		long[] balances = new long[user.transactionCount];
+		long running = balance;
+		for (int i = 0; i < user.transactionCount; i++) {
+			balances[i] = running;
+			running -= i % 3 == 0 ? 150000 : -25050;
+		}
+		for (int i = 0; i < user.transactionCount; i++) {
+			boolean credit = i % 3 == 0;
+			page.append("<tr><td>").append(DATE_FORMAT.format(today.minusDays(i))).append("</td><td>")
+					.append(credit ? "BY TRANSFER-NEFT-" : "TO CHQ-").append(i).append("</td><td>REF").append(i)
+					.append("</td><td>").append(credit ? "&nbsp;" : amount(25050)).append("</td><td>")
+					.append(credit ? amount(150000) : "&nbsp;").append("</td><td>").append(amount(balances[i]))
+					.append("&nbsp;Cr</td></tr>");
+		}
+		return page.append("</tbody></table></body></html>").toString();
+	}
+
+	private static void detail(StringBuilder page, String key, String value) {
+		page.append("<tr><td class=\"formLabelBold\">").append(key).append("</td><td class=\"formDatanobrdr\">")
+				.append(value).append("</td></tr>");
+	}
+
+	private static String amount(long paise) {
+		return String.format("%d.%02d", paise / 100, paise % 100);
+	}
+
+	private static String cookie(HttpExchange exchange, String name) {
+		for (String header : exchange.getRequestHeaders().getOrDefault("Cookie", Collections.<String> emptyList())) {
+			for (String pair : header.split(";")) {
+				int separator = pair.indexOf('=');
+				if (separator > 0 && pair.substring(0, separator).trim().equals(name)) {
+					return pair.substring(separator + 1).trim();
+				}
+			}
+		}
+		return null;
+	}
+
+	private static Map<String, String> form(HttpExchange exchange) throws IOException {
+		String query = exchange.getRequestURI().getRawQuery();
+		if ("POST".equals(exchange.getRequestMethod())) {
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			try (InputStream in = exchange.getRequestBody()) {
+				byte[] buffer = new byte[4096];
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					body.write(buffer, 0, read);
+				}
+			}
+			query = new String(body.toByteArray(), StandardCharsets.UTF_8);
+		}
+
+		Map<String, String> form = new HashMap<>();
+		if (query != null && !query.isEmpty()) {
+			for (String pair : query.split("&")) {
+				int separator = pair.indexOf('=');
+				String key = separator < 0 ? pair : pair.substring(0, separator);
+				String value = separator < 0 ? "" : pair.substring(separator + 1);
+				form.put(URLDecoder.decode(key, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+			}
+		}
+		return form;
+	}
+
+	private static void send(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Runs the stand-in with one user of each account type, or replays a
+	 * recording given as argument.
+	 */
+	public static void main(String[] args) throws IOException {
+		FakeSbbjServer server = new FakeSbbjServer(args.length > 1 ? Integer.parseInt(args[1]) : 8443);
+		server.addUser("corp01", "password", "61012345678", "10372");
+		server.addUser("retail01", "password", "51098765432", "10475");
+		if (args.length > 0 && !"-".equals(args[0])) {
+			server.setReplay(Recording.load(args[0]));
+		}
+		server.start();
+		System.out.println("-D" + SBBJConnect.CORP_BASE_URL_PROPERTY + "=" + server.corpBaseUrl());
+		System.out.println("-D" + SBBJConnect.RETAIL_BASE_URL_PROPERTY + "=" + server.retailBaseUrl());
+	}
+}
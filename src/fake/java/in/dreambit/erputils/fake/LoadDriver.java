@@ -0,0 +1,197 @@
+/**
+ *
+ */
+package in.dreambit.erputils.fake;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import in.dreambit.erputils.bank.AccountType;
+import in.dreambit.erputils.bank.SBBJConnect;
+import in.dreambit.erputils.support.HttpTransport;
+
+/**
+ * Drives full login, statement and logout cycles against a
+ * {@link FakeSbbjServer} from several threads, and reports logins per second
+ * and latency percentiles.
+ *
+ * Options: <code>-threads</code>, <code>-logins</code> (per thread),
+ * <code>-type</code> and <code>-latency</code> (milliseconds the stand-in adds
+ * per response). Every thread logs in as its own user, since the stand-in
+ * refuses concurrent logins of one user like the bank does.
+ *
+ */
+public class LoadDriver {
+
+	private static final Logger logger = LogManager.getRootLogger();
+
+	private static final String PASSWORD = "password";
+
+	private final int threads;
+
+	private final int loginsPerThread;
+
+	private final AccountType type;
+
+	public LoadDriver(int threads, int loginsPerThread, AccountType type) {
+		this.threads = threads;
+		this.loginsPerThread = loginsPerThread;
+		this.type = type;
+	}
+
+	/**
+	 * Registers one user per thread on the server and runs the cycles.
+	 */
+	public LoadReport run(FakeSbbjServer server) throws Exception {
+		for (int i = 0; i < threads; i++) {
+			server.addUser(username(i), PASSWORD, String.valueOf(61000000000L + i), "10372");
+		}
+
+		HttpTransport transport = new HttpTransport(threads * 2, threads * 2);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final AtomicInteger failures = new AtomicInteger();
+		List<Future<long[]>> futures = new ArrayList<>();
+
+		long start = System.nanoTime();
+		try {
+			for (int i = 0; i < threads; i++) {
+				final String username = username(i);
+				futures.add(executor.submit(() -> {
+					long[] latencies = new long[loginsPerThread];
+					int done = 0;
+					for (int n = 0; n < loginsPerThread; n++) {
+						SBBJConnect sbbjConnect = new SBBJConnect(transport, server.corpBaseUrl(),
+								server.retailBaseUrl());
+						long begin = System.nanoTime();
+						try {
+							sbbjConnect.connect(type, username, PASSWORD.toCharArray());
+							sbbjConnect.logout(type);
+							latencies[done++] = System.nanoTime() - begin;
+						} catch (Exception e) {
+							logger.warn("Login of {} failed: {}", username, e.getMessage());
+							failures.incrementAndGet();
+						}
+					}
+					return Arrays.copyOf(latencies, done);
+				}));
+			}
+
+			List<long[]> perThread = new ArrayList<>();
+			for (Future<long[]> future : futures) {
+				perThread.add(future.get());
+			}
+			return new LoadReport(perThread, failures.get(), System.nanoTime() - start);
+		} finally {
+			executor.shutdownNow();
+			transport.close();
+		}
+	}
+
+	private static String username(int i) {
+		return "load" + i;
+	}
+
+	/**
+	 * Outcome of a load run.
+	 */
+	public static class LoadReport {
+
+		private final long[] latencies;
+
+		private final int failures;
+
+		private final long elapsedNanos;
+
+		LoadReport(List<long[]> perThread, int failures, long elapsedNanos) {
+			int count = 0;
+			for (long[] latencies : perThread) {
+				count += latencies.length;
+			}
+			latencies = new long[count];
+			int offset = 0;
+			for (long[] threadLatencies : perThread) {
+				System.arraycopy(threadLatencies, 0, latencies, offset, threadLatencies.length);
+				offset += threadLatencies.length;
+			}
+			Arrays.sort(latencies);
+			this.failures = failures;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		public int getLogins() {
+			return latencies.length;
+		}
+
+		public int getFailures() {
+			return failures;
+		}
+
+		public double getLoginsPerSecond() {
+			return latencies.length / (elapsedNanos / 1e9);
+		}
+
+		/**
+		 * @return the latency at the percentile, in milliseconds
+		 */
+		public double percentile(double percentile) {
+			if (latencies.length == 0) {
+				return 0;
+			}
+			int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+			return latencies[Math.max(0, Math.min(index, latencies.length - 1))] / 1e6;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(
+					"Logins: %d, Failed: %d, Elapsed: %.1f s, Logins/sec: %.1f%n"
+							+ "Latency ms p50: %.2f, p90: %.2f, p99: %.2f, max: %.2f",
+					getLogins(), failures, elapsedNanos / 1e9, getLoginsPerSecond(), percentile(50),
+					percentile(90), percentile(99), percentile(100));
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int threads = 8;
+		int logins = 100;
+		long latency = 0;
+		AccountType type = AccountType.CURRENT;
+
+		for (int i = 0; i + 1 < args.length; i++) {
+			switch (args[i]) {
+			case "-threads":
+				threads = Integer.parseInt(args[i + 1]);
+				break;
+			case "-logins":
+				logins = Integer.parseInt(args[i + 1]);
+				break;
+			case "-latency":
+				latency = Long.parseLong(args[i + 1]);
+				break;
+			case "-type":
+				type = AccountType.valueOf(args[i + 1]);
+				break;
+			default:
+				break;
+			}
+		}
+
+		FakeSbbjServer server = new FakeSbbjServer(0);
+		server.setLatencyMillis(latency);
+		server.start();
+		try {
+			LoadReport report = new LoadDriver(threads, logins, type).run(server);
+			System.out.println(report);
+		} finally {
+			server.stop();
+		}
+	}
+}
@@ -0,0 +1,50 @@
+/**
+ *
+ */
+package in.dreambit.erputils.fake;
+
+import java.io.File;
+import java.io.IOException;
+
+import in.dreambit.erputils.App;
+import in.dreambit.erputils.bank.SBBJConnect;
+
+/**
+ * One complete CLI run of {@link App} against a {@link FakeSbbjServer}: login,
+ * JSON output to files and logout. It loads the classes a real run loads
+ * without touching the bank, which makes it the training workload for the
+ * class data sharing archive of the <code>faststart</code> profile.
+ *
+ * Exits through {@link App}, with its exit code.
+ *
+ */
+public class TrainingRun {
+
+	public static void main(String[] args) throws Exception {
+		FakeSbbjServer server = new FakeSbbjServer(0);
+		server.addUser("corp01", "password", "61012345678", "10372");
+		server.start();
+		System.setProperty(SBBJConnect.CORP_BASE_URL_PROPERTY, server.corpBaseUrl());
+		System.setProperty(SBBJConnect.RETAIL_BASE_URL_PROPERTY, server.retailBaseUrl());
+
+		File directory = temporaryDirectory();
+		App.main(new String[] { "-username", "corp01", "-password", "password", "-type", "CURRENT", "-output",
+				"json", "-keyFile", temporaryFile(directory, "key.json"), "-txFile",
+				temporaryFile(directory, "tx.json"), "-log", temporaryFile(directory, "training.log") });
+	}
+
+	private static String temporaryFile(File directory, String name) {
+		File file = new File(directory, name);
+		file.deleteOnExit();
+		return file.getPath();
+	}
+
+	private static File temporaryDirectory() throws IOException {
+		File directory = File.createTempFile("sbbj-training", "");
+		if (!directory.delete() || !directory.mkdir()) {
+			throw new IOException("Unable to create " + directory);
+		}
+		directory.deleteOnExit();
+		return directory;
+	}
+}
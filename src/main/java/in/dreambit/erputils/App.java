@@ -3,22 +3,43 @@ package in.dreambit.erputils;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
-
-import javax.script.ScriptException;
+import java.nio.file.Paths;
+import java.util.List;
 
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.core.Appender;
 import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.appender.AsyncAppender;
 import org.apache.logging.log4j.core.appender.ConsoleAppender;
 import org.apache.logging.log4j.core.appender.ConsoleAppender.Target;
 import org.apache.logging.log4j.core.appender.FileAppender;
+import org.apache.logging.log4j.core.config.AppenderRef;
 import org.apache.logging.log4j.core.config.Configuration;
 import org.apache.logging.log4j.core.config.LoggerConfig;
 import org.apache.logging.log4j.core.layout.PatternLayout;
 
+import in.dreambit.erputils.bank.AccountType;
 import in.dreambit.erputils.bank.SBBJConnect;
+import in.dreambit.erputils.bank.SessionStore;
+import in.dreambit.erputils.batch.AccountManifest;
+import in.dreambit.erputils.batch.AccountResult;
+import in.dreambit.erputils.batch.BatchFetcher;
+import in.dreambit.erputils.daemon.BalanceDaemon;
+import in.dreambit.erputils.export.BinaryExportWriter;
+import in.dreambit.erputils.fake.ExchangeRecorder;
+import in.dreambit.erputils.journal.TransactionJournal;
+import in.dreambit.erputils.metrics.PhaseMetrics;
+import in.dreambit.erputils.metrics.PrometheusExporter;
+import in.dreambit.erputils.output.OutputFormat;
+import in.dreambit.erputils.output.WrittenPageStore;
+import in.dreambit.erputils.support.Deadline;
+import in.dreambit.erputils.support.HttpTransport;
+import in.dreambit.erputils.support.LogRedactor;
+import in.dreambit.erputils.sync.StatementSync;
+import in.dreambit.erputils.sync.SyncResult;
+import in.dreambit.erputils.sync.WatermarkStore;
 
 public class App {
 
@@ -40,7 +61,17 @@ public class App {
 		return null;
 	}
 
-	private static void updateLogger(String filePath, Level level, boolean toConsole) {
+	/**
+	 * Events an asynchronous logger holds before dropping new ones
+	 */
+	private static final int ASYNC_LOG_BUFFER = 1024;
+
+	/**
+	 * Logs to the console or the file at the level. Asynchronously, events go
+	 * through a bounded queue to a background writer, and are dropped rather
+	 * than making the fetch wait when it is full.
+	 */
+	private static void updateLogger(String filePath, Level level, boolean toConsole, boolean async) {
 		LoggerContext context = (LoggerContext) LogManager.getContext(false);
 
 		Configuration configuration = context.getConfiguration();
@@ -58,7 +89,16 @@ public class App {
 
 		appender.start();
 		configuration.addAppender(appender);
+		if (async) {
+			AppenderRef[] refs = { AppenderRef.createAppenderRef(appender.getName(), null, null) };
+			appender = AsyncAppender.createAppender(refs, null, false, 5000, ASYNC_LOG_BUFFER, "Async", false, null,
+					configuration, true);
+			appender.start();
+			configuration.addAppender(appender);
+		}
 		rootLoggerConfig.addAppender(appender, level, null);
+		// events below the level are not even created, so bodies are not decoded for nothing
+		rootLoggerConfig.setLevel(level);
 		context.updateLoggers(configuration);
 	}
 
@@ -67,7 +107,33 @@ public class App {
 		rootLogger.error("ERROR while fetching balance: ", e);
 	}
 
-	public static void main(String[] args) throws ScriptException, IOException, URISyntaxException {
+	private static int runBatch(String manifestPath) {
+		rootLogger.info("Batch Manifest: {}", manifestPath);
+		try {
+			AccountManifest manifest = AccountManifest.load(manifestPath);
+			List<AccountResult> results = new BatchFetcher(manifest).run();
+			BatchFetcher.printSummary(results, System.err);
+			return BatchFetcher.allSucceeded(results) ? SUCCESS : FAILURE;
+		} catch (Throwable e) {
+			logError(e);
+			return FAILURE;
+		}
+	}
+
+	/**
+	 * Writes the login phase latencies as a Prometheus textfile.
+	 */
+	private static int writeMetrics(String metricsFilePath) {
+		try {
+			PrometheusExporter.writeFile(PhaseMetrics.getDefault(), Paths.get(metricsFilePath));
+			return SUCCESS;
+		} catch (IOException e) {
+			logError(e);
+			return FAILURE;
+		}
+	}
+
+	public static void main(String[] args) throws IOException, URISyntaxException {
 
 		if (args == null || args.length == 0) {
 			System.err.println("No Argument Specified");
@@ -85,6 +151,19 @@ public class App {
 		String outputType = "text";
 		String keyFilePath = null;
 		String txFilePath = null;
+		String batchFilePath = null;
+		String daemonFilePath = null;
+		String sessionDir = null;
+		boolean logout = false;
+		String parser = "dom";
+		String syncDir = null;
+		String pageDir = null;
+		String journalDir = null;
+		String recordFilePath = null;
+		String metricsFilePath = null;
+		String exportFilePath = null;
+		boolean asyncLog = false;
+		Deadline deadline = Deadline.NONE;
 		int exitCode = SUCCESS;
 		Level level = Level.DEBUG;
 
@@ -114,47 +193,129 @@ public class App {
 			case "-txFile":
 				txFilePath = retrieveArgument(i + 1);
 				break;
+			case "-batch":
+				batchFilePath = retrieveArgument(i + 1);
+				break;
+			case "-daemon":
+				daemonFilePath = retrieveArgument(i + 1);
+				break;
+			case "-session":
+				sessionDir = retrieveArgument(i + 1);
+				break;
+			case "-logout":
+				logout = true;
+				break;
+			case "-parser":
+				parser = retrieveArgument(i + 1);
+				break;
+			case "-sync":
+				syncDir = retrieveArgument(i + 1);
+				break;
+			case "-pages":
+				pageDir = retrieveArgument(i + 1);
+				break;
+			case "-record":
+				recordFilePath = retrieveArgument(i + 1);
+				break;
+			case "-journal":
+				journalDir = retrieveArgument(i + 1);
+				break;
+			case "-export":
+				exportFilePath = retrieveArgument(i + 1);
+				break;
+			case "-metrics":
+				metricsFilePath = retrieveArgument(i + 1);
+				break;
+			case "-asyncLog":
+				asyncLog = true;
+				break;
+			case "-deadline":
+				deadline = Deadline.after(Long.parseLong(retrieveArgument(i + 1)) * 1000);
+				break;
 			default:
 				break;
 			}
 		}
 
-		updateLogger(logFilePath, level, logFilePath == null);
+		if (OutputFormat.forName(outputType) == null) {
+			System.err.println("Unknown output type: " + outputType + ", use text, json, ndjson or csv");
+			System.exit(FAILURE);
+		}
+
+		updateLogger(logFilePath, level, logFilePath == null, asyncLog);
+
+		if (batchFilePath != null) {
+			int batchExitCode = runBatch(batchFilePath);
+			if (metricsFilePath != null && writeMetrics(metricsFilePath) != SUCCESS) {
+				batchExitCode = FAILURE;
+			}
+			System.exit(batchExitCode);
+		}
+
+		if (daemonFilePath != null) {
+			// the HTTP server threads keep the process alive
+			BalanceDaemon.main(new String[] { daemonFilePath });
+			return;
+		}
+
 		rootLogger.info("Parameters Received: ");
 		rootLogger.info("Username: [{}]", username);
-		rootLogger.info("Password: [{}]", password);
+		rootLogger.info("Password: [{}]", LogRedactor.mask(password));
 		rootLogger.info("Account Type: [{}]", accountType);
 		rootLogger.info("Key File Path: [{}]", keyFilePath);
 		rootLogger.info("Tx File Path: {}", txFilePath);
 		rootLogger.info("Output Type: {}", outputType);
 		rootLogger.info("Log File Path: {}", logFilePath);
+		rootLogger.info("Session Directory: {}", sessionDir);
+		rootLogger.info("Sync Directory: {}", syncDir);
+		rootLogger.info("Page Directory: {}", pageDir);
+		rootLogger.info("Journal Directory: {}", journalDir);
+		rootLogger.info("Record File Path: {}", recordFilePath);
+		rootLogger.info("Metrics File Path: {}", metricsFilePath);
+		rootLogger.info("Export File Path: {}", exportFilePath);
+		rootLogger.info("Deadline ms: {}", deadline.getBudgetMillis());
 
-		if ("CURRENT".equals(accountType)) {
-			try {
-				sbbjConnect.connectCorporate(username, password.toCharArray());
-				if (keyFilePath == null)
-					sbbjConnect.writeKeyDetails(null, outputType, true);
-				else
-					sbbjConnect.writeKeyDetails(keyFilePath, outputType, false);
+		ExchangeRecorder recorder = null;
+		if (recordFilePath != null) {
+			recorder = new ExchangeRecorder();
+			HttpTransport.getDefault().setListener(recorder);
+		}
 
-				if (txFilePath == null)
-					sbbjConnect.writeTransactionDetails(null, outputType, true);
-				else
-					sbbjConnect.writeTransactionDetails(txFilePath, outputType, false);
-			} catch (Throwable e) {
-				logError(e);
-				exitCode = FAILURE;
-			} finally {
-				try {
-					sbbjConnect.logout(sbbjConnect.CORP_LOGOUT_URL);
-				} catch (IOException e) {
-					logError(e);
-					exitCode = FAILURE;
-				}
+		if ("CURRENT".equals(accountType) || "SAVINGS".equals(accountType)) {
+			AccountType type = AccountType.valueOf(accountType);
+			if (sessionDir != null) {
+				sbbjConnect.setSessionStore(new SessionStore(Paths.get(sessionDir)));
 			}
-		} else if ("SAVINGS".equals(accountType)) {
+			if (pageDir != null) {
+				sbbjConnect.setWrittenPageStore(new WrittenPageStore(Paths.get(pageDir)));
+			}
+			sbbjConnect.setStreamingParser("stream".equals(parser));
+
 			try {
-				sbbjConnect.connectPersonal(username, password.toCharArray());
+				sbbjConnect.connect(type, username, password.toCharArray(), deadline);
+
+				if (journalDir != null) {
+					try (TransactionJournal journal = TransactionJournal.forAccount(Paths.get(journalDir),
+							type + "-" + sbbjConnect.getAccountNumber())) {
+						int appended = journal.appendAll(sbbjConnect.getTransactions());
+						rootLogger.info("Journalled {} new transactions, {} in total", appended, journal.size());
+					}
+				}
+
+				if (exportFilePath != null) {
+					BinaryExportWriter.write(Paths.get(exportFilePath), sbbjConnect.getAccountNumber(),
+							sbbjConnect.getTransactions());
+				}
+
+				StatementSync statementSync = null;
+				SyncResult syncResult = null;
+				if (syncDir != null) {
+					statementSync = new StatementSync(new WatermarkStore(Paths.get(syncDir)));
+					syncResult = sbbjConnect.syncTransactions(statementSync, type);
+					if (syncResult.isGapDetected()) {
+						System.err.println("Warning: statement gap, some transactions since the last sync were missed");
+					}
+				}
 
 				if (keyFilePath == null)
 					sbbjConnect.writeKeyDetails(null, outputType, true);
@@ -166,19 +327,38 @@ public class App {
 				else
 					sbbjConnect.writeTransactionDetails(txFilePath, outputType, false);
 
+				if (syncResult != null) {
+					statementSync.commit(type + "-" + sbbjConnect.getAccountNumber(), syncResult);
+				}
 			} catch (Throwable e) {
 				logError(e);
 				exitCode = FAILURE;
 			} finally {
-				try {
-					sbbjConnect.logout(sbbjConnect.CORP_LOGOUT_URL);
-				} catch (IOException e) {
-					logError(e);
-					exitCode = FAILURE;
+				// a stored session is kept alive for the next run unless asked otherwise
+				if (sessionDir == null || logout) {
+					try {
+						sbbjConnect.logout(type);
+					} catch (IOException e) {
+						logError(e);
+						exitCode = FAILURE;
+					}
 				}
 			}
 		}
 
+		if (recorder != null) {
+			try {
+				recorder.getRecording().save(recordFilePath);
+			} catch (IOException e) {
+				logError(e);
+				exitCode = FAILURE;
+			}
+		}
+
+		if (metricsFilePath != null && writeMetrics(metricsFilePath) != SUCCESS) {
+			exitCode = FAILURE;
+		}
+
 		System.exit(exitCode);
 	}
 }
@@ -0,0 +1,67 @@
+/**
+ *
+ */
+package in.dreambit.erputils.bank;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable copy of what one statement fetch read for an account, safe to
+ * hand to other threads while the connection fetches again.
+ *
+ */
+public class AccountSnapshot {
+
+	private final String accountNumber;
+
+	private final Map<String, String> keyDetails;
+
+	private final List<List<String>> transactions;
+
+	private final long fetchedAt;
+
+	public AccountSnapshot(String accountNumber, Map<String, String> keyDetails, List<List<String>> transactions,
+			long fetchedAt) {
+		this.accountNumber = accountNumber;
+		this.keyDetails = keyDetails;
+		this.transactions = transactions;
+		this.fetchedAt = fetchedAt;
+	}
+
+	/**
+	 * @return the accountNumber
+	 */
+	public String getAccountNumber() {
+		return accountNumber;
+	}
+
+	/**
+	 * @return the keyDetails
+	 */
+	public Map<String, String> getKeyDetails() {
+		return keyDetails;
+	}
+
+	/**
+	 * @return the statement rows, as shown on the page
+	 */
+	public List<List<String>> getTransactions() {
+		return transactions;
+	}
+
+	/**
+	 * @return when the statement was read, in epoch milliseconds
+	 */
+	public long getFetchedAt() {
+		return fetchedAt;
+	}
+
+	/**
+	 * @return whether the other snapshot shows the same key details, balance
+	 *         included, and statement rows
+	 */
+	public boolean sameContent(AccountSnapshot other) {
+		return other != null && keyDetails.equals(other.keyDetails) && transactions.equals(other.transactions);
+	}
+}
@@ -0,0 +1,28 @@
+/**
+ *
+ */
+package in.dreambit.erputils.bank;
+
+/**
+ * Kind of SBBJ account, each served by its own online banking host.
+ *
+ */
+public enum AccountType {
+
+	/**
+	 * Corporate Saral Banking, corp.sbbjonline.com
+	 */
+	CURRENT,
+
+	/**
+	 * Personal Banking, retail.sbbjonline.com
+	 */
+	SAVINGS;
+
+	/**
+	 * @return the online banking host serving this account type
+	 */
+	public String host() {
+		return this == CURRENT ? "corp.sbbjonline.com" : "retail.sbbjonline.com";
+	}
+}
@@ -0,0 +1,177 @@
+/**
+ *
+ */
+package in.dreambit.erputils.bank;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jsoup.nodes.Document;
+
+import in.dreambit.erputils.metrics.MetricsRegistry;
+import in.dreambit.erputils.metrics.PhaseMetrics;
+import in.dreambit.erputils.support.Deadline;
+import in.dreambit.erputils.support.HttpTransport;
+import in.dreambit.erputils.support.LoginThrottle;
+
+/**
+ * Non-blocking login, statement fetch and logout, as a chain of stages on a
+ * caller supplied executor. No thread waits on the network between stages,
+ * so one small pool can fan out over many accounts.
+ *
+ * The login page is fetched while the credential encoders warm up, and the
+ * logout is fired after the snapshot is handed over. Cancelling the returned
+ * future stops the chain before its next stage; a session that was already
+ * logged in is still logged out.
+ *
+ */
+public class AsyncSBBJConnect {
+
+	private static final Logger logger = LogManager.getRootLogger();
+
+	private final HttpTransport transport;
+
+	private final Executor executor;
+
+	private final String corpBaseUrl;
+
+	private final String retailBaseUrl;
+
+	private MetricsRegistry metrics = PhaseMetrics.getDefault();
+
+	private LoginThrottle loginThrottle;
+
+	public AsyncSBBJConnect(HttpTransport transport, Executor executor) {
+		this(transport, executor,
+				System.getProperty(SBBJConnect.CORP_BASE_URL_PROPERTY, SBBJConnect.DEFAULT_CORP_BASE_URL),
+				System.getProperty(SBBJConnect.RETAIL_BASE_URL_PROPERTY, SBBJConnect.DEFAULT_RETAIL_BASE_URL));
+	}
+
+	public AsyncSBBJConnect(HttpTransport transport, Executor executor, String corpBaseUrl, String retailBaseUrl) {
+		this.transport = transport;
+		this.executor = executor;
+		this.corpBaseUrl = corpBaseUrl;
+		this.retailBaseUrl = retailBaseUrl;
+	}
+
+	/**
+	 * @param metrics
+	 *            receiver of the phase timings of every fetch
+	 */
+	public void setMetrics(MetricsRegistry metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @param loginThrottle
+	 *            paces the logins of every fetch, null to log in right away
+	 */
+	public void setLoginThrottle(LoginThrottle loginThrottle) {
+		this.loginThrottle = loginThrottle;
+	}
+
+	/**
+	 * Logs in, reads the account statement and logs out again.
+	 *
+	 * @param password
+	 *            read by the login stage, the caller may clear it once the
+	 *            future is done
+	 * @return the snapshot, or a future completed with the failure of the
+	 *         first stage that failed
+	 */
+	public CompletableFuture<AccountSnapshot> fetch(AccountType accountType, String username, char[] password) {
+		return fetch(accountType, username, password, Deadline.NONE);
+	}
+
+	/**
+	 * Fetches like {@link #fetch(AccountType, String, char[])}, failing with a
+	 * {@link DeadlineExceededException} once the deadline passes. The logout
+	 * is not bound to the deadline.
+	 */
+	public CompletableFuture<AccountSnapshot> fetch(AccountType accountType, String username, char[] password,
+			Deadline deadline) {
+		SBBJConnect connection = new SBBJConnect(transport, corpBaseUrl, retailBaseUrl);
+		connection.setMetrics(metrics);
+		connection.setDeadline(deadline);
+		connection.setLoginThrottle(loginThrottle);
+		CompletableFuture<AccountSnapshot> result = new CompletableFuture<>();
+
+		CompletableFuture<Document> loginPage = CompletableFuture
+				.supplyAsync(stage(result, () -> connection.preLogin(accountType, username)), executor);
+		CompletableFuture<Void> encoders = CompletableFuture.runAsync(CredentialEncoder::warmUp, executor);
+
+		loginPage.thenCombine(encoders, (page, ignored) -> page)
+				.thenApplyAsync(stage(result, page -> connection.submitLogin(accountType, username, password, page)),
+						executor)
+				.thenApplyAsync(stage(result, location -> {
+					connection.openHomePage(accountType, username, location);
+					return null;
+				}), executor).thenApplyAsync(stage(result, ignored -> {
+					connection.readAccountBalance(accountType);
+					return connection.snapshot();
+				}), executor).whenComplete((snapshot, e) -> {
+					if (e == null) {
+						result.complete(snapshot);
+					} else {
+						Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+						if (!(cause instanceof CancellationException)) {
+							cause = connection.failed(cause);
+						}
+						result.completeExceptionally(cause);
+					}
+					if (connection.isLoggedIn()) {
+						CompletableFuture.runAsync(() -> logout(connection, accountType), executor);
+					}
+				});
+		return result;
+	}
+
+	private static void logout(SBBJConnect connection, AccountType accountType) {
+		connection.setDeadline(Deadline.NONE);
+		try {
+			connection.logout(accountType);
+		} catch (Exception e) {
+			logger.warn("Logout failed: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * Work of one stage, allowed to throw like the blocking methods it calls.
+	 */
+	private interface Stage<T, R> {
+		R apply(T input) throws Exception;
+	}
+
+	private interface FirstStage<R> {
+		R get() throws Exception;
+	}
+
+	/**
+	 * Skips the stage once the fetch was cancelled.
+	 */
+	private static <T, R> Function<T, R> stage(CompletableFuture<?> result, Stage<T, R> stage) {
+		return input -> {
+			if (result.isCancelled()) {
+				throw new CancellationException();
+			}
+			try {
+				return stage.apply(input);
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new CompletionException(e);
+			}
+		};
+	}
+
+	private static <R> Supplier<R> stage(CompletableFuture<?> result, FirstStage<R> stage) {
+		Function<Void, R> function = stage(result, ignored -> stage.get());
+		return () -> function.apply(null);
+	}
+}
@@ -0,0 +1,167 @@
+/**
+ *
+ */
+package in.dreambit.erputils.bank;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Cache of account snapshots with single-flight loading.
+ *
+ * A snapshot younger than the TTL is served as is. Up to
+ * <code>staleMillis</code> past the TTL it is still served, while one
+ * background fetch revalidates it. Beyond that callers wait for a fetch. All
+ * callers that need a fetch of the same account while one is running share
+ * it, so concurrent requests never log in to the same account twice, which the
+ * bank would reject as already logged in.
+ *
+ */
+public class BalanceCache {
+
+	private static final Logger logger = LogManager.getRootLogger();
+
+	private static final class Entry {
+
+		private final AccountSnapshot snapshot;
+
+		private final long loadedAt;
+
+		private Entry(AccountSnapshot snapshot, long loadedAt) {
+			this.snapshot = snapshot;
+			this.loadedAt = loadedAt;
+		}
+	}
+
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+	private final ConcurrentHashMap<String, CompletableFuture<AccountSnapshot>> inFlight = new ConcurrentHashMap<>();
+
+	private final long ttlMillis;
+
+	private final long staleMillis;
+
+	private final Executor revalidator;
+
+	public BalanceCache(long ttl, long stale, TimeUnit unit) {
+		this(ttl, stale, unit, Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "balance-revalidate");
+			thread.setDaemon(true);
+			return thread;
+		}));
+	}
+
+	public BalanceCache(long ttl, long stale, TimeUnit unit, Executor revalidator) {
+		this.ttlMillis = unit.toMillis(ttl);
+		this.staleMillis = unit.toMillis(stale);
+		this.revalidator = revalidator;
+	}
+
+	/**
+	 * @return the cached snapshot of the account, fetched with the loader if
+	 *         there is none or it is too old to serve
+	 */
+	public AccountSnapshot get(String key, Callable<AccountSnapshot> loader) throws Exception {
+		Entry entry = entries.get(key);
+		if (entry != null) {
+			long age = System.currentTimeMillis() - entry.loadedAt;
+			if (age < ttlMillis) {
+				return entry.snapshot;
+			}
+			if (age < ttlMillis + staleMillis) {
+				load(key, loader, true);
+				return entry.snapshot;
+			}
+		}
+		return await(load(key, loader, false));
+	}
+
+	/**
+	 * Fetches the account now, or joins the fetch already running for it.
+	 */
+	public AccountSnapshot refresh(String key, Callable<AccountSnapshot> loader) throws Exception {
+		return await(load(key, loader, false));
+	}
+
+	/**
+	 * @return how long a snapshot is served without fetching again
+	 */
+	public long getTtlMillis() {
+		return ttlMillis;
+	}
+
+	/**
+	 * @return how long past the TTL a snapshot is still served
+	 */
+	public long getStaleMillis() {
+		return staleMillis;
+	}
+
+	/**
+	 * @return the cached snapshot whatever its age, null if there is none
+	 */
+	public AccountSnapshot peek(String key) {
+		Entry entry = entries.get(key);
+		return entry != null ? entry.snapshot : null;
+	}
+
+	public void invalidate(String key) {
+		entries.remove(key);
+	}
+
+	/**
+	 * Starts a fetch unless one is running for the key. The first caller runs
+	 * a synchronous fetch on its own thread.
+	 */
+	private CompletableFuture<AccountSnapshot> load(final String key, final Callable<AccountSnapshot> loader,
+			boolean background) {
+		final CompletableFuture<AccountSnapshot> created = new CompletableFuture<>();
+		CompletableFuture<AccountSnapshot> running = inFlight.putIfAbsent(key, created);
+		if (running != null) {
+			logger.debug("Joining fetch in flight for {}", key);
+			return running;
+		}
+
+		Runnable fetch = () -> {
+			try {
+				AccountSnapshot snapshot = loader.call();
+				entries.put(key, new Entry(snapshot, System.currentTimeMillis()));
+				inFlight.remove(key, created);
+				created.complete(snapshot);
+			} catch (Throwable e) {
+				inFlight.remove(key, created);
+				created.completeExceptionally(e);
+				if (background) {
+					logger.warn("Background revalidation of {} failed: {}", key, e.getMessage());
+				}
+			}
+		};
+
+		if (background) {
+			revalidator.execute(fetch);
+		} else {
+			fetch.run();
+		}
+		return created;
+	}
+
+	private static AccountSnapshot await(CompletableFuture<AccountSnapshot> future) throws Exception {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+}
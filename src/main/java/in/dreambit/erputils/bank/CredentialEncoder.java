@@ -0,0 +1,191 @@
+/**
+ *
+ */
+package in.dreambit.erputils.bank;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Pure Java port of the login password encoders shipped by SBBJ in
+ * <code>/sbbj/js/md5.js</code> (<code>encryptLoginPassword</code>) and
+ * <code>/sbbj/js/sha512.js</code> (<code>encryptSha2LoginPassword</code>).
+ *
+ * The output is byte for byte identical to the JavaScript functions, including
+ * their string-to-byte quirks: the MD5 script normalises CRLF to LF and encodes
+ * every UTF-16 code unit on its own, while CryptoJS uses standard UTF-8.
+ *
+ */
+public final class CredentialEncoder {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private static final ThreadLocal<MessageDigest> MD5 = new ThreadLocal<MessageDigest>() {
+		@Override
+		protected MessageDigest initialValue() {
+			return newDigest("MD5");
+		}
+	};
+
+	private static final ThreadLocal<MessageDigest> SHA512 = new ThreadLocal<MessageDigest>() {
+		@Override
+		protected MessageDigest initialValue() {
+			return newDigest("SHA-512");
+		}
+	};
+
+	private CredentialEncoder() {
+	}
+
+	/**
+	 * Equivalent of <code>encryptLoginPassword(key, username, password)</code>,
+	 * i.e. <code>MD5(MD5(username + "#" + password) + "#" + key)</code>.
+	 */
+	public static String encryptLoginPassword(String key, String username, char[] password) {
+		MessageDigest digest = MD5.get();
+
+		byte[] input = jsMd5Bytes(join(username, password));
+		char[] inner = toHex(digest.digest(input));
+		Arrays.fill(input, (byte) 0);
+
+		byte[] outer = jsMd5Bytes(join(inner, key));
+		return new String(toHex(digest.digest(outer)));
+	}
+
+	/**
+	 * Equivalent of <code>encryptSha2LoginPassword(key, username, password)</code>,
+	 * i.e. <code>SHA512(SHA512(username + "#" + password) + "#" + key)</code>.
+	 */
+	public static String encryptSha2LoginPassword(String key, String username, char[] password) {
+		MessageDigest digest = SHA512.get();
+
+		byte[] input = utf8Bytes(join(username, password));
+		char[] inner = toHex(digest.digest(input));
+		Arrays.fill(input, (byte) 0);
+
+		byte[] outer = utf8Bytes(join(inner, key));
+		return new String(toHex(digest.digest(outer)));
+	}
+
+	/**
+	 * Runs both encoders once on throwaway input, so the digest providers are
+	 * loaded and the encoding path is compiled before a login needs it.
+	 */
+	public static void warmUp() {
+		encryptLoginPassword("warmup", "warmup", "warmup".toCharArray());
+		encryptSha2LoginPassword("warmup", "warmup", "warmup".toCharArray());
+	}
+
+	/**
+	 * Lower case hex encoding, as produced by both scripts.
+	 */
+	public static char[] toHex(byte[] bytes) {
+		char[] hex = new char[bytes.length * 2];
+		for (int i = 0, j = 0; i < bytes.length; i++) {
+			int b = bytes[i] & 0xFF;
+			hex[j++] = HEX[b >>> 4];
+			hex[j++] = HEX[b & 0x0F];
+		}
+		return hex;
+	}
+
+	private static char[] join(String first, char[] second) {
+		char[] joined = new char[first.length() + 1 + second.length];
+		first.getChars(0, first.length(), joined, 0);
+		joined[first.length()] = '#';
+		System.arraycopy(second, 0, joined, first.length() + 1, second.length);
+		return joined;
+	}
+
+	private static char[] join(char[] first, String second) {
+		char[] joined = new char[first.length + 1 + second.length()];
+		System.arraycopy(first, 0, joined, 0, first.length);
+		joined[first.length] = '#';
+		second.getChars(0, second.length(), joined, first.length + 1);
+		return joined;
+	}
+
+	/**
+	 * Mirrors <code>Utf8Encode</code> of md5.js: CRLF becomes LF and each UTF-16
+	 * code unit is written as one to three bytes, surrogates included. The
+	 * source chars are cleared once encoded.
+	 */
+	static byte[] jsMd5Bytes(char[] chars) {
+		int length = 0;
+		for (int i = 0; i < chars.length; i++) {
+			char c = chars[i];
+			if (c == '\r' && i + 1 < chars.length && chars[i + 1] == '\n') {
+				continue;
+			}
+			length += c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+		}
+
+		byte[] bytes = new byte[length];
+		int pos = 0;
+		for (int i = 0; i < chars.length; i++) {
+			char c = chars[i];
+			if (c == '\r' && i + 1 < chars.length && chars[i + 1] == '\n') {
+				continue;
+			}
+			if (c < 0x80) {
+				bytes[pos++] = (byte) c;
+			} else if (c < 0x800) {
+				bytes[pos++] = (byte) ((c >> 6) | 0xC0);
+				bytes[pos++] = (byte) ((c & 0x3F) | 0x80);
+			} else {
+				bytes[pos++] = (byte) ((c >> 12) | 0xE0);
+				bytes[pos++] = (byte) (((c >> 6) & 0x3F) | 0x80);
+				bytes[pos++] = (byte) ((c & 0x3F) | 0x80);
+			}
+		}
+		Arrays.fill(chars, '\0');
+		return bytes;
+	}
+
+	/**
+	 * Mirrors <code>CryptoJS.enc.Utf8.parse</code>, which goes through
+	 * <code>encodeURIComponent</code> and therefore rejects lone surrogates. The
+	 * source chars are cleared once encoded.
+	 */
+	static byte[] utf8Bytes(char[] chars) {
+		byte[] buffer = new byte[chars.length * 3];
+		int pos = 0;
+		for (int i = 0; i < chars.length; i++) {
+			char c = chars[i];
+			if (c < 0x80) {
+				buffer[pos++] = (byte) c;
+			} else if (c < 0x800) {
+				buffer[pos++] = (byte) ((c >> 6) | 0xC0);
+				buffer[pos++] = (byte) ((c & 0x3F) | 0x80);
+			} else if (Character.isHighSurrogate(c) && i + 1 < chars.length
+					&& Character.isLowSurrogate(chars[i + 1])) {
+				int codePoint = Character.toCodePoint(c, chars[++i]);
+				buffer[pos++] = (byte) ((codePoint >> 18) | 0xF0);
+				buffer[pos++] = (byte) (((codePoint >> 12) & 0x3F) | 0x80);
+				buffer[pos++] = (byte) (((codePoint >> 6) & 0x3F) | 0x80);
+				buffer[pos++] = (byte) ((codePoint & 0x3F) | 0x80);
+			} else if (Character.isSurrogate(c)) {
+				Arrays.fill(chars, '\0');
+				Arrays.fill(buffer, (byte) 0);
+				throw new IllegalArgumentException("Malformed UTF-16 input at index " + i);
+			} else {
+				buffer[pos++] = (byte) ((c >> 12) | 0xE0);
+				buffer[pos++] = (byte) (((c >> 6) & 0x3F) | 0x80);
+				buffer[pos++] = (byte) ((c & 0x3F) | 0x80);
+			}
+		}
+		Arrays.fill(chars, '\0');
+		byte[] bytes = Arrays.copyOf(buffer, pos);
+		Arrays.fill(buffer, (byte) 0);
+		return bytes;
+	}
+
+	private static MessageDigest newDigest(String algorithm) {
+		try {
+			return MessageDigest.getInstance(algorithm);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("Digest not available: " + algorithm, e);
+		}
+	}
+}
@@ -0,0 +1,33 @@
+/**
+ *
+ */
+package in.dreambit.erputils.bank;
+
+import java.net.SocketTimeoutException;
+
+import in.dreambit.erputils.metrics.Phase;
+import in.dreambit.erputils.support.Deadline;
+
+/**
+ * Thrown when a fetch runs out of its deadline, naming the phase it was in.
+ *
+ */
+public class DeadlineExceededException extends SocketTimeoutException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Phase phase;
+
+	public DeadlineExceededException(Phase phase, Deadline deadline) {
+		super("Deadline of " + deadline.getBudgetMillis() + " ms exceeded in phase " + phase.label() + " after "
+				+ deadline.elapsedMillis() + " ms");
+		this.phase = phase;
+	}
+
+	/**
+	 * @return the phase the fetch was in when its time ran out
+	 */
+	public Phase getPhase() {
+		return phase;
+	}
+}
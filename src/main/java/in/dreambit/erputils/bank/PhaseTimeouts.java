@@ -0,0 +1,107 @@
+/**
+ *
+ */
+package in.dreambit.erputils.bank;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import in.dreambit.erputils.metrics.MetricsRegistry;
+import in.dreambit.erputils.metrics.Phase;
+
+/**
+ * Request timeouts per account type and phase that follow the observed
+ * latency: a multiple of the 99th percentile of the last requests, kept
+ * between a floor and a ceiling. Until a phase has enough samples, the default
+ * timeout applies. A timed out request counts with the timeout it ran into, so
+ * a bank that turned slower than the learned timeout pushes it back up.
+ *
+ * Fed as a {@link MetricsRegistry} by the phase recorder of each connection.
+ *
+ */
+public class PhaseTimeouts implements MetricsRegistry {
+
+	private static final PhaseTimeouts defaultTimeouts = new PhaseTimeouts(10000, 1000, 30000);
+
+	private static final int WINDOW = 64;
+
+	private static final int MIN_SAMPLES = 8;
+
+	private static final int MULTIPLIER = 4;
+
+	private final long defaultMillis;
+
+	private final long floorMillis;
+
+	private final long ceilingMillis;
+
+	private final ConcurrentHashMap<String, Window> windows = new ConcurrentHashMap<>();
+
+	public PhaseTimeouts(long defaultMillis, long floorMillis, long ceilingMillis) {
+		this.defaultMillis = defaultMillis;
+		this.floorMillis = floorMillis;
+		this.ceilingMillis = ceilingMillis;
+	}
+
+	/**
+	 * @return the process wide timeouts connections use by default
+	 */
+	public static PhaseTimeouts getDefault() {
+		return defaultTimeouts;
+	}
+
+	@Override
+	public void record(AccountType type, Phase phase, String outcome, long nanos, long bytes) {
+		if ("ok".equals(outcome)) {
+			windows.computeIfAbsent(key(type, phase), k -> new Window()).add(nanos / 1000000);
+		} else if ("timeout".equals(outcome)) {
+			// the latency is unknown, but at least the timeout
+			long millis = Math.max(nanos / 1000000, timeoutMillis(type, phase));
+			windows.computeIfAbsent(key(type, phase), k -> new Window()).add(millis);
+		}
+	}
+
+	/**
+	 * @return the request timeout for the phase, in milliseconds
+	 */
+	public long timeoutMillis(AccountType type, Phase phase) {
+		Window window = windows.get(key(type, phase));
+		long p99 = window == null ? -1 : window.percentile99();
+		if (p99 < 0) {
+			return defaultMillis;
+		}
+		return Math.max(floorMillis, Math.min(ceilingMillis, p99 * MULTIPLIER));
+	}
+
+	private static String key(AccountType type, Phase phase) {
+		return type + "/" + phase;
+	}
+
+	/**
+	 * Ring of the latest latencies of one phase.
+	 */
+	private static final class Window {
+
+		private final long[] millis = new long[WINDOW];
+
+		private int count;
+
+		synchronized void add(long value) {
+			millis[count % WINDOW] = value;
+			count++;
+		}
+
+		/**
+		 * @return the 99th percentile, -1 with too few samples
+		 */
+		synchronized long percentile99() {
+			int size = Math.min(count, WINDOW);
+			if (size < MIN_SAMPLES) {
+				return -1;
+			}
+			long[] sorted = Arrays.copyOf(millis, size);
+			Arrays.sort(sorted);
+			return sorted[(int) Math.ceil(0.99 * size) - 1];
+		}
+	}
+}
@@ -0,0 +1,38 @@
+/**
+ *
+ */
+package in.dreambit.erputils.bank;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Data extracted from the account statement (quicklook) page.
+ *
+ */
+public class QuicklookPage {
+
+	private final Map<String, String> keyDetails;
+
+	private final ArrayList<List<String>> rows;
+
+	public QuicklookPage(Map<String, String> keyDetails, ArrayList<List<String>> rows) {
+		this.keyDetails = keyDetails;
+		this.rows = rows;
+	}
+
+	/**
+	 * @return the label / value pairs of the account summary
+	 */
+	public Map<String, String> getKeyDetails() {
+		return keyDetails;
+	}
+
+	/**
+	 * @return the cells of each <code>tblAcct</code> body row
+	 */
+	public ArrayList<List<String>> getRows() {
+		return rows;
+	}
+}
@@ -0,0 +1,633 @@
+/**
+ *
+ */
+package in.dreambit.erputils.bank;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jsoup.helper.StringUtil;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.Tag;
+import org.jsoup.select.Elements;
+
+/**
+ * Extracts the key details and <code>tblAcct</code> rows of the account
+ * statement page.
+ *
+ * {@link #parse(Document)} works on a full Jsoup DOM. {@link #parse(Reader)}
+ * tokenizes the page in a single pass and only keeps the source of the
+ * <code>formLabelBold</code> / <code>formDatanobrdr</code> elements and the
+ * <code>tblAcct</code> body cells; it yields the same values as the DOM path.
+ * Plain text cells are decoded directly, only cells holding nested markup are
+ * handed to the Jsoup fragment parser.
+ *
+ * {@link #fingerprint(byte[])} digests the raw page region holding the key
+ * details and <code>tblAcct</code>, so an unchanged page can be recognised
+ * without parsing it.
+ *
+ */
+public final class QuicklookParser {
+
+	private static final Logger logger = LogManager.getRootLogger();
+
+	private static final String KEY_CLASS = "formLabelBold";
+
+	private static final String VALUE_CLASS = "formDatanobrdr";
+
+	private static final String TABLE_ID = "tblAcct";
+
+	private QuicklookParser() {
+	}
+
+	public static QuicklookPage parse(Document document) {
+		Element element = document.getElementById(TABLE_ID);
+
+		if (element == null) {
+			logger.error("No account table found on account statement page");
+			throw new RuntimeException("No account table found on account statement page");
+		}
+
+		Elements elementsValue = document.getElementsByAttributeValue("class", VALUE_CLASS);
+		Elements elementsKey = document.getElementsByAttributeValue("class", KEY_CLASS);
+		Map<String, String> keyDetails = new HashMap<>();
+		logger.debug("Total Number of Informative Columns: {}", elementsValue.size());
+		for (int i = 0; i < elementsValue.size(); i++) {
+			Element value = elementsValue.get(i);
+			Element key = elementsKey.get(i);
+			keyDetails.put(key.text(), value.text());
+		}
+
+		Element tbody = element.getElementsByTag("tbody").get(0);
+
+		Elements rows = tbody.getElementsByTag("tr");
+		ArrayList<List<String>> transactions = new ArrayList<List<String>>();
+		for (int i = 0; i < rows.size(); i++) {
+			List<String> tableRow = new ArrayList<>();
+			Element row = rows.get(i);
+			Elements columns = row.getElementsByTag("td");
+
+			for (int j = 0; j < columns.size(); j++) {
+				Element column = columns.get(j);
+
+				if (j == 0 || j == 1) {
+					tableRow.add(column.text());
+				} else {
+					tableRow.add(cleanCellHtml(column.html()));
+				}
+			}
+
+			transactions.add(tableRow);
+		}
+		return new QuicklookPage(keyDetails, transactions);
+	}
+
+	public static QuicklookPage parse(Reader reader) throws IOException {
+		return new StreamParser(reader).parse();
+	}
+
+	/**
+	 * @return a digest of the raw page from the first key detail class to the
+	 *         end of <code>tblAcct</code>, or to the end of the page if a
+	 *         detail follows the table; null if there is no account table
+	 */
+	public static String fingerprint(byte[] page) {
+		int table = indexOfIgnoreCase(page, TABLE_ID, 0);
+		if (table < 0) {
+			return null;
+		}
+		int start = table;
+		int key = indexOfIgnoreCase(page, KEY_CLASS, 0);
+		int value = indexOfIgnoreCase(page, VALUE_CLASS, 0);
+		if (key >= 0) {
+			start = Math.min(start, key);
+		}
+		if (value >= 0) {
+			start = Math.min(start, value);
+		}
+
+		int tableEnd = indexOfIgnoreCase(page, "</table", table);
+		int end = tableEnd < 0 ? page.length : tableEnd;
+		if (indexOfIgnoreCase(page, VALUE_CLASS, end) >= 0 || indexOfIgnoreCase(page, KEY_CLASS, end) >= 0) {
+			end = page.length;
+		}
+
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(page, start, end - start);
+			return Base64.getEncoder().encodeToString(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * ASCII case insensitive search, enough for the markers in the page
+	 */
+	private static int indexOfIgnoreCase(byte[] page, String marker, int from) {
+		byte[] needle = marker.toLowerCase().getBytes(StandardCharsets.US_ASCII);
+		outer: for (int i = from; i <= page.length - needle.length; i++) {
+			for (int j = 0; j < needle.length; j++) {
+				int b = page[i + j];
+				if (b >= 'A' && b <= 'Z') {
+					b += 'a' - 'A';
+				}
+				if (b != needle[j]) {
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+
+	private static String cleanCellHtml(String html) {
+		return StringUtils.trim(StringUtils.replace(html, "&nbsp;", " "));
+	}
+
+	private enum Kind {
+		KEY, VALUE, CELL
+	}
+
+	private enum Section {
+		NONE, BODY, OTHER
+	}
+
+	/**
+	 * Element being captured, with the raw source of its content
+	 */
+	private static final class Region {
+
+		final Kind kind;
+
+		final String tagName;
+
+		final int column;
+
+		int depth;
+
+		boolean markup;
+
+		Region(Kind kind, String tagName, int column) {
+			this.kind = kind;
+			this.tagName = tagName;
+			this.column = column;
+		}
+
+		boolean isCell() {
+			return "td".equals(tagName) || "th".equals(tagName);
+		}
+	}
+
+	private static final class StartTag {
+
+		String name;
+
+		String id;
+
+		String cls;
+
+		boolean selfClosing;
+	}
+
+	private static final class StreamParser {
+
+		private final Reader reader;
+
+		private final char[] buffer = new char[8192];
+
+		private int pos;
+
+		private int limit;
+
+		/**
+		 * Source of the captured region, null when nothing is captured
+		 */
+		private StringBuilder raw;
+
+		private final StringBuilder rawBuffer = new StringBuilder(256);
+
+		private Region region;
+
+		private final List<String> keys = new ArrayList<>();
+
+		private final List<String> values = new ArrayList<>();
+
+		private final ArrayList<List<String>> transactions = new ArrayList<List<String>>();
+
+		/**
+		 * 0 before tblAcct, 1 inside it, 2 once its first body was read
+		 */
+		private int tableState;
+
+		private Section section = Section.NONE;
+
+		private boolean bodySeen;
+
+		private List<String> row;
+
+		StreamParser(Reader reader) {
+			this.reader = reader;
+		}
+
+		QuicklookPage parse() throws IOException {
+			int c;
+			while ((c = read()) != -1) {
+				if (c != '<') {
+					continue;
+				}
+
+				int tagStart = raw == null ? -1 : raw.length() - 1;
+				c = read();
+				if (c == '!' || c == '?') {
+					skipDeclaration(c);
+					if (region != null) {
+						region.markup = true;
+					}
+				} else if (c == '/') {
+					String name = readTagName(read());
+					skipToTagEnd();
+					if (!name.isEmpty()) {
+						endTag(name, tagStart);
+					}
+				} else if (isLetter(c)) {
+					StartTag tag = readStartTag(c);
+					startTag(tag, tagStart);
+					if ("script".equals(tag.name) || "style".equals(tag.name)) {
+						skipRawText(tag.name);
+					}
+				} else if (c == -1) {
+					break;
+				}
+			}
+
+			if (region != null) {
+				closeRegion(raw.length());
+			}
+			closeRow();
+
+			if (tableState == 0) {
+				logger.error("No account table found on account statement page");
+				throw new RuntimeException("No account table found on account statement page");
+			}
+
+			Map<String, String> keyDetails = new HashMap<>();
+			logger.debug("Total Number of Informative Columns: {}", values.size());
+			for (int i = 0; i < values.size(); i++) {
+				keyDetails.put(keys.get(i), values.get(i));
+			}
+			return new QuicklookPage(keyDetails, transactions);
+		}
+
+		private void startTag(StartTag tag, int tagStart) {
+			if (region != null) {
+				if (region.depth == 0 && region.isCell() && closesCell(tag.name)) {
+					closeRegion(tagStart);
+				} else {
+					region.markup = true;
+					if (!tag.selfClosing && !Tag.valueOf(tag.name).isEmpty()) {
+						region.depth++;
+					}
+					return;
+				}
+			}
+
+			if (tableState == 0 && TABLE_ID.equals(tag.id)) {
+				tableState = 1;
+				return;
+			}
+
+			if (tableState == 1) {
+				switch (tag.name) {
+				case "thead":
+				case "tfoot":
+				case "tbody":
+					closeRow();
+					if (section == Section.BODY) {
+						tableState = 2;
+					} else if ("tbody".equals(tag.name) && !bodySeen) {
+						section = Section.BODY;
+						bodySeen = true;
+					} else {
+						section = Section.OTHER;
+					}
+					return;
+				case "tr":
+					closeRow();
+					if (section == Section.NONE) {
+						// rows outside a section get an implied tbody, as in the DOM
+						section = bodySeen ? Section.OTHER : Section.BODY;
+						bodySeen = true;
+					}
+					if (section == Section.BODY) {
+						row = new ArrayList<>();
+					}
+					return;
+				case "td":
+					if (row != null) {
+						openRegion(Kind.CELL, tag.name, row.size());
+					}
+					return;
+				default:
+					break;
+				}
+			}
+
+			// same match as getElementsByAttributeValue: whole value, case insensitive
+			if (KEY_CLASS.equalsIgnoreCase(tag.cls)) {
+				openRegion(Kind.KEY, tag.name, 0);
+			} else if (VALUE_CLASS.equalsIgnoreCase(tag.cls)) {
+				openRegion(Kind.VALUE, tag.name, 0);
+			}
+		}
+
+		private void endTag(String name, int tagStart) {
+			if (region != null) {
+				if (region.depth > 0) {
+					region.depth--;
+					return;
+				}
+				if (name.equals(region.tagName)) {
+					closeRegion(tagStart);
+					return;
+				}
+				if (!region.isCell() || !closesCell(name)) {
+					// stray end tag, dropped by Jsoup as well
+					region.markup = true;
+					return;
+				}
+				closeRegion(tagStart);
+			}
+
+			if (tableState == 1) {
+				switch (name) {
+				case "tr":
+					closeRow();
+					break;
+				case "thead":
+				case "tfoot":
+				case "tbody":
+					closeRow();
+					if (section == Section.BODY) {
+						tableState = 2;
+					}
+					section = Section.NONE;
+					break;
+				case "table":
+					closeRow();
+					tableState = 2;
+					break;
+				default:
+					break;
+				}
+			}
+		}
+
+		private static boolean closesCell(String name) {
+			switch (name) {
+			case "td":
+			case "th":
+			case "tr":
+			case "tbody":
+			case "thead":
+			case "tfoot":
+			case "table":
+				return true;
+			default:
+				return false;
+			}
+		}
+
+		private void openRegion(Kind kind, String tagName, int column) {
+			region = new Region(kind, tagName, column);
+			rawBuffer.setLength(0);
+			raw = rawBuffer;
+		}
+
+		private void closeRegion(int contentEnd) {
+			raw.setLength(contentEnd);
+			String source = raw.toString();
+			Region closed = region;
+			region = null;
+			raw = null;
+
+			switch (closed.kind) {
+			case KEY:
+				keys.add(text(source, closed));
+				break;
+			case VALUE:
+				values.add(text(source, closed));
+				break;
+			default:
+				if (closed.column == 0 || closed.column == 1) {
+					row.add(text(source, closed));
+				} else {
+					row.add(cleanCellHtml(html(source, closed)));
+				}
+				break;
+			}
+		}
+
+		private void closeRow() {
+			if (row != null) {
+				transactions.add(row);
+				row = null;
+			}
+		}
+
+		private static String text(String source, Region region) {
+			if (!region.markup) {
+				return StringUtil.normaliseWhitespace(Parser.unescapeEntities(source, false)).trim();
+			}
+			return fragment(source, region).text();
+		}
+
+		private static String html(String source, Region region) {
+			if (!region.markup) {
+				String text = StringUtil.normaliseWhitespace(Parser.unescapeEntities(source, false));
+				return new TextNode(text, "").outerHtml().trim();
+			}
+			return fragment(source, region).html();
+		}
+
+		private static Element fragment(String source, Region region) {
+			Element context = new Element(Tag.valueOf(region.tagName), "");
+			List<Node> nodes = Parser.parseFragment(source, context, "");
+			// the returned list is backed by the fragment root, which appendChild detaches from
+			for (Node node : nodes.toArray(new Node[nodes.size()])) {
+				context.appendChild(node);
+			}
+			return context;
+		}
+
+		private StartTag readStartTag(int first) throws IOException {
+			StartTag tag = new StartTag();
+			tag.name = readTagName(first);
+
+			int c = read();
+			while (c != -1 && c != '>') {
+				if (isWhitespace(c)) {
+					c = read();
+					continue;
+				}
+				if (c == '/') {
+					c = read();
+					if (c == '>') {
+						tag.selfClosing = true;
+					}
+					continue;
+				}
+
+				StringBuilder name = new StringBuilder();
+				while (c != -1 && c != '=' && c != '>' && c != '/' && !isWhitespace(c)) {
+					name.append(Character.toLowerCase((char) c));
+					c = read();
+				}
+				while (isWhitespace(c)) {
+					c = read();
+				}
+
+				String value = "";
+				if (c == '=') {
+					c = read();
+					while (isWhitespace(c)) {
+						c = read();
+					}
+					StringBuilder valueBuilder = new StringBuilder();
+					if (c == '"' || c == '\'') {
+						int quote = c;
+						while ((c = read()) != -1 && c != quote) {
+							valueBuilder.append((char) c);
+						}
+						c = read();
+					} else {
+						while (c != -1 && c != '>' && !isWhitespace(c)) {
+							valueBuilder.append((char) c);
+							c = read();
+						}
+					}
+					value = valueBuilder.toString();
+				}
+
+				String attribute = name.toString();
+				if ("id".equals(attribute) && tag.id == null) {
+					tag.id = Parser.unescapeEntities(value, true);
+				} else if ("class".equals(attribute) && tag.cls == null) {
+					tag.cls = Parser.unescapeEntities(value, true);
+				}
+			}
+			return tag;
+		}
+
+		private String readTagName(int first) throws IOException {
+			StringBuilder name = new StringBuilder();
+			int c = first;
+			while (c != -1 && c != '>' && c != '/' && !isWhitespace(c)) {
+				name.append(Character.toLowerCase((char) c));
+				c = read();
+			}
+			if (c != -1) {
+				unread();
+			}
+			return name.toString();
+		}
+
+		private void skipToTagEnd() throws IOException {
+			int c;
+			while ((c = read()) != -1 && c != '>') {
+				// attributes of end tags are ignored
+			}
+		}
+
+		private void skipDeclaration(int first) throws IOException {
+			int c = read();
+			if (first == '!' && c == '-') {
+				c = read();
+				if (c == '-') {
+					int dashes = 0;
+					while ((c = read()) != -1) {
+						if (c == '>' && dashes >= 2) {
+							return;
+						}
+						dashes = c == '-' ? dashes + 1 : 0;
+					}
+					return;
+				}
+			}
+			while (c != -1 && c != '>') {
+				c = read();
+			}
+		}
+
+		private void skipRawText(String name) throws IOException {
+			int c;
+			while ((c = read()) != -1) {
+				if (c != '<') {
+					continue;
+				}
+				int tagStart = raw == null ? -1 : raw.length() - 1;
+				if ((c = read()) != '/') {
+					if (c != -1) {
+						unread();
+					}
+					continue;
+				}
+				String endName = readTagName(read());
+				if (name.equals(endName)) {
+					skipToTagEnd();
+					endTag(name, tagStart);
+					return;
+				}
+			}
+		}
+
+		private int read() throws IOException {
+			if (pos == limit) {
+				limit = reader.read(buffer, 0, buffer.length);
+				pos = 0;
+				if (limit <= 0) {
+					limit = 0;
+					return -1;
+				}
+			}
+			char c = buffer[pos++];
+			if (raw != null) {
+				raw.append(c);
+			}
+			return c;
+		}
+
+		/**
+		 * Steps back over the last character read, always within the buffer
+		 */
+		private void unread() {
+			pos--;
+			if (raw != null) {
+				raw.setLength(raw.length() - 1);
+			}
+		}
+
+		private static boolean isLetter(int c) {
+			return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+		}
+
+		private static boolean isWhitespace(int c) {
+			return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+		}
+	}
+}
@@ -3,11 +3,11 @@
  */
 package in.dreambit.erputils.bank;
 
-import java.io.BufferedReader;
-import java.io.File;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
@@ -15,30 +15,48 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import javax.script.Invocable;
-import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
-import javax.script.ScriptException;
-
-import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.jsoup.Connection.Response;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
 import com.fasterxml.jackson.core.JsonGenerationException;
 import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+
+import in.dreambit.erputils.metrics.MetricsRegistry;
+import in.dreambit.erputils.metrics.Phase;
+import in.dreambit.erputils.metrics.PhaseMetrics;
+import in.dreambit.erputils.metrics.PhaseRecorder;
+import in.dreambit.erputils.output.OutputFormat;
+import in.dreambit.erputils.output.OutputWriters;
+import in.dreambit.erputils.output.WrittenPageStore;
+import in.dreambit.erputils.support.Deadline;
+import in.dreambit.erputils.support.HttpTransport;
+import in.dreambit.erputils.support.LogRedactor;
+import in.dreambit.erputils.support.LoginThrottle;
+import in.dreambit.erputils.support.RetryPolicy;
+import in.dreambit.erputils.support.TransportRequest;
+import in.dreambit.erputils.support.TransportResponse;
+import in.dreambit.erputils.sync.StatementSync;
+import in.dreambit.erputils.sync.SyncResult;
 
 /**
  * @author Gaurav
@@ -46,42 +64,69 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  */
 public class SBBJConnect {
 
+	private static final Logger logger = LogManager.getRootLogger();
+
 	/**
-	 * Client side timeout for HTTP Connection
+	 * Script call of the login button, found on the login page only
 	 */
-	private static final int TIMEOUT = 10000; // 10 seconds
+	private static final String LOGIN_PAGE_MARKER = "submitLoginSha";
 
-	private static final Logger logger = LogManager.getRootLogger();
+	/**
+	 * Account number and branch code in a quick look link of the home page
+	 */
+	private static final Pattern ACCOUNT_LINK = Pattern
+			.compile("javascript:[a-zA-Z]*\\('(?<accountNumber>\\d*)\\D*(?<branchCode>\\d*).*");
+
+	public static final String DEFAULT_CORP_BASE_URL = "https://corp.sbbjonline.com/saral";
+
+	public static final String DEFAULT_RETAIL_BASE_URL = "https://retail.sbbjonline.com/retail";
+
+	/**
+	 * System properties overriding the base URLs, to point at a stand-in server
+	 */
+	public static final String CORP_BASE_URL_PROPERTY = "sbbj.corpBaseUrl";
+
+	public static final String RETAIL_BASE_URL_PROPERTY = "sbbj.retailBaseUrl";
 
 	/**
 	 * Logout URL for Personal Banking
 	 */
-	private final String RETAIL_ACC_STMT_URL = "https://retail.sbbjonline.com/retail/quicklook.htm";
+	private final String RETAIL_ACC_STMT_URL;
 
 	/**
 	 * Home Page URL for Personal Banking
 	 */
-	private final String RETAIL_HOME_PAGE_URL = "https://retail.sbbjonline.com/retail/mypage.htm";
+	private final String RETAIL_HOME_PAGE_URL;
 
 	/**
 	 * Password Change Pop up display URL
 	 */
-	private final String RETAIL_PASSWORD_CHANGE_URL = "https://retail.sbbjonline.com/retail/loginpwdchangedisplay.htm";
+	private final String RETAIL_PASSWORD_CHANGE_URL;
 
 	/**
 	 * Login Parameters POST Url for Personal Banking
 	 */
-	private final String RETAIL_LOGIN_SUBMIT_URL = "https://retail.sbbjonline.com/retail/loginsubmit.htm";
+	private final String RETAIL_LOGIN_SUBMIT_URL;
 
 	/**
 	 * Login Page URL for Personal Banking
 	 */
-	private final String RETAIL_PRE_LOGIN_URL = "https://retail.sbbjonline.com/retail/sbbjlogin.htm";
+	private final String RETAIL_PRE_LOGIN_URL;
+
+	/**
+	 * Logout URL for Personal Banking
+	 */
+	public final String RETAIL_LOGOUT_URL;
 
 	private String accountNumber;
 
 	private String branchCode;
 
+	/**
+	 * Branch code of every account linked to the login, in home page order
+	 */
+	private final Map<String, String> linkedAccounts = new LinkedHashMap<>();
+
 	private String homePageUrl;
 
 	private Map<String, String> sessionCookies;
@@ -90,152 +135,320 @@ public class SBBJConnect {
 
 	private ArrayList<List<String>> last10Transactions;
 
+	private List<Transaction> transactions;
+
+	/**
+	 * Statement row each of the transactions was parsed from
+	 */
+	private List<List<String>> transactionRows;
+
+	/**
+	 * Fingerprint of the statement page the details and rows were parsed from,
+	 * null when they no longer mirror a page
+	 */
+	private String pageFingerprint;
+
+	private boolean unchanged;
+
+	/**
+	 * Statement page not parsed yet because an earlier run already wrote it
+	 * out, parsed once its details or rows are asked for
+	 */
+	private TransportResponse unparsedPage;
+
+	private WrittenPageStore writtenPageStore;
+
+	/**
+	 * Account the written page fingerprints are those of
+	 */
+	private String writtenAccountKey;
+
+	/**
+	 * Fingerprint of the page last written to each output file of the account
+	 */
+	private Map<String, String> writtenFingerprints = new HashMap<>();
+
+	private SessionStore sessionStore;
+
+	private boolean streamingParser;
+
+	private LoginThrottle loginThrottle;
+
+	private String username;
+
 	/**
 	 * URL for Account statement in Corporate Saral Banking
 	 */
-	private final String CORP_ACCOUNT_STMT_URL = "https://corp.sbbjonline.com/saral/quicklook.htm";
+	private final String CORP_ACCOUNT_STMT_URL;
 
 	/**
 	 * Logout URL for Corporate Saral Banking
 	 */
-	public final String CORP_LOGOUT_URL = "https://corp.sbbjonline.com/saral/logout.htm";
+	public final String CORP_LOGOUT_URL;
 
 	/**
 	 * Login URL for Corporate Saral Banking
 	 */
-	private final String CORP_LOGIN_REFERRER_URL = "https://corp.sbbjonline.com/saral/sbbjlogin.htm";
+	private final String CORP_LOGIN_REFERRER_URL;
 
 	/**
 	 * Login POST URL for Corporate Saral Banking
 	 */
-	private final String CORP_LOGIN_SUBMIT_URL = "https://corp.sbbjonline.com/saral/loginsubmit.htm";
+	private final String CORP_LOGIN_SUBMIT_URL;
 
 	/**
 	 * Pre Login URL for Corporate Saral Banking
 	 */
-	private final String CORP_PRE_LOGIN_URL = "https://corp.sbbjonline.com/saral/login.htm";
+	private final String CORP_PRE_LOGIN_URL;
 
 	/**
 	 * Password Change Pop up display URL for Corporate Saral Banking
 	 */
-	private final String CORP_PASSWORD_CHANGE_URL = "https://corp.sbbjonline.com/saral/loginpwdchangedisplay.htm";
+	private final String CORP_PASSWORD_CHANGE_URL;
 
 	/**
 	 * Home Page URL for Corporate Saral Banking
 	 */
-	private final String CORP_HOME_PAGE_URL = "https://corp.sbbjonline.com/saral/mypage.htm";
+	private final String CORP_HOME_PAGE_URL;
 
 	/**
 	 * User Agent for all HTTP requests
 	 */
 	private final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/53.0.2785.116 Safari/537.36";
 
-	public SBBJConnect() {
-		keyDetails = new HashMap<>();
-		sessionCookies = new HashMap<>();
-	}
+	private final HttpTransport transport;
 
-	public void connectCorporate(String username, char[] password) throws Exception {
-		sessionCookies.clear();
-		logger.info("Starting SBBJ CORPORATE connection for username : {}", username);
+	private MetricsRegistry metrics = PhaseMetrics.getDefault();
 
-		Response firstResponse = Jsoup.connect(CORP_PRE_LOGIN_URL).timeout(TIMEOUT).userAgent(USER_AGENT).execute();
+	private PhaseTimeouts timeouts = PhaseTimeouts.getDefault();
 
-		logger.debug("Connected to: {}", CORP_PRE_LOGIN_URL);
-		logger.debug("Response Status: {}", firstResponse.statusCode());
-		logger.trace("Response Body: {}", firstResponse.body());
+	private final PhaseRecorder phases = new PhaseRecorder(MetricsRegistry.both(metrics, timeouts));
 
-		if (firstResponse.statusCode() != 200) {
-			logger.error("Unexpected behaviour");
-			throw new Exception("Unable to load login page");
-		}
+	/**
+	 * Deadline of the running fetch, cutting every request timeout short
+	 */
+	private Deadline deadline = Deadline.NONE;
 
-		sessionCookies.putAll(firstResponse.cookies());
-		printCookies();
+	public SBBJConnect() {
+		this(HttpTransport.getDefault());
+	}
 
-		Document loginPage = firstResponse.parse();
+	public SBBJConnect(HttpTransport transport) {
+		this(transport, System.getProperty(CORP_BASE_URL_PROPERTY, DEFAULT_CORP_BASE_URL),
+				System.getProperty(RETAIL_BASE_URL_PROPERTY, DEFAULT_RETAIL_BASE_URL));
+	}
 
-		if (!sessionCookies.containsKey("JSESSIONID")) {
-			logger.warn("Did not get JSESSIONID cookie from regular flow, falling back to alternate solution");
-			loginPage = getFirstResponse();
+	/**
+	 * @param corpBaseUrl
+	 *            base of the Corporate Saral Banking URLs, e.g.
+	 *            {@value #DEFAULT_CORP_BASE_URL}
+	 * @param retailBaseUrl
+	 *            base of the Personal Banking URLs, e.g.
+	 *            {@value #DEFAULT_RETAIL_BASE_URL}
+	 */
+	public SBBJConnect(HttpTransport transport, String corpBaseUrl, String retailBaseUrl) {
+		this.transport = transport;
+		RETAIL_ACC_STMT_URL = retailBaseUrl + "/quicklook.htm";
+		RETAIL_HOME_PAGE_URL = retailBaseUrl + "/mypage.htm";
+		RETAIL_PASSWORD_CHANGE_URL = retailBaseUrl + "/loginpwdchangedisplay.htm";
+		RETAIL_LOGIN_SUBMIT_URL = retailBaseUrl + "/loginsubmit.htm";
+		RETAIL_PRE_LOGIN_URL = retailBaseUrl + "/sbbjlogin.htm";
+		RETAIL_LOGOUT_URL = retailBaseUrl + "/logout.htm";
+		CORP_ACCOUNT_STMT_URL = corpBaseUrl + "/quicklook.htm";
+		CORP_LOGOUT_URL = corpBaseUrl + "/logout.htm";
+		CORP_LOGIN_REFERRER_URL = corpBaseUrl + "/sbbjlogin.htm";
+		CORP_LOGIN_SUBMIT_URL = corpBaseUrl + "/loginsubmit.htm";
+		CORP_PRE_LOGIN_URL = corpBaseUrl + "/login.htm";
+		CORP_PASSWORD_CHANGE_URL = corpBaseUrl + "/loginpwdchangedisplay.htm";
+		CORP_HOME_PAGE_URL = corpBaseUrl + "/mypage.htm";
+		keyDetails = new HashMap<>();
+		sessionCookies = new HashMap<>();
+	}
+
+	public void connect(AccountType accountType, String username, char[] password) throws Exception {
+		if (!username.equals(this.username)) {
+			pageFingerprint = null;
+			unparsedPage = null;
 		}
+		this.username = username;
 
-		String shaKey = getKeyFromLoginPage(loginPage);
+		if (sessionStore != null && resumeSession(accountType, username)) {
+			return;
+		}
 
-		Map<String, String> params = getFixedParam();
-		params.put("userName", username);
-		params.put("password", getEncryptedPassword(shaKey, username, password));
-		params.put("shapassword", getEncryptedHash(shaKey, username, password));
+		if (accountType == AccountType.CURRENT) {
+			connectCorporate(username, password);
+		} else {
+			connectPersonal(username, password);
+		}
 
-		Response redirectResponse = Jsoup.connect(CORP_LOGIN_SUBMIT_URL).timeout(TIMEOUT).data(params)
-				.followRedirects(false).referrer(CORP_PRE_LOGIN_URL).cookies(sessionCookies).userAgent(USER_AGENT)
-				.execute();
-		sessionCookies.putAll(redirectResponse.cookies());
+		if (sessionStore != null) {
+			StoredSession session = new StoredSession();
+			session.getCookies().putAll(sessionCookies);
+			session.setHomePageUrl(homePageUrl);
+			session.setAccountNumber(accountNumber);
+			session.setBranchCode(branchCode);
+			sessionStore.save(accountType, username, session);
+		}
+	}
 
-		logger.debug("Connected to: {}", CORP_LOGIN_SUBMIT_URL);
-		logger.debug("Response Status: {}", redirectResponse.statusCode());
-		logger.trace("Response Body: {}", redirectResponse.body());
+	/**
+	 * Logs in and reads the account statement within the deadline.
+	 *
+	 * @throws DeadlineExceededException
+	 *             naming the phase the fetch was in when time ran out
+	 */
+	public void connect(AccountType accountType, String username, char[] password, Deadline deadline)
+			throws Exception {
+		setDeadline(deadline);
+		try {
+			connect(accountType, username, password);
+		} finally {
+			setDeadline(Deadline.NONE);
+		}
+	}
 
-		if (redirectResponse.statusCode() != 302) {
-			logger.error("Login submit did not redirect");
-			if (redirectResponse.body().contains("You have already logged in")) {
-				logger.warn("Already logged into the account");
-				throw new RuntimeException("Account already logged in by other device");
-			} else if (redirectResponse.body().contains("Invalid")) {
-				logger.warn("Username / Password did not match");
-				throw new RuntimeException("Username / Password did not match");
-			} else {
-				logger.warn("Unable to redirect to authorised page from login");
-				throw new RuntimeException("Unable to redirect to authorised page from login");
+	/**
+	 * Re-reads the account statement over the current session, logging in
+	 * again only if there is no session yet or the bank rejected it.
+	 */
+	public void refresh(AccountType accountType, String username, char[] password) throws Exception {
+		if (homePageUrl != null && username.equals(this.username)) {
+			try {
+				readAccountBalance(accountType);
+				return;
+			} catch (DeadlineExceededException e) {
+				throw e;
+			} catch (Exception e) {
+				logger.info("Session expired, logging in again: {}", e.getMessage());
+				homePageUrl = null;
 			}
 		}
+		connect(accountType, username, password);
+	}
 
-		String locationUrl = redirectResponse.header("Location");
-
-		logger.debug("Redirecting to: {}", locationUrl);
+	/**
+	 * Refreshes within the deadline, see
+	 * {@link #connect(AccountType, String, char[], Deadline)}.
+	 */
+	public void refresh(AccountType accountType, String username, char[] password, Deadline deadline)
+			throws Exception {
+		setDeadline(deadline);
+		try {
+			refresh(accountType, username, password);
+		} finally {
+			setDeadline(Deadline.NONE);
+		}
+	}
 
-		Response authenticResponse = null;
+	/**
+	 * @return a copy of the details and rows read by the last statement fetch
+	 */
+	public AccountSnapshot snapshot() {
+		parseUnparsedPage();
+		return new AccountSnapshot(accountNumber, new HashMap<>(keyDetails), new ArrayList<>(last10Transactions),
+				System.currentTimeMillis());
+	}
 
-		if (CORP_PASSWORD_CHANGE_URL.equals(locationUrl)) {
-			logger.warn("Password validity is going to expire");
-			authenticResponse = Jsoup.connect(CORP_HOME_PAGE_URL).timeout(TIMEOUT).data("userName", username)
-					.data("password", "").data("keyString", "").cookies(sessionCookies).userAgent(USER_AGENT)
-					.referrer(locationUrl).execute();
+	/**
+	 * Restores a stored session and probes it by reading the account statement.
+	 * The stored session is only dropped when the bank answers with something
+	 * other than the statement, a failed request leaves it for the next run.
+	 *
+	 * @return true if the stored session was accepted by the bank
+	 * @throws IOException
+	 *             if the probe did not get an answer from the bank
+	 */
+	public boolean resumeSession(AccountType accountType, String username) throws IOException {
+		StoredSession session = sessionStore.load(accountType, username);
+		if (session == null) {
+			return false;
+		}
 
-			homePageUrl = CORP_HOME_PAGE_URL;
-		} else {
+		logger.info("Resuming stored SBBJ {} session for username : {}", accountType, username);
+		sessionCookies.clear();
+		sessionCookies.putAll(session.getCookies());
+		linkedAccounts.clear();
+		homePageUrl = session.getHomePageUrl();
+		accountNumber = session.getAccountNumber();
+		branchCode = session.getBranchCode();
 
-			homePageUrl = locationUrl;
-			authenticResponse = Jsoup.connect(locationUrl).timeout(TIMEOUT).cookies(sessionCookies)
-					.userAgent(USER_AGENT).referrer(CORP_LOGIN_REFERRER_URL).execute();
+		try {
+			readAccountBalance(accountType);
+			return true;
+		} catch (IOException e) {
+			sessionCookies.clear();
+			homePageUrl = null;
+			throw e;
+		} catch (RuntimeException e) {
+			// the login page or a page without the account table
+			logger.info("Stored session rejected, falling back to login: {}", e.getMessage());
+			sessionStore.remove(accountType, username);
+			sessionCookies.clear();
+			homePageUrl = null;
+			return false;
 		}
+	}
 
-		Document homePage = authenticResponse.parse();
+	public void connectCorporate(String username, char[] password) throws Exception {
+		login(AccountType.CURRENT, username, password);
+	}
 
-		logger.debug("Connected to: {}", CORP_HOME_PAGE_URL);
-		logger.debug("Response Status: {}", authenticResponse.statusCode());
-		logger.trace("Response Body: {}", authenticResponse.body());
+	public void connectPersonal(String username, char[] password) throws Exception {
+		login(AccountType.SAVINGS, username, password);
+	}
 
-		if (authenticResponse.statusCode() != 200) {
-			logger.error("Unable to by-pass change password popup");
-			throw new RuntimeException("Errow while by-passing change password popup");
+	private void login(AccountType accountType, String username, char[] password) throws Exception {
+		try {
+			Document loginPage = preLogin(accountType, username);
+			String locationUrl = submitLogin(accountType, username, password, loginPage);
+			openHomePage(accountType, username, locationUrl);
+			readAccountBalance(accountType);
+		} catch (Exception e) {
+			throw (Exception) failed(e);
 		}
+	}
 
-		getAccountNumberAndBranchCode(homePage);
-
-		readAccountBalance(CORP_ACCOUNT_STMT_URL);
+	/**
+	 * Starts a request of the phase, with the phase timeout cut to what is
+	 * left of the deadline.
+	 *
+	 * @throws DeadlineExceededException
+	 *             if nothing is left
+	 */
+	private TransportRequest request(String url, AccountType accountType, Phase phase)
+			throws DeadlineExceededException {
+		long remaining = deadline.remainingMillis();
+		if (remaining <= 0) {
+			throw new DeadlineExceededException(phase, deadline);
+		}
+		long timeout = Math.min(timeouts.timeoutMillis(accountType, phase), remaining);
+		return transport.connect(url).timeout((int) timeout).deadline(deadline);
 	}
 
-	public void connectPersonal(String username, char[] password) throws Exception {
+	/**
+	 * Loads the login page with a fresh session.
+	 *
+	 * @return the login page, carrying the SHA key for the password encoders
+	 */
+	Document preLogin(AccountType accountType, String username) throws IOException {
+		String preLoginUrl = accountType == AccountType.CURRENT ? CORP_PRE_LOGIN_URL : RETAIL_PRE_LOGIN_URL;
 		sessionCookies.clear();
+		homePageUrl = null;
+		logger.info("Starting SBBJ {} connection for username : {}",
+				accountType == AccountType.CURRENT ? "CORPORATE" : "Personal", username);
 
-		logger.info("Starting SBBJ Personal connection for username : {}", username);
-
-		Response firstResponse = Jsoup.connect(RETAIL_PRE_LOGIN_URL).timeout(TIMEOUT).userAgent(USER_AGENT).execute();
+		if (loginThrottle != null && !loginThrottle.acquire(preLoginUrl, deadline)) {
+			throw new DeadlineExceededException(Phase.PRE_LOGIN, deadline);
+		}
+		phases.begin(accountType, Phase.PRE_LOGIN);
+		TransportResponse firstResponse = request(preLoginUrl, accountType, Phase.PRE_LOGIN).userAgent(USER_AGENT)
+				.execute();
+		phases.bytes(firstResponse.bodyAsBytes().length);
 
-		logger.debug("Connected to: {}", RETAIL_PRE_LOGIN_URL);
+		logger.debug("Connected to: {}", preLoginUrl);
 		logger.debug("Response Status: {}", firstResponse.statusCode());
-		logger.trace("Response Body: {}", firstResponse.body());
+		traceBody(firstResponse);
 
 		if (firstResponse.statusCode() != 200) {
 			logger.error("Unexpected behaviour");
@@ -247,68 +460,107 @@ public class SBBJConnect {
 
 		Document loginPage = firstResponse.parse();
 
+		if (!sessionCookies.containsKey("JSESSIONID")) {
+			putRawCookies(firstResponse);
+		}
+
 		if (!sessionCookies.containsKey("JSESSIONID")) {
 			logger.warn("Did not get JSESSIONID cookie from regular flow, falling back to alternate solution");
-			loginPage = getFirstResponse();
+			loginPage = getFirstResponse(preLoginUrl);
 		}
+		return loginPage;
+	}
 
+	/**
+	 * Encodes the password with the key of the login page and submits the login
+	 * form.
+	 *
+	 * @return the URL the bank redirected the login to
+	 */
+	String submitLogin(AccountType accountType, String username, char[] password, Document loginPage)
+			throws IOException {
 		String shaKey = getKeyFromLoginPage(loginPage);
 
+		phases.begin(accountType, Phase.ENCRYPTION);
 		Map<String, String> params = getFixedParam();
-		params.put("bankCode", "${headerValues['BankCode'][0]}");
-		params.put("language", "english");
+		if (accountType == AccountType.SAVINGS) {
+			params.put("bankCode", "${headerValues['BankCode'][0]}");
+			params.put("language", "english");
+		}
 		params.put("userName", username);
 		params.put("password", getEncryptedPassword(shaKey, username, password));
 		params.put("shapassword", getEncryptedHash(shaKey, username, password));
 
-		Response redirectResponse = Jsoup.connect(RETAIL_LOGIN_SUBMIT_URL).timeout(TIMEOUT).data(params)
-				.followRedirects(false).referrer(RETAIL_PRE_LOGIN_URL).cookies(sessionCookies).userAgent(USER_AGENT)
-				.execute();
+		String submitUrl = accountType == AccountType.CURRENT ? CORP_LOGIN_SUBMIT_URL : RETAIL_LOGIN_SUBMIT_URL;
+		phases.begin(accountType, Phase.LOGIN_SUBMIT);
+		// a replayed login could lock the account or hit "already logged in"
+		TransportResponse redirectResponse = request(submitUrl, accountType, Phase.LOGIN_SUBMIT).data(params)
+				.followRedirects(false).idempotent(false)
+				.referrer(accountType == AccountType.CURRENT ? CORP_PRE_LOGIN_URL : RETAIL_PRE_LOGIN_URL)
+				.cookies(sessionCookies).userAgent(USER_AGENT).execute();
+		phases.bytes(redirectResponse.bodyAsBytes().length);
 		sessionCookies.putAll(redirectResponse.cookies());
 
-		logger.debug("Connected to: {}", RETAIL_LOGIN_SUBMIT_URL);
+		logger.debug("Connected to: {}", submitUrl);
 		logger.debug("Response Status: {}", redirectResponse.statusCode());
-		logger.trace("Response Body: {}", redirectResponse.body());
+		traceBody(redirectResponse);
 
 		if (redirectResponse.statusCode() != 302) {
 			logger.error("Login submit did not redirect");
-			if (redirectResponse.body().contains(" You have already logged in.")) {
+			if (redirectResponse.body().contains("You have already logged in")) {
 				logger.warn("Already logged into the account");
-				throw new Exception("Account already logged in by other device");
+				throw new RuntimeException("Account already logged in by other device");
 			} else if (redirectResponse.body().contains("Invalid")) {
 				logger.warn("Username / Password did not match");
-				throw new Exception("Username / Password did not match");
+				throw new RuntimeException("Username / Password did not match");
 			} else {
 				logger.warn("Unable to redirect to authorised page from login");
-				throw new Exception("Unable to redirect to authorised page from login");
+				throw new RuntimeException("Unable to redirect to authorised page from login");
 			}
 		}
 
 		String locationUrl = redirectResponse.header("Location");
 
 		logger.debug("Redirecting to: {}", locationUrl);
+		// the session is authenticated from here on and has to be logged out
+		homePageUrl = locationUrl;
+		return locationUrl;
+	}
 
-		Response authenticResponse = null;
+	/**
+	 * Follows the login redirect, by-passing the password change popup, and
+	 * reads the account number from the home page.
+	 */
+	void openHomePage(AccountType accountType, String username, String locationUrl) throws IOException {
+		String passwordChangeUrl = accountType == AccountType.CURRENT ? CORP_PASSWORD_CHANGE_URL
+				: RETAIL_PASSWORD_CHANGE_URL;
+		String pageUrl = accountType == AccountType.CURRENT ? CORP_HOME_PAGE_URL : RETAIL_HOME_PAGE_URL;
+
+		phases.begin(accountType, Phase.REDIRECT);
+		TransportResponse authenticResponse = null;
 
-		if (RETAIL_PASSWORD_CHANGE_URL.equals(locationUrl)) {
+		if (passwordChangeUrl.equals(locationUrl)) {
 			logger.warn("Password validity is going to expire");
-			authenticResponse = Jsoup.connect(RETAIL_HOME_PAGE_URL).timeout(TIMEOUT).data("userName", username)
+			authenticResponse = request(pageUrl, accountType, Phase.REDIRECT).data("userName", username)
 					.data("password", "").data("keyString", "").cookies(sessionCookies).userAgent(USER_AGENT)
 					.referrer(locationUrl).execute();
-
-			homePageUrl = RETAIL_HOME_PAGE_URL;
 		} else {
 
-			homePageUrl = locationUrl;
-			authenticResponse = Jsoup.connect(locationUrl).timeout(TIMEOUT).cookies(sessionCookies)
-					.userAgent(USER_AGENT).referrer(RETAIL_PRE_LOGIN_URL).execute();
+			pageUrl = locationUrl;
+			authenticResponse = request(locationUrl, accountType, Phase.REDIRECT).cookies(sessionCookies)
+					.userAgent(USER_AGENT)
+					.referrer(accountType == AccountType.CURRENT ? CORP_LOGIN_REFERRER_URL : RETAIL_PRE_LOGIN_URL)
+					.execute();
 		}
+		homePageUrl = pageUrl;
+		phases.bytes(authenticResponse.bodyAsBytes().length);
 
+		phases.begin(accountType, Phase.HOME_PAGE);
 		Document homePage = authenticResponse.parse();
 
-		logger.debug("Connected to: {}", RETAIL_HOME_PAGE_URL);
+		logger.debug("Connected to: {}", pageUrl);
 		logger.debug("Response Status: {}", authenticResponse.statusCode());
-		logger.trace("Response Body: {}", authenticResponse.body());
+		traceBody(authenticResponse);
 
 		if (authenticResponse.statusCode() != 200) {
 			logger.error("Unable to by-pass change password popup");
@@ -316,146 +568,265 @@ public class SBBJConnect {
 		}
 
 		getAccountNumberAndBranchCode(homePage);
+	}
+
+	/**
+	 * Charges a failure to the running phase, for callers driving the login
+	 * stages themselves.
+	 *
+	 * @return the failure, or a {@link DeadlineExceededException} naming the
+	 *         phase if it is a timeout the deadline cut short
+	 */
+	Throwable failed(Throwable e) {
+		Phase phase = phases.getPhase();
+		phases.fail(e);
+		return e instanceof IOException ? outOfTime((IOException) e, phase) : e;
+	}
+
+	private IOException outOfTime(IOException e, Phase phase) {
+		if (phase == null || !(e instanceof InterruptedIOException) || e instanceof DeadlineExceededException
+				|| !deadline.isExpired()) {
+			return e;
+		}
+		DeadlineExceededException exceeded = new DeadlineExceededException(phase, deadline);
+		exceeded.initCause(e);
+		return exceeded;
+	}
+
+	/**
+	 * @param deadline
+	 *            deadline of the following requests, for callers driving the
+	 *            login stages themselves
+	 */
+	void setDeadline(Deadline deadline) {
+		this.deadline = deadline;
+	}
 
-		readAccountBalance(RETAIL_ACC_STMT_URL);
+	/**
+	 * @return whether a login reached the home page, so there is a session to
+	 *         log out of
+	 */
+	boolean isLoggedIn() {
+		return homePageUrl != null;
+	}
+
+	/**
+	 * Reads the account statement of the logged in account.
+	 */
+	void readAccountBalance(AccountType accountType) throws IOException {
+		readAccountBalance(accountType == AccountType.CURRENT ? CORP_ACCOUNT_STMT_URL : RETAIL_ACC_STMT_URL);
 	}
 
+	/**
+	 * Reads every account linked to the login from the home page. The last one
+	 * becomes the account of this connection.
+	 */
 	public void getAccountNumberAndBranchCode(Document homePage) {
 
 		Elements links = homePage.getElementsByAttributeValueContaining("href", "javascript:submitQuickLookForm");
+		linkedAccounts.clear();
 		String data = "";
 		for (int i = 0; i < links.size(); i++) {
 			Element link = links.get(i);
 			data = link.attr("href");
-		}
 
-		Pattern pattern = Pattern.compile("javascript:[a-zA-Z]*\\('(?<accountNumber>\\d*)\\D*(?<branchCode>\\d*).*");
-
-		Matcher matcher = pattern.matcher(data);
-
-		boolean matches = matcher.matches();
+			Matcher matcher = ACCOUNT_LINK.matcher(data);
+			if (!matcher.matches()) {
+				logger.warn("Unable to get account number / branch code from string: {}", data);
+				continue;
+			}
+			linkedAccounts.put(matcher.group("accountNumber"), matcher.group("branchCode"));
+		}
 
-		if (!matches) {
+		if (linkedAccounts.isEmpty()) {
 			logger.error("Unable to get account number / branch code from string: {}", data);
 			throw new RuntimeException("No macth found for account number / branch code");
 		}
 
-		String accountNumber = matcher.group("accountNumber");
-		String branchCode = matcher.group("branchCode");
-
-		if (accountNumber != null && branchCode != null) {
-			this.accountNumber = accountNumber;
-			this.branchCode = branchCode;
+		for (Map.Entry<String, String> account : linkedAccounts.entrySet()) {
+			this.accountNumber = account.getKey();
+			this.branchCode = account.getValue();
 			logger.debug("Account Number: {}, Branch Code: {}", accountNumber, branchCode);
-		} else {
-			logger.error("Unable to get account number and branch code from home page with string: {}", data);
-			throw new RuntimeException("Errow while getting account number and branch code");
 		}
 	}
 
-	public String getEncryptedHash(String shaKey, String username, char[] password) {
-		logger.debug("Starting Hash encryption");
-		ScriptEngineManager manager = new ScriptEngineManager();
-		ScriptEngine engine2 = manager.getEngineByName("JavaScript");
-
-		InputStream jsFileStream = SBBJConnect.class.getResourceAsStream("/sbbj/js/sha512.js");
-		if (jsFileStream == null) {
-			logger.error("File not found : /sbbj/js/md5.js/sbbj/js/sha512.js");
+	/**
+	 * @return branch code by account number of every account linked to the
+	 *         login, in home page order; only the account of this connection
+	 *         for a resumed session
+	 */
+	public Map<String, String> getLinkedAccounts() {
+		if (linkedAccounts.isEmpty() && accountNumber != null) {
+			return Collections.singletonMap(accountNumber, branchCode);
 		}
+		return Collections.unmodifiableMap(linkedAccounts);
+	}
 
+	/**
+	 * Reads the statements of all linked accounts at once, on a pool of up to
+	 * four threads.
+	 *
+	 * @see #fetchAllAccounts(AccountType, Executor)
+	 */
+	public Map<String, AccountSnapshot> fetchAllAccounts(AccountType accountType) throws IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(4, getLinkedAccounts().size())));
 		try {
-			engine2.eval(new BufferedReader(new InputStreamReader(jsFileStream, StandardCharsets.UTF_8)));
-		} catch (ScriptException e) {
-			logger.error("Script Execution Error", e);
+			return fetchAllAccounts(accountType, executor);
+		} finally {
+			executor.shutdown();
 		}
+	}
 
-		Invocable invocable2 = (Invocable) engine2;
-
-		Object encryptedSHAPass = null;
-		try {
-			encryptedSHAPass = invocable2.invokeFunction("encryptSha2LoginPassword", shaKey, username,
-					new String(password));
-		} catch (NoSuchMethodException | ScriptException e) {
-			logger.error("Method Execution Error", e);
+	/**
+	 * Reads the statements of all linked accounts at once, logging in again
+	 * if the bank rejected the session, as {@link #refresh} does. This
+	 * connection's own statement is then read again as well.
+	 */
+	public Map<String, AccountSnapshot> fetchAllAccounts(AccountType accountType, String username, char[] password)
+			throws Exception {
+		if (homePageUrl != null && username.equals(this.username)) {
+			try {
+				return fetchAllAccounts(accountType);
+			} catch (RuntimeException e) {
+				logger.info("Session expired, logging in again: {}", e.getMessage());
+				homePageUrl = null;
+			}
 		}
-		logger.debug("Encrypted SHA Password: {}", encryptedSHAPass);
-		return encryptedSHAPass.toString();
+		connect(accountType, username, password);
+		return fetchAllAccounts(accountType);
 	}
 
-	public String getEncryptedPassword(String shaKey, String username, char[] password) {
-		logger.debug("Starting password encryption");
-		ScriptEngineManager manager = new ScriptEngineManager();
-
-		ScriptEngine engine = manager.getEngineByName("JavaScript");
-		logger.debug("Got script engine");
-		InputStream jsFileStream = SBBJConnect.class.getResourceAsStream("/sbbj/js/md5.js");
-		if (jsFileStream == null) {
-			logger.error("File not found : /sbbj/js/md5.js");
+	/**
+	 * Reads the statement of every account linked to the login concurrently,
+	 * all over the current session. The details and rows of this connection
+	 * are left as they are.
+	 *
+	 * @return key details and rows by account number, in home page order
+	 * @throws IOException
+	 *             naming the first account whose statement could not be read
+	 */
+	public Map<String, AccountSnapshot> fetchAllAccounts(AccountType accountType, Executor executor)
+			throws IOException {
+		if (homePageUrl == null) {
+			throw new IllegalStateException("Not logged in");
 		}
 
-		logger.debug("Loaded JS file");
-
-		try {
-			engine.eval(new BufferedReader(new InputStreamReader(jsFileStream, StandardCharsets.UTF_8)));
-		} catch (ScriptException e) {
-			logger.error("Script Execution Error", e);
+		Map<String, CompletableFuture<AccountSnapshot>> fetches = new LinkedHashMap<>();
+		for (Map.Entry<String, String> account : getLinkedAccounts().entrySet()) {
+			fetches.put(account.getKey(), CompletableFuture.supplyAsync(() -> {
+				try {
+					return readAccount(accountType, account.getKey(), account.getValue());
+				} catch (IOException e) {
+					throw new CompletionException(e);
+				}
+			}, executor));
 		}
 
-		logger.debug("Invoking function");
-		Invocable invocable = (Invocable) engine;
+		Map<String, AccountSnapshot> snapshots = new LinkedHashMap<>();
+		for (Map.Entry<String, CompletableFuture<AccountSnapshot>> fetch : fetches.entrySet()) {
+			try {
+				snapshots.put(fetch.getKey(), fetch.getValue().get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while reading account statements");
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				throw new IOException("Unable to read statement of account " + fetch.getKey(), cause);
+			}
+		}
+		return snapshots;
+	}
 
-		Object encryptedPassword = null;
+	/**
+	 * Reads the statement of one linked account, with its own phase timing so
+	 * that several can run at once. Pages without the account table are read
+	 * again as in {@link #readAccountBalance(String)}.
+	 */
+	private AccountSnapshot readAccount(AccountType accountType, String accountNumber, String branchCode)
+			throws IOException {
+		String url = accountType == AccountType.CURRENT ? CORP_ACCOUNT_STMT_URL : RETAIL_ACC_STMT_URL;
+		PhaseRecorder recorder = new PhaseRecorder(MetricsRegistry.both(metrics, timeouts));
+		recorder.begin(accountType, Phase.QUICKLOOK);
 		try {
-			encryptedPassword = invocable.invokeFunction("encryptLoginPassword", shaKey, username,
-					new String(password));
-		} catch (NoSuchMethodException e) {
-			logger.error("Method Execution Error", e);
-		} catch (ScriptException e) {
-			logger.error("Script Execution Error", e);
-		}
-		logger.debug("Encrypted Password: {}", encryptedPassword);
-
-		return encryptedPassword.toString();
-	}
-
-	public Document getFirstResponse() throws IOException {
-		Process cmdProc = Runtime.getRuntime().exec("curl -v https://corp.sbbjonline.com/saral/login.htm");
-		BufferedReader stdoutReader = new BufferedReader(new InputStreamReader(cmdProc.getInputStream()));
-		String line;
-		StringBuilder html = new StringBuilder();
-		while ((line = stdoutReader.readLine()) != null) {
-			html.append(line);
-		}
-
-		logger.trace("Response : {}", html.toString());
-
-		Pattern jsessionIdPattern = Pattern.compile(": JSESSIONID=(.*?);");
-
-		StringBuilder error = new StringBuilder();
-		BufferedReader stderrReader = new BufferedReader(new InputStreamReader(cmdProc.getErrorStream()));
-		while ((line = stderrReader.readLine()) != null) {
-			error.append(line);
-			if (line.contains("Set-Cookie")) {
-				Matcher matcher = jsessionIdPattern.matcher(line);
-				if (matcher.find()) {
-					String cookie = matcher.group(1);
-					logger.info("Cookie Found JSESSIONID={}", cookie);
-					sessionCookies.put("JSESSIONID", cookie);
-				} else {
-					logger.error("curl fallback mechanism failed, unable to get cookie JSESSIONID");
+			for (int attempt = 1;; attempt++) {
+				TransportResponse response = request(url, accountType, Phase.QUICKLOOK)
+						.data("accountNo", accountNumber).data("branchCode", branchCode).referrer(homePageUrl)
+						.userAgent(USER_AGENT).cookies(sessionCookies).execute();
+				recorder.bytes(response.bodyAsBytes().length);
+				QuicklookPage page;
+				try {
+					page = streamingParser ? QuicklookParser.parse(response.bodyReader())
+							: QuicklookParser.parse(response.parse());
+				} catch (RuntimeException e) {
+					if (!readAgain(response, e, attempt)) {
+						throw e;
+					}
+					continue;
 				}
+				recorder.end();
+				return new AccountSnapshot(accountNumber, page.getKeyDetails(), page.getRows(),
+						System.currentTimeMillis());
 			}
+		} catch (IOException | RuntimeException e) {
+			recorder.fail(e);
+			throw e;
 		}
+	}
+
+	public String getEncryptedHash(String shaKey, String username, char[] password) {
+		logger.debug("Starting Hash encryption");
+		String encryptedSHAPass = CredentialEncoder.encryptSha2LoginPassword(shaKey, username, password);
+		logger.debug("Encrypted SHA Password: {}", LogRedactor.mask(encryptedSHAPass));
+		return encryptedSHAPass;
+	}
+
+	public String getEncryptedPassword(String shaKey, String username, char[] password) {
+		logger.debug("Starting password encryption");
+		String encryptedPassword = CredentialEncoder.encryptLoginPassword(shaKey, username, password);
+		logger.debug("Encrypted Password: {}", LogRedactor.mask(encryptedPassword));
+		return encryptedPassword;
+	}
+
+	/**
+	 * Fallback for when the cookie parser did not yield JSESSIONID: fetches the
+	 * login page again without following redirects and takes the cookies from
+	 * the raw <code>Set-Cookie</code> headers.
+	 */
+	public Document getFirstResponse(String preLoginUrl) throws IOException {
+		TransportResponse response = request(preLoginUrl,
+				preLoginUrl.equals(CORP_PRE_LOGIN_URL) ? AccountType.CURRENT : AccountType.SAVINGS, Phase.PRE_LOGIN)
+						.userAgent(USER_AGENT).followRedirects(false).execute();
 
-		logger.trace("Error Response : {}", error.toString());
+		logger.debug("Connected to: {}", preLoginUrl);
+		logger.debug("Response Status: {}", response.statusCode());
+		traceBody(response);
 
-		Document loginPage = Jsoup.parse(html.toString(), "https://corp.sbbjonline.com/saral");
-		if (cmdProc.exitValue() == 0) {
-			logger.debug("Curl Command executed successfully. Process to retriev cookie and sha key start...");
+		putRawCookies(response);
+
+		if (sessionCookies.containsKey("JSESSIONID")) {
+			logger.info("Cookie Found JSESSIONID={}", LogRedactor.mask(sessionCookies.get("JSESSIONID")));
 		} else {
-			logger.error("Error in firing curl command");
+			logger.error("Fallback mechanism failed, unable to get cookie JSESSIONID");
+		}
+		return response.parse();
+	}
+
+	/**
+	 * Copies cookies from the raw <code>Set-Cookie</code> headers, including
+	 * ones the cookie spec rejected.
+	 */
+	private void putRawCookies(TransportResponse response) {
+		for (String setCookie : response.headers("Set-Cookie")) {
+			int end = setCookie.indexOf(';');
+			String pair = end < 0 ? setCookie : setCookie.substring(0, end);
+			int separator = pair.indexOf('=');
+			if (separator > 0) {
+				sessionCookies.put(pair.substring(0, separator).trim(), pair.substring(separator + 1).trim());
+			}
 		}
-		return loginPage;
 	}
 
 	public Map<String, String> getFixedParam() throws UnsupportedEncodingException {
@@ -475,6 +846,7 @@ public class SBBJConnect {
 	 * @return the keyDetails
 	 */
 	public Map<String, String> getKeyDetails() {
+		parseUnparsedPage();
 		return keyDetails;
 	}
 
@@ -482,7 +854,7 @@ public class SBBJConnect {
 	 * @param loginPage
 	 * @return
 	 */
-	private String getKeyFromLoginPage(Document loginPage) {
+	String getKeyFromLoginPage(Document loginPage) {
 		Element submitButton = loginPage.getElementById("Button2");
 
 		if (submitButton == null) {
@@ -497,21 +869,85 @@ public class SBBJConnect {
 	}
 
 	/**
-	 * @return the last10Transactions
+	 * @return the cells of each statement row, as shown on the page
 	 */
 	public ArrayList<List<String>> getLast10Transactions() {
+		parseUnparsedPage();
 		return last10Transactions;
 	}
 
+	/**
+	 * @return the statement rows parsed into typed transactions
+	 */
+	public List<Transaction> getTransactions() {
+		parseUnparsedPage();
+		return transactions;
+	}
+
+	/**
+	 * Syncs the statement against the account watermark and narrows the
+	 * transactions, and the rows written by
+	 * {@link #writeTransactionDetails(String, String, boolean)}, to those newer
+	 * than the previous sync. The watermark is not moved, see
+	 * {@link StatementSync#commit(String, SyncResult)}.
+	 */
+	public SyncResult syncTransactions(StatementSync sync, AccountType accountType) throws IOException {
+		parseUnparsedPage();
+		SyncResult result = sync.sync(accountType + "-" + accountNumber, transactions);
+
+		Set<Long> fresh = new HashSet<>();
+		for (Transaction transaction : result.getNewTransactions()) {
+			fresh.add(transaction.fingerprint());
+		}
+
+		ArrayList<List<String>> rows = new ArrayList<List<String>>();
+		List<Transaction> narrowed = new ArrayList<>();
+		for (int i = 0; i < transactions.size(); i++) {
+			if (fresh.contains(transactions.get(i).fingerprint())) {
+				rows.add(transactionRows.get(i));
+				narrowed.add(transactions.get(i));
+			}
+		}
+
+		last10Transactions = rows;
+		transactions = narrowed;
+		transactionRows = rows;
+		// the rows no longer are those of the page
+		pageFingerprint = null;
+		return result;
+	}
+
+	/**
+	 * @return the account number read from the home page
+	 */
+	public String getAccountNumber() {
+		return accountNumber;
+	}
+
+	/**
+	 * @return the statement rows in columnar form
+	 */
+	public TransactionBatch getTransactionBatch() {
+		parseUnparsedPage();
+		return TransactionBatch.of(transactions);
+	}
+
 	public String getSHAKey(String functionCall) {
 		String shaKey = null;
 		functionCall = functionCall.replace("return submitLoginSha('", "");
 		functionCall = functionCall.replace("');", "");
 		shaKey = functionCall;
-		logger.debug("SHA Key: {}", shaKey);
+		logger.debug("SHA Key: {}", LogRedactor.mask(shaKey));
 		return shaKey;
 	}
 
+	public void logout(AccountType accountType) throws IOException {
+		logout(accountType == AccountType.CURRENT ? CORP_LOGOUT_URL : RETAIL_LOGOUT_URL);
+		if (sessionStore != null && username != null) {
+			sessionStore.remove(accountType, username);
+		}
+	}
+
 	public void logout(String logoutUrl) throws IOException {
 
 		if (homePageUrl == null) {
@@ -519,8 +955,20 @@ public class SBBJConnect {
 			return;
 		}
 
-		Response logOutResponse = Jsoup.connect(logoutUrl).cookies(sessionCookies).referrer(homePageUrl)
-				.userAgent(USER_AGENT).execute();
+		AccountType accountType = logoutUrl.equals(CORP_LOGOUT_URL) ? AccountType.CURRENT : AccountType.SAVINGS;
+		phases.begin(accountType, Phase.LOGOUT);
+		TransportResponse logOutResponse;
+		try {
+			logOutResponse = request(logoutUrl, accountType, Phase.LOGOUT).cookies(sessionCookies)
+					.referrer(homePageUrl).userAgent(USER_AGENT).execute();
+		} catch (IOException e) {
+			throw (IOException) failed(e);
+		} catch (RuntimeException e) {
+			phases.fail(e);
+			throw e;
+		}
+		phases.bytes(logOutResponse.bodyAsBytes().length);
+		phases.end();
 		if (logOutResponse.statusCode() == 200) {
 			logger.debug("Logout Successfully");
 		} else {
@@ -528,123 +976,269 @@ public class SBBJConnect {
 		}
 	}
 
-	public void printCookies() {
-		for (Map.Entry<String, String> cookie : sessionCookies.entrySet()) {
-			logger.debug("{} - {}", cookie.getKey(), cookie.getValue());
-		}
+	/**
+	 * @param sessionStore
+	 *            store used by {@link #connect(AccountType, String, char[])} to
+	 *            reuse authenticated sessions, null to always log in
+	 */
+	public void setSessionStore(SessionStore sessionStore) {
+		this.sessionStore = sessionStore;
 	}
 
-	public void readAccountBalance(String accountBalanceUrl) throws IOException {
-		Response response = Jsoup.connect(accountBalanceUrl).data("accountNo", accountNumber)
-				.data("branchCode", branchCode).referrer(homePageUrl).userAgent(USER_AGENT).cookies(this.sessionCookies)
-				.execute();
+	/**
+	 * @param metrics
+	 *            receiver of the login, statement and logout phase timings,
+	 *            {@link PhaseMetrics#getDefault()} unless set
+	 */
+	public void setMetrics(MetricsRegistry metrics) {
+		this.metrics = metrics;
+		phases.setRegistry(MetricsRegistry.both(metrics, timeouts));
+	}
 
-		Document document = response.parse();
+	/**
+	 * @param timeouts
+	 *            adaptive request timeouts, fed by this connection's phase
+	 *            timings, {@link PhaseTimeouts#getDefault()} unless set
+	 */
+	public void setTimeouts(PhaseTimeouts timeouts) {
+		this.timeouts = timeouts;
+		phases.setRegistry(MetricsRegistry.both(metrics, timeouts));
+	}
 
-		Elements elementsValue = document.getElementsByAttributeValue("class", "formDatanobrdr");
-		Elements elementsKey = document.getElementsByAttributeValue("class", "formLabelBold");
-		keyDetails.clear();
-		logger.debug("Total Number of Informative Columns: {}", elementsValue.size());
-		for (int i = 0; i < elementsValue.size(); i++) {
-			Element value = elementsValue.get(i);
-			Element key = elementsKey.get(i);
-			keyDetails.put(key.text(), value.text());
-		}
+	/**
+	 * @param writtenPageStore
+	 *            record of the page each output file last received, kept
+	 *            across runs so an unchanged page is neither parsed nor
+	 *            written again; null to remember it for this connection only
+	 */
+	public void setWrittenPageStore(WrittenPageStore writtenPageStore) {
+		this.writtenPageStore = writtenPageStore;
+		writtenAccountKey = null;
+	}
 
-		Element element = document.getElementById("tblAcct");
+	/**
+	 * @param loginThrottle
+	 *            paces the logins of this connection with those of others
+	 *            sharing the throttle, null to log in right away
+	 */
+	public void setLoginThrottle(LoginThrottle loginThrottle) {
+		this.loginThrottle = loginThrottle;
+	}
 
-		Element tbody = element.getElementsByTag("tbody").get(0);
+	/**
+	 * @param streamingParser
+	 *            whether the account statement page is tokenized in one pass
+	 *            instead of being parsed into a full DOM
+	 */
+	public void setStreamingParser(boolean streamingParser) {
+		this.streamingParser = streamingParser;
+	}
 
-		Elements rows = tbody.getElementsByTag("tr");
-		last10Transactions = new ArrayList<List<String>>();
-		for (int i = 0; i < rows.size(); i++) {
-			List<String> tableRow = new ArrayList<>();
-			Element row = rows.get(i);
-			Elements columns = row.getElementsByTag("td");
+	/**
+	 * Logs a sample of response bodies at trace level, cut short and with
+	 * credentials masked. Nothing is decoded unless trace is enabled.
+	 */
+	private static void traceBody(TransportResponse response) {
+		if (logger.isTraceEnabled() && LogRedactor.sampleBody()) {
+			logger.trace("Response Body: {}", LogRedactor.body(response.body()));
+		}
+	}
 
-			for (int j = 0; j < columns.size(); j++) {
-				Element column = columns.get(j);
+	public void printCookies() {
+		for (Map.Entry<String, String> cookie : sessionCookies.entrySet()) {
+			logger.debug("{} - {}", cookie.getKey(), LogRedactor.mask(cookie.getValue()));
+		}
+	}
 
-				if (j == 0 || j == 1) {
-					tableRow.add(column.text());
-				} else {
-					String text = column.html().replaceAll("&nbsp;", " ");
-					String trimmedText = StringUtils.trim(text);
-					tableRow.add(trimmedText);
+	public void readAccountBalance(String accountBalanceUrl) throws IOException {
+		AccountType accountType = accountBalanceUrl.equals(CORP_ACCOUNT_STMT_URL) ? AccountType.CURRENT
+				: AccountType.SAVINGS;
+		unchanged = false;
+		loadWrittenFingerprints(accountType + "-" + accountNumber);
+		phases.begin(accountType, Phase.QUICKLOOK);
+		try {
+			for (int attempt = 1;; attempt++) {
+				TransportResponse response = request(accountBalanceUrl, accountType, Phase.QUICKLOOK)
+						.data("accountNo", accountNumber).data("branchCode", branchCode).referrer(homePageUrl)
+						.userAgent(USER_AGENT).cookies(this.sessionCookies).execute();
+				phases.bytes(response.bodyAsBytes().length);
+
+				String fingerprint = QuicklookParser.fingerprint(response.bodyAsBytes());
+				if (fingerprint != null && fingerprint.equals(pageFingerprint)) {
+					logger.debug("Statement page unchanged, not parsed again");
+					unchanged = true;
+					break;
+				}
+				if (fingerprint != null && writtenFingerprints.containsValue(fingerprint)) {
+					logger.debug("Statement page written out by an earlier run, parsed only if read");
+					unchanged = true;
+					unparsedPage = response;
+					pageFingerprint = fingerprint;
+					break;
 				}
-			}
 
-			last10Transactions.add(tableRow);
+				QuicklookPage page;
+				try {
+					page = streamingParser ? QuicklookParser.parse(response.bodyReader())
+							: QuicklookParser.parse(response.parse());
+				} catch (RuntimeException e) {
+					if (!readAgain(response, e, attempt)) {
+						throw e;
+					}
+					continue;
+				}
+				apply(page);
+				pageFingerprint = fingerprint;
+				break;
+			}
+			phases.end();
+		} catch (IOException e) {
+			throw (IOException) failed(e);
+		} catch (RuntimeException e) {
+			phases.fail(e);
+			throw e;
 		}
 	}
 
-	public void writeKeyDetails(String filePath, String type, boolean toConsole)
-			throws JsonGenerationException, JsonMappingException, IOException {
-
-		if ("json".equals(type)) {
-			ObjectMapper mapper = new ObjectMapper();
+	/**
+	 * Backs off before reading a statement page that did not parse again.
+	 *
+	 * @return false for the login page, as the session is gone and reading
+	 *         again will not help, or once the retry policy or the deadline is
+	 *         used up
+	 */
+	private boolean readAgain(TransportResponse response, RuntimeException e, int attempt)
+			throws InterruptedIOException {
+		RetryPolicy retryPolicy = transport.getRetryPolicy();
+		if (response.body().contains(LOGIN_PAGE_MARKER) || !retryPolicy.canRetry(attempt)
+				|| !retryPolicy.backOff(attempt, deadline)) {
+			return false;
+		}
+		logger.warn("Statement page without account table, attempt {}: {}", attempt, e.getMessage());
+		return true;
+	}
 
-			if (toConsole) {
-				String serializedString = mapper.writeValueAsString(this.keyDetails);
-				System.out.println(serializedString);
-			} else {
-				mapper.writeValue(new File(filePath), this.keyDetails);
-			}
+	/**
+	 * @return whether the last statement fetch found the same page as the one
+	 *         before, or as an earlier run wrote out, in which case it was not
+	 *         parsed again and is not written again to the same files
+	 */
+	public boolean isUnchanged() {
+		return unchanged;
+	}
 
-		} else if ("text".equals(type) && !toConsole) {
+	/**
+	 * Takes over the details and rows of a parsed statement page.
+	 */
+	void apply(QuicklookPage page) {
+		pageFingerprint = null;
+		unparsedPage = null;
+		keyDetails.clear();
+		keyDetails.putAll(page.getKeyDetails());
+		last10Transactions = page.getRows();
+		transactionRows = new ArrayList<>();
+		transactions = Transaction.fromRows(last10Transactions, transactionRows);
+	}
 
-			List<String> lines = new ArrayList<>();
-			for (Entry<String, String> detail : this.keyDetails.entrySet()) {
-				lines.add(String.format("%20s: %20s", detail.getKey(), detail.getValue()));
-			}
+	public void writeKeyDetails(String filePath, String type, boolean toConsole)
+			throws JsonGenerationException, JsonMappingException, IOException {
 
-			if (toConsole) {
-				for (String line : lines)
-					System.out.println(line);
-			} else {
-				Files.write(Paths.get(filePath), lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
-						StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		OutputFormat format = OutputFormat.forName(type);
+		// text key details only ever went to a file
+		if (format == null || (format == OutputFormat.TEXT && toConsole)
+				|| alreadyWritten(filePath, toConsole, "key/" + format)) {
+			return;
+		}
+		parseUnparsedPage();
+		try (OutputStream out = open(filePath, toConsole)) {
+			OutputWriters.writeKeyDetails(this.keyDetails, format, out);
+			if (toConsole && format == OutputFormat.JSON) {
+				System.out.println();
 			}
 		}
-
+		markWritten(filePath, toConsole, "key/" + format);
 	}
 
 	public void writeTransactionDetails(String filePath, String type, boolean toConsole)
 			throws JsonGenerationException, JsonMappingException, IOException {
 
-		if ("json".equals(type)) {
-			ObjectMapper mapper = new ObjectMapper();
-			if (toConsole) {
-				String serializedString = mapper.writeValueAsString(this.last10Transactions);
-				System.out.println(serializedString);
-			} else {
-				mapper.writeValue(new File(filePath), this.last10Transactions);
+		OutputFormat format = OutputFormat.forName(type);
+		if (format == null || alreadyWritten(filePath, toConsole, "tx/" + format)) {
+			return;
+		}
+		parseUnparsedPage();
+		try (OutputStream out = open(filePath, toConsole)) {
+			OutputWriters.writeTransactions(this.last10Transactions, format, out);
+			if (toConsole && format == OutputFormat.JSON) {
+				System.out.println();
 			}
-		} else if ("text".equals(type)) {
+		}
+		markWritten(filePath, toConsole, "tx/" + format);
+	}
 
-			List<String> lines = new ArrayList<>();
-			for (List<String> transaction : this.last10Transactions) {
-				StringBuilder finalLine = new StringBuilder();
+	/**
+	 * Parses the statement page put off by
+	 * {@link #readAccountBalance(String)}, keeping its fingerprint.
+	 */
+	private void parseUnparsedPage() {
+		if (unparsedPage == null) {
+			return;
+		}
+		TransportResponse response = unparsedPage;
+		String fingerprint = pageFingerprint;
+		try {
+			apply(streamingParser ? QuicklookParser.parse(response.bodyReader())
+					: QuicklookParser.parse(response.parse()));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		pageFingerprint = fingerprint;
+	}
 
-				if (transaction.size() < 5) {
-					continue;
-				}
+	/**
+	 * Switches to the written page fingerprints of the account, from the store
+	 * if there is one.
+	 */
+	private void loadWrittenFingerprints(String accountKey) {
+		if (accountKey.equals(writtenAccountKey)) {
+			return;
+		}
+		writtenAccountKey = accountKey;
+		writtenFingerprints = writtenPageStore != null ? writtenPageStore.load(accountKey) : new HashMap<>();
+	}
 
-				for (String value : transaction) {
-					finalLine.append(String.format("%40.40s\t", value));
-				}
-				lines.add(finalLine.toString());
-			}
+	/**
+	 * @return whether the file already holds this output of the current page
+	 */
+	private boolean alreadyWritten(String filePath, boolean toConsole, String output) {
+		if (toConsole || pageFingerprint == null
+				|| !pageFingerprint.equals(writtenFingerprints.get(output + "/" + filePath))) {
+			return false;
+		}
+		if (!Files.exists(Paths.get(filePath))) {
+			return false;
+		}
+		logger.debug("{} unchanged, not written again", filePath);
+		return true;
+	}
 
-			if (toConsole) {
-				for (String line : lines)
-					System.out.println(line);
-			} else {
-				Files.write(Paths.get(filePath), lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
-						StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
-			}
+	private void markWritten(String filePath, boolean toConsole, String output) throws IOException {
+		if (toConsole) {
+			return;
+		}
+		String previous = pageFingerprint == null ? writtenFingerprints.remove(output + "/" + filePath)
+				: writtenFingerprints.put(output + "/" + filePath, pageFingerprint);
+		if (writtenPageStore != null && writtenAccountKey != null && !Objects.equals(previous, pageFingerprint)) {
+			writtenPageStore.save(writtenAccountKey, writtenFingerprints);
+		}
+	}
 
+	private static OutputStream open(String filePath, boolean toConsole) throws IOException {
+		if (toConsole) {
+			return OutputWriters.console();
 		}
+		return new BufferedOutputStream(Files.newOutputStream(Paths.get(filePath), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
 	}
 
 }
@@ -0,0 +1,98 @@
+/**
+ *
+ */
+package in.dreambit.erputils.bank;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * On-disk store of authenticated sessions, one JSON file per account type and
+ * username. File names are derived from a hash of the username, and files are
+ * made owner readable only where the file system allows it. Sessions are kept
+ * until the bank rejects them, the store does not guess at their lifetime.
+ *
+ */
+public class SessionStore {
+
+	private static final Logger logger = LogManager.getRootLogger();
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	private final Path directory;
+
+	public SessionStore(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * @return the stored session, or null when absent or unreadable
+	 */
+	public StoredSession load(AccountType accountType, String username) {
+		Path file = fileFor(accountType, username);
+		if (!Files.exists(file)) {
+			return null;
+		}
+
+		try {
+			return mapper.readValue(file.toFile(), StoredSession.class);
+		} catch (IOException e) {
+			logger.warn("Unable to read stored session: {}", file, e);
+			remove(accountType, username);
+			return null;
+		}
+	}
+
+	public void save(AccountType accountType, String username, StoredSession session) throws IOException {
+		Files.createDirectories(directory);
+		Path file = fileFor(accountType, username);
+		Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+
+		try {
+			Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-------"));
+		} catch (UnsupportedOperationException e) {
+			logger.debug("POSIX permissions not supported for: {}", temp);
+		}
+
+		session.setSavedAt(System.currentTimeMillis());
+		mapper.writeValue(temp.toFile(), session);
+
+		try {
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+		logger.debug("Stored session for username : {}", username);
+	}
+
+	public void remove(AccountType accountType, String username) {
+		try {
+			Files.deleteIfExists(fileFor(accountType, username));
+		} catch (IOException e) {
+			logger.warn("Unable to remove stored session for username : {}", username, e);
+		}
+	}
+
+	private Path fileFor(AccountType accountType, String username) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] hash = digest.digest(username.getBytes(StandardCharsets.UTF_8));
+			return directory.resolve(accountType.name().toLowerCase() + "-"
+					+ new String(CredentialEncoder.toHex(hash), 0, 32) + ".json");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
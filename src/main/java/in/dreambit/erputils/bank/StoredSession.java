@@ -0,0 +1,99 @@
+/**
+ *
+ */
+package in.dreambit.erputils.bank;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Authenticated session state persisted by {@link SessionStore}.
+ *
+ */
+public class StoredSession {
+
+	private Map<String, String> cookies = new HashMap<>();
+
+	private String homePageUrl;
+
+	private String accountNumber;
+
+	private String branchCode;
+
+	private long savedAt;
+
+	/**
+	 * @return the cookies
+	 */
+	public Map<String, String> getCookies() {
+		return cookies;
+	}
+
+	/**
+	 * @param cookies
+	 *            the cookies to set
+	 */
+	public void setCookies(Map<String, String> cookies) {
+		this.cookies = cookies;
+	}
+
+	/**
+	 * @return the homePageUrl
+	 */
+	public String getHomePageUrl() {
+		return homePageUrl;
+	}
+
+	/**
+	 * @param homePageUrl
+	 *            the homePageUrl to set
+	 */
+	public void setHomePageUrl(String homePageUrl) {
+		this.homePageUrl = homePageUrl;
+	}
+
+	/**
+	 * @return the accountNumber
+	 */
+	public String getAccountNumber() {
+		return accountNumber;
+	}
+
+	/**
+	 * @param accountNumber
+	 *            the accountNumber to set
+	 */
+	public void setAccountNumber(String accountNumber) {
+		this.accountNumber = accountNumber;
+	}
+
+	/**
+	 * @return the branchCode
+	 */
+	public String getBranchCode() {
+		return branchCode;
+	}
+
+	/**
+	 * @param branchCode
+	 *            the branchCode to set
+	 */
+	public void setBranchCode(String branchCode) {
+		this.branchCode = branchCode;
+	}
+
+	/**
+	 * @return epoch millis at which the session was stored
+	 */
+	public long getSavedAt() {
+		return savedAt;
+	}
+
+	/**
+	 * @param savedAt
+	 *            the savedAt to set
+	 */
+	public void setSavedAt(long savedAt) {
+		this.savedAt = savedAt;
+	}
+}
@@ -0,0 +1,279 @@
+/**
+ *
+ */
+package in.dreambit.erputils.bank;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jsoup.parser.Parser;
+
+/**
+ * One row of the account statement. Amounts are held in paise and the date as
+ * an epoch day, so rows are parsed once and compared without further
+ * conversion.
+ *
+ * The statement columns are date, narration, reference, debit, credit and
+ * balance; five column rows without a reference are accepted as well. A
+ * balance marked <code>Dr</code> is negative.
+ *
+ */
+public final class Transaction {
+
+	private static final DateTimeFormatter[] DATE_FORMATS = { formatter("dd-MMM-yyyy"), formatter("dd/MM/yyyy"),
+			formatter("dd-MM-yyyy"), formatter("dd MMM yyyy"), formatter("dd-MMM-yy"), formatter("dd/MM/yy") };
+
+	private static final Logger logger = LogManager.getRootLogger();
+
+	private final long epochDay;
+
+	private final String narration;
+
+	private final String reference;
+
+	private final long debit;
+
+	private final long credit;
+
+	private final long balance;
+
+	public Transaction(long epochDay, String narration, String reference, long debit, long credit, long balance) {
+		this.epochDay = epochDay;
+		this.narration = narration;
+		this.reference = reference;
+		this.debit = debit;
+		this.credit = credit;
+		this.balance = balance;
+	}
+
+	/**
+	 * Parses a row of cells as returned by
+	 * {@link SBBJConnect#getLast10Transactions()}.
+	 *
+	 * @return the transaction, or null for rows that are not transactions
+	 * @throws IllegalArgumentException
+	 *             if the date or an amount cannot be parsed
+	 */
+	public static Transaction fromRow(List<String> row) {
+		if (row.size() < 5) {
+			return null;
+		}
+
+		boolean hasReference = row.size() >= 6;
+		int amounts = hasReference ? 3 : 2;
+
+		return new Transaction(parseDate(text(row.get(0))), text(row.get(1)), hasReference ? text(row.get(2)) : "",
+				parsePaise(row.get(amounts)), parsePaise(row.get(amounts + 1)), parsePaise(row.get(amounts + 2)));
+	}
+
+	/**
+	 * Parses every transaction row, skipping rows that cannot be parsed.
+	 */
+	public static List<Transaction> fromRows(List<List<String>> rows) {
+		return fromRows(rows, null);
+	}
+
+	/**
+	 * Parses every transaction row, skipping rows that cannot be parsed.
+	 *
+	 * @param parsedRows
+	 *            if not null, receives the row of each returned transaction,
+	 *            at the same index
+	 */
+	public static List<Transaction> fromRows(List<List<String>> rows, List<List<String>> parsedRows) {
+		List<Transaction> transactions = new ArrayList<>(rows.size());
+		for (List<String> row : rows) {
+			try {
+				Transaction transaction = fromRow(row);
+				if (transaction != null) {
+					transactions.add(transaction);
+					if (parsedRows != null) {
+						parsedRows.add(row);
+					}
+				}
+			} catch (IllegalArgumentException e) {
+				logger.warn("Skipping transaction row {}: {}", row, e.getMessage());
+			}
+		}
+		return transactions;
+	}
+
+	/**
+	 * @return the epoch day of the value date
+	 */
+	public long getEpochDay() {
+		return epochDay;
+	}
+
+	public LocalDate getDate() {
+		return LocalDate.ofEpochDay(epochDay);
+	}
+
+	/**
+	 * @return the narration
+	 */
+	public String getNarration() {
+		return narration;
+	}
+
+	/**
+	 * @return the reference or cheque number, empty if none
+	 */
+	public String getReference() {
+		return reference;
+	}
+
+	/**
+	 * @return the debit in paise
+	 */
+	public long getDebit() {
+		return debit;
+	}
+
+	/**
+	 * @return the credit in paise
+	 */
+	public long getCredit() {
+		return credit;
+	}
+
+	/**
+	 * @return the balance after this transaction in paise, negative when
+	 *         overdrawn
+	 */
+	public long getBalance() {
+		return balance;
+	}
+
+	/**
+	 * @return a 64 bit FNV-1a hash of all fields, identifying the row across
+	 *         polls
+	 */
+	public long fingerprint() {
+		long hash = 0xcbf29ce484222325L;
+		hash = mix(hash, epochDay);
+		hash = mix(hash, debit);
+		hash = mix(hash, credit);
+		hash = mix(hash, balance);
+		hash = mix(hash, narration);
+		return mix(hash, reference);
+	}
+
+	private static long mix(long hash, long value) {
+		for (int i = 0; i < 8; i++) {
+			hash ^= (value >>> (i * 8)) & 0xFF;
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	private static long mix(long hash, String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			hash ^= c & 0xFF;
+			hash *= 0x100000001b3L;
+			hash ^= c >>> 8;
+			hash *= 0x100000001b3L;
+		}
+		// field separator, so ("ab", "c") and ("a", "bc") differ
+		hash ^= 0xFF;
+		return hash * 0x100000001b3L;
+	}
+
+	static long parseDate(String text) {
+		for (DateTimeFormatter format : DATE_FORMATS) {
+			try {
+				return LocalDate.parse(text, format).toEpochDay();
+			} catch (DateTimeParseException e) {
+				// try the next layout
+			}
+		}
+		throw new IllegalArgumentException("Unrecognised transaction date: " + text);
+	}
+
+	/**
+	 * Parses an Indian formatted amount such as <code>1,23,456.78 Cr</code>
+	 * into paise. Blank cells are zero. A dot right after a letter belongs to
+	 * a currency prefix such as <code>Rs.</code>, any other dot starts the
+	 * fraction.
+	 */
+	static long parsePaise(String cell) {
+		String text = text(cell);
+		long value = 0;
+		int fraction = -1;
+		boolean digits = false;
+		boolean negative = false;
+
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c >= '0' && c <= '9') {
+				if (fraction < 2) {
+					value = value * 10 + (c - '0');
+					if (fraction >= 0) {
+						fraction++;
+					}
+				}
+				digits = true;
+			} else if (c == '.' && (digits || i == 0 || !Character.isLetter(text.charAt(i - 1)))) {
+				if (fraction >= 0) {
+					throw new IllegalArgumentException("Unrecognised amount: " + cell);
+				}
+				fraction = 0;
+			} else if (c == '-' && !digits) {
+				negative = true;
+			} else if ((c == 'D' || c == 'd') && i + 1 < text.length()
+					&& (text.charAt(i + 1) == 'R' || text.charAt(i + 1) == 'r')) {
+				negative = true;
+				i++;
+			} else if (c != ',' && c != '.' && !Character.isWhitespace(c) && !Character.isLetter(c)) {
+				throw new IllegalArgumentException("Unrecognised amount: " + cell);
+			}
+		}
+
+		for (int i = Math.max(fraction, 0); i < 2; i++) {
+			value *= 10;
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Plain text of a cell, which may still carry markup for columns past the
+	 * second.
+	 */
+	static String text(String cell) {
+		if (cell.indexOf('<') < 0 && cell.indexOf('&') < 0) {
+			return cell.trim();
+		}
+
+		StringBuilder text = new StringBuilder(cell.length());
+		boolean inTag = false;
+		for (int i = 0; i < cell.length(); i++) {
+			char c = cell.charAt(i);
+			if (c == '<') {
+				inTag = true;
+			} else if (c == '>' && inTag) {
+				inTag = false;
+			} else if (!inTag) {
+				text.append(c);
+			}
+		}
+		return Parser.unescapeEntities(text.toString(), false).replace('\u00A0', ' ').trim();
+	}
+
+	private static DateTimeFormatter formatter(String pattern) {
+		return new DateTimeFormatterBuilder().parseCaseInsensitive().appendPattern(pattern)
+				.toFormatter(Locale.ENGLISH);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s %s [%s] Dr %d Cr %d Bal %d", getDate(), narration, reference, debit, credit, balance);
+	}
+}
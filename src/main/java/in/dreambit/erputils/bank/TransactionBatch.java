@@ -0,0 +1,147 @@
+/**
+ *
+ */
+package in.dreambit.erputils.bank;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columnar form of a transaction history: one primitive array per numeric
+ * column instead of one object per row. Suited to long histories that are
+ * scanned or aggregated rather than handled row by row.
+ *
+ */
+public class TransactionBatch {
+
+	private int size;
+
+	private long[] epochDays;
+
+	private long[] debits;
+
+	private long[] credits;
+
+	private long[] balances;
+
+	private String[] narrations;
+
+	private String[] references;
+
+	public TransactionBatch() {
+		this(16);
+	}
+
+	public TransactionBatch(int capacity) {
+		capacity = Math.max(capacity, 1);
+		epochDays = new long[capacity];
+		debits = new long[capacity];
+		credits = new long[capacity];
+		balances = new long[capacity];
+		narrations = new String[capacity];
+		references = new String[capacity];
+	}
+
+	public static TransactionBatch of(List<Transaction> transactions) {
+		TransactionBatch batch = new TransactionBatch(transactions.size());
+		for (Transaction transaction : transactions) {
+			batch.add(transaction);
+		}
+		return batch;
+	}
+
+	public void add(Transaction transaction) {
+		add(transaction.getEpochDay(), transaction.getNarration(), transaction.getReference(),
+				transaction.getDebit(), transaction.getCredit(), transaction.getBalance());
+	}
+
+	public void add(long epochDay, String narration, String reference, long debit, long credit, long balance) {
+		if (size == epochDays.length) {
+			int capacity = size * 2;
+			epochDays = Arrays.copyOf(epochDays, capacity);
+			debits = Arrays.copyOf(debits, capacity);
+			credits = Arrays.copyOf(credits, capacity);
+			balances = Arrays.copyOf(balances, capacity);
+			narrations = Arrays.copyOf(narrations, capacity);
+			references = Arrays.copyOf(references, capacity);
+		}
+		epochDays[size] = epochDay;
+		narrations[size] = narration;
+		references[size] = reference;
+		debits[size] = debit;
+		credits[size] = credit;
+		balances[size] = balance;
+		size++;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public long getEpochDay(int index) {
+		checkIndex(index);
+		return epochDays[index];
+	}
+
+	public long getDebit(int index) {
+		checkIndex(index);
+		return debits[index];
+	}
+
+	public long getCredit(int index) {
+		checkIndex(index);
+		return credits[index];
+	}
+
+	public long getBalance(int index) {
+		checkIndex(index);
+		return balances[index];
+	}
+
+	public String getNarration(int index) {
+		checkIndex(index);
+		return narrations[index];
+	}
+
+	public String getReference(int index) {
+		checkIndex(index);
+		return references[index];
+	}
+
+	/**
+	 * @return the row as a {@link Transaction}, allocated on each call
+	 */
+	public Transaction get(int index) {
+		checkIndex(index);
+		return new Transaction(epochDays[index], narrations[index], references[index], debits[index],
+				credits[index], balances[index]);
+	}
+
+	/**
+	 * @return total debits in paise
+	 */
+	public long totalDebit() {
+		long total = 0;
+		for (int i = 0; i < size; i++) {
+			total += debits[i];
+		}
+		return total;
+	}
+
+	/**
+	 * @return total credits in paise
+	 */
+	public long totalCredit() {
+		long total = 0;
+		for (int i = 0; i < size; i++) {
+			total += credits[i];
+		}
+		return total;
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+}
@@ -0,0 +1,238 @@
+/**
+ *
+ */
+package in.dreambit.erputils.batch;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import in.dreambit.erputils.bank.AccountType;
+
+/**
+ * One account of a batch manifest. The password is referenced rather than
+ * stored: either through an environment variable (<code>passwordEnv</code>) or
+ * a file whose first line holds it (<code>passwordFile</code>). An inline
+ * <code>password</code> is accepted for local testing.
+ *
+ */
+public class AccountEntry {
+
+	private String id;
+
+	private AccountType type;
+
+	private String username;
+
+	private String password;
+
+	private String passwordEnv;
+
+	private String passwordFile;
+
+	private String output = "text";
+
+	private String keyFile;
+
+	private String txFile;
+
+	private int refreshSeconds = 300;
+
+	private Integer minRefreshSeconds;
+
+	private Integer maxRefreshSeconds;
+
+	public char[] resolvePassword() throws IOException {
+		if (passwordEnv != null) {
+			String value = System.getenv(passwordEnv);
+			if (value == null) {
+				throw new IllegalStateException("Environment variable not set: " + passwordEnv);
+			}
+			return value.toCharArray();
+		}
+		if (passwordFile != null) {
+			String value = Files.readAllLines(Paths.get(passwordFile), StandardCharsets.UTF_8).get(0);
+			return value.toCharArray();
+		}
+		if (password != null) {
+			return password.toCharArray();
+		}
+		throw new IllegalStateException("No password reference for account: " + getId());
+	}
+
+	/**
+	 * @return the id, defaulting to type and username
+	 */
+	public String getId() {
+		return id != null ? id : type + ":" + username;
+	}
+
+	/**
+	 * @param id
+	 *            the id to set
+	 */
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	/**
+	 * @return the type
+	 */
+	public AccountType getType() {
+		return type;
+	}
+
+	/**
+	 * @param type
+	 *            the type to set
+	 */
+	public void setType(AccountType type) {
+		this.type = type;
+	}
+
+	/**
+	 * @return the username
+	 */
+	public String getUsername() {
+		return username;
+	}
+
+	/**
+	 * @param username
+	 *            the username to set
+	 */
+	public void setUsername(String username) {
+		this.username = username;
+	}
+
+	/**
+	 * @param password
+	 *            the password to set
+	 */
+	public void setPassword(String password) {
+		this.password = password;
+	}
+
+	/**
+	 * @return the passwordEnv
+	 */
+	public String getPasswordEnv() {
+		return passwordEnv;
+	}
+
+	/**
+	 * @param passwordEnv
+	 *            the passwordEnv to set
+	 */
+	public void setPasswordEnv(String passwordEnv) {
+		this.passwordEnv = passwordEnv;
+	}
+
+	/**
+	 * @return the passwordFile
+	 */
+	public String getPasswordFile() {
+		return passwordFile;
+	}
+
+	/**
+	 * @param passwordFile
+	 *            the passwordFile to set
+	 */
+	public void setPasswordFile(String passwordFile) {
+		this.passwordFile = passwordFile;
+	}
+
+	/**
+	 * @return the output
+	 */
+	public String getOutput() {
+		return output;
+	}
+
+	/**
+	 * @param output
+	 *            the output to set
+	 */
+	public void setOutput(String output) {
+		this.output = output;
+	}
+
+	/**
+	 * @return the keyFile
+	 */
+	public String getKeyFile() {
+		return keyFile;
+	}
+
+	/**
+	 * @param keyFile
+	 *            the keyFile to set
+	 */
+	public void setKeyFile(String keyFile) {
+		this.keyFile = keyFile;
+	}
+
+	/**
+	 * @return the txFile
+	 */
+	public String getTxFile() {
+		return txFile;
+	}
+
+	/**
+	 * @param txFile
+	 *            the txFile to set
+	 */
+	public void setTxFile(String txFile) {
+		this.txFile = txFile;
+	}
+
+	/**
+	 * @return how often the daemon refreshes the account at first, in seconds
+	 */
+	public int getRefreshSeconds() {
+		return refreshSeconds;
+	}
+
+	/**
+	 * @param refreshSeconds
+	 *            the refreshSeconds to set
+	 */
+	public void setRefreshSeconds(int refreshSeconds) {
+		this.refreshSeconds = refreshSeconds;
+	}
+
+	/**
+	 * @return the shortest refresh interval the daemon moves to while the
+	 *         account keeps changing, 60 seconds unless refreshSeconds is less
+	 */
+	public int getMinRefreshSeconds() {
+		return minRefreshSeconds != null ? minRefreshSeconds : Math.min(60, refreshSeconds);
+	}
+
+	/**
+	 * @param minRefreshSeconds
+	 *            the minRefreshSeconds to set
+	 */
+	public void setMinRefreshSeconds(Integer minRefreshSeconds) {
+		this.minRefreshSeconds = minRefreshSeconds;
+	}
+
+	/**
+	 * @return the longest refresh interval the daemon backs off to while the
+	 *         account stays the same, an hour unless refreshSeconds is more
+	 */
+	public int getMaxRefreshSeconds() {
+		return maxRefreshSeconds != null ? maxRefreshSeconds : Math.max(3600, refreshSeconds);
+	}
+
+	/**
+	 * @param maxRefreshSeconds
+	 *            the maxRefreshSeconds to set
+	 */
+	public void setMaxRefreshSeconds(Integer maxRefreshSeconds) {
+		this.maxRefreshSeconds = maxRefreshSeconds;
+	}
+}
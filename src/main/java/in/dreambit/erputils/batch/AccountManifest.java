@@ -0,0 +1,285 @@
+/**
+ *
+ */
+package in.dreambit.erputils.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import in.dreambit.erputils.support.LoginThrottle;
+
+/**
+ * JSON manifest listing the accounts fetched by a batch run, e.g.
+ *
+ * <pre>
+ * {
+ *   "concurrency": 8,
+ *   "perHostConcurrency": 2,
+ *   "loginsPerSecond": 0.5,
+ *   "loginBurst": 2,
+ *   "loginBudgetPerHour": 120,
+ *   "sessionDir": "/var/lib/sbbj/sessions",
+ *   "pageDir": "/var/lib/sbbj/pages",
+ *   "port": 8765,
+ *   "accounts": [
+ *     { "id": "acme", "type": "CURRENT", "username": "acme01", "passwordEnv": "ACME_PASSWORD",
+ *       "output": "json", "keyFile": "acme-key.json", "txFile": "acme-tx.json",
+ *       "refreshSeconds": 300, "minRefreshSeconds": 60, "maxRefreshSeconds": 3600 }
+ *   ]
+ * }
+ * </pre>
+ *
+ * <code>port</code>, <code>bindAddress</code>, <code>cacheTtlSeconds</code>,
+ * <code>staleSeconds</code>, <code>loginBudgetPerHour</code> and the refresh
+ * intervals are only used by the daemon.
+ *
+ */
+public class AccountManifest {
+
+	private int concurrency = 4;
+
+	private int perHostConcurrency = 2;
+
+	private double loginsPerSecond = 1;
+
+	private int loginBurst = 2;
+
+	private int loginBudgetPerHour;
+
+	private String sessionDir;
+
+	private String pageDir;
+
+	private Boolean logout;
+
+	private int port = 8765;
+
+	private String bindAddress = "127.0.0.1";
+
+	private int cacheTtlSeconds = 60;
+
+	private int staleSeconds = 600;
+
+	private List<AccountEntry> accounts = new ArrayList<>();
+
+	public static AccountManifest load(String filePath) throws IOException {
+		AccountManifest manifest = new ObjectMapper().readValue(new File(filePath), AccountManifest.class);
+		for (AccountEntry entry : manifest.getAccounts()) {
+			if (entry.getType() == null || entry.getUsername() == null) {
+				throw new IllegalArgumentException("Account type and username are required: " + entry.getId());
+			}
+		}
+		return manifest;
+	}
+
+	/**
+	 * @return the concurrency
+	 */
+	public int getConcurrency() {
+		return concurrency;
+	}
+
+	/**
+	 * @param concurrency
+	 *            the concurrency to set
+	 */
+	public void setConcurrency(int concurrency) {
+		this.concurrency = concurrency;
+	}
+
+	/**
+	 * @return the perHostConcurrency
+	 */
+	public int getPerHostConcurrency() {
+		return perHostConcurrency;
+	}
+
+	/**
+	 * @param perHostConcurrency
+	 *            the perHostConcurrency to set
+	 */
+	public void setPerHostConcurrency(int perHostConcurrency) {
+		this.perHostConcurrency = perHostConcurrency;
+	}
+
+	/**
+	 * @return the logins per second allowed against each bank host
+	 */
+	public double getLoginsPerSecond() {
+		return loginsPerSecond;
+	}
+
+	/**
+	 * @param loginsPerSecond
+	 *            the loginsPerSecond to set
+	 */
+	public void setLoginsPerSecond(double loginsPerSecond) {
+		this.loginsPerSecond = loginsPerSecond;
+	}
+
+	/**
+	 * @return the logins allowed back to back against each bank host
+	 */
+	public int getLoginBurst() {
+		return loginBurst;
+	}
+
+	/**
+	 * @param loginBurst
+	 *            the loginBurst to set
+	 */
+	public void setLoginBurst(int loginBurst) {
+		this.loginBurst = loginBurst;
+	}
+
+	/**
+	 * @return the refreshes per hour the daemon makes across all accounts,
+	 *         each of which may need a login, 0 for no limit
+	 */
+	public int getLoginBudgetPerHour() {
+		return loginBudgetPerHour;
+	}
+
+	/**
+	 * @param loginBudgetPerHour
+	 *            the loginBudgetPerHour to set
+	 */
+	public void setLoginBudgetPerHour(int loginBudgetPerHour) {
+		this.loginBudgetPerHour = loginBudgetPerHour;
+	}
+
+	/**
+	 * @return a throttle pacing the logins of all accounts of the manifest
+	 */
+	public LoginThrottle newLoginThrottle() {
+		return new LoginThrottle(loginsPerSecond, Math.max(1, loginBurst));
+	}
+
+	/**
+	 * @return directory of the session store, null to always log in
+	 */
+	public String getSessionDir() {
+		return sessionDir;
+	}
+
+	/**
+	 * @param sessionDir
+	 *            the sessionDir to set
+	 */
+	public void setSessionDir(String sessionDir) {
+		this.sessionDir = sessionDir;
+	}
+
+	/**
+	 * @return directory recording the page each output file last received,
+	 *         null to always parse and write
+	 */
+	public String getPageDir() {
+		return pageDir;
+	}
+
+	/**
+	 * @param pageDir
+	 *            the pageDir to set
+	 */
+	public void setPageDir(String pageDir) {
+		this.pageDir = pageDir;
+	}
+
+	/**
+	 * @return whether accounts are logged out after fetching, by default only
+	 *         when no session store is used
+	 */
+	public boolean isLogout() {
+		return logout != null ? logout : sessionDir == null;
+	}
+
+	/**
+	 * @param logout
+	 *            the logout to set
+	 */
+	public void setLogout(Boolean logout) {
+		this.logout = logout;
+	}
+
+	/**
+	 * @return the port the daemon listens on
+	 */
+	public int getPort() {
+		return port;
+	}
+
+	/**
+	 * @param port
+	 *            the port to set
+	 */
+	public void setPort(int port) {
+		this.port = port;
+	}
+
+	/**
+	 * @return the address the daemon listens on, loopback by default
+	 */
+	public String getBindAddress() {
+		return bindAddress;
+	}
+
+	/**
+	 * @param bindAddress
+	 *            the bindAddress to set
+	 */
+	public void setBindAddress(String bindAddress) {
+		this.bindAddress = bindAddress;
+	}
+
+	/**
+	 * @return how long a snapshot is served without fetching again, at least
+	 *         the account's current refresh interval
+	 */
+	public int getCacheTtlSeconds() {
+		return cacheTtlSeconds;
+	}
+
+	/**
+	 * @param cacheTtlSeconds
+	 *            the cacheTtlSeconds to set
+	 */
+	public void setCacheTtlSeconds(int cacheTtlSeconds) {
+		this.cacheTtlSeconds = cacheTtlSeconds;
+	}
+
+	/**
+	 * @return how long past the TTL a snapshot is still served while it is
+	 *         revalidated
+	 */
+	public int getStaleSeconds() {
+		return staleSeconds;
+	}
+
+	/**
+	 * @param staleSeconds
+	 *            the staleSeconds to set
+	 */
+	public void setStaleSeconds(int staleSeconds) {
+		this.staleSeconds = staleSeconds;
+	}
+
+	/**
+	 * @return the accounts
+	 */
+	public List<AccountEntry> getAccounts() {
+		return accounts;
+	}
+
+	/**
+	 * @param accounts
+	 *            the accounts to set
+	 */
+	public void setAccounts(List<AccountEntry> accounts) {
+		this.accounts = accounts;
+	}
+}
@@ -0,0 +1,60 @@
+/**
+ *
+ */
+package in.dreambit.erputils.batch;
+
+/**
+ * Outcome of fetching one manifest account.
+ *
+ */
+public class AccountResult {
+
+	private final String accountId;
+
+	private final boolean success;
+
+	private final String error;
+
+	private final long elapsedMillis;
+
+	public AccountResult(String accountId, boolean success, String error, long elapsedMillis) {
+		this.accountId = accountId;
+		this.success = success;
+		this.error = error;
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	/**
+	 * @return the accountId
+	 */
+	public String getAccountId() {
+		return accountId;
+	}
+
+	/**
+	 * @return whether balance and transactions were fetched and written
+	 */
+	public boolean isSuccess() {
+		return success;
+	}
+
+	/**
+	 * @return the error message, null on success
+	 */
+	public String getError() {
+		return error;
+	}
+
+	/**
+	 * @return the elapsedMillis
+	 */
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%-30s %-7s %6d ms %s", accountId, success ? "OK" : "FAILED", elapsedMillis,
+				error == null ? "" : error);
+	}
+}
@@ -0,0 +1,174 @@
+/**
+ *
+ */
+package in.dreambit.erputils.batch;
+
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import in.dreambit.erputils.bank.AccountType;
+import in.dreambit.erputils.bank.SBBJConnect;
+import in.dreambit.erputils.bank.SessionStore;
+import in.dreambit.erputils.output.WrittenPageStore;
+import in.dreambit.erputils.support.LoginThrottle;
+
+/**
+ * Fetches every account of an {@link AccountManifest} in one process. Accounts
+ * run on a bounded pool, and logins against the same bank host are further
+ * capped by <code>perHostConcurrency</code> and paced by
+ * <code>loginsPerSecond</code>.
+ *
+ */
+public class BatchFetcher {
+
+	private static final Logger logger = LogManager.getRootLogger();
+
+	private final AccountManifest manifest;
+
+	private final Map<AccountType, Semaphore> hostPermits = new EnumMap<>(AccountType.class);
+
+	private final SessionStore sessionStore;
+
+	private final WrittenPageStore writtenPageStore;
+
+	private final LoginThrottle loginThrottle;
+
+	/**
+	 * Serialises console output of accounts without output files
+	 */
+	private final Object consoleLock = new Object();
+
+	public BatchFetcher(AccountManifest manifest) {
+		this.manifest = manifest;
+		this.sessionStore = manifest.getSessionDir() == null ? null
+				: new SessionStore(Paths.get(manifest.getSessionDir()));
+		this.writtenPageStore = manifest.getPageDir() == null ? null
+				: new WrittenPageStore(Paths.get(manifest.getPageDir()));
+		this.loginThrottle = manifest.newLoginThrottle();
+		for (AccountType type : AccountType.values()) {
+			hostPermits.put(type, new Semaphore(Math.max(1, manifest.getPerHostConcurrency()), true));
+		}
+	}
+
+	public List<AccountResult> run() throws InterruptedException {
+		List<AccountEntry> accounts = manifest.getAccounts();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, manifest.getConcurrency()));
+
+		List<Future<AccountResult>> futures = new ArrayList<>();
+		try {
+			for (final AccountEntry entry : accounts) {
+				futures.add(executor.submit(() -> fetch(entry)));
+			}
+
+			List<AccountResult> results = new ArrayList<>();
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					results.add(futures.get(i).get());
+				} catch (ExecutionException e) {
+					results.add(new AccountResult(accounts.get(i).getId(), false, String.valueOf(e.getCause()), 0));
+				}
+			}
+			return results;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	public static void printSummary(List<AccountResult> results, PrintStream out) {
+		int failures = 0;
+		for (AccountResult result : results) {
+			out.println(result);
+			if (!result.isSuccess()) {
+				failures++;
+			}
+		}
+		out.println(String.format("Accounts: %d, Succeeded: %d, Failed: %d", results.size(),
+				results.size() - failures, failures));
+	}
+
+	public static boolean allSucceeded(List<AccountResult> results) {
+		for (AccountResult result : results) {
+			if (!result.isSuccess()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private AccountResult fetch(AccountEntry entry) throws InterruptedException {
+		Semaphore permits = hostPermits.get(entry.getType());
+		long start = System.currentTimeMillis();
+		permits.acquire();
+		try {
+			return fetchAccount(entry, start);
+		} finally {
+			permits.release();
+		}
+	}
+
+	private AccountResult fetchAccount(AccountEntry entry, long start) {
+		SBBJConnect sbbjConnect = new SBBJConnect();
+		sbbjConnect.setSessionStore(sessionStore);
+		sbbjConnect.setWrittenPageStore(writtenPageStore);
+		sbbjConnect.setLoginThrottle(loginThrottle);
+		String error = null;
+		char[] password = null;
+		try {
+			password = entry.resolvePassword();
+			sbbjConnect.connect(entry.getType(), entry.getUsername(), password);
+			write(sbbjConnect, entry);
+		} catch (Throwable e) {
+			logger.error("ERROR while fetching balance for {}: ", entry.getId(), e);
+			error = e.getMessage() != null ? e.getMessage() : e.toString();
+		} finally {
+			if (password != null) {
+				Arrays.fill(password, '\0');
+			}
+			if (manifest.isLogout()) {
+				try {
+					sbbjConnect.logout(entry.getType());
+				} catch (Exception e) {
+					logger.error("ERROR while logging out {}: ", entry.getId(), e);
+					if (error == null) {
+						error = "Logout failed: " + e.getMessage();
+					}
+				}
+			}
+		}
+		return new AccountResult(entry.getId(), error == null, error, System.currentTimeMillis() - start);
+	}
+
+	private void write(SBBJConnect sbbjConnect, AccountEntry entry) throws Exception {
+		String outputType = entry.getOutput();
+
+		if (entry.getKeyFile() != null) {
+			sbbjConnect.writeKeyDetails(entry.getKeyFile(), outputType, false);
+		}
+		if (entry.getTxFile() != null) {
+			sbbjConnect.writeTransactionDetails(entry.getTxFile(), outputType, false);
+		}
+
+		if (entry.getKeyFile() == null || entry.getTxFile() == null) {
+			synchronized (consoleLock) {
+				System.out.println("# " + entry.getId());
+				if (entry.getKeyFile() == null)
+					sbbjConnect.writeKeyDetails(null, outputType, true);
+				if (entry.getTxFile() == null)
+					sbbjConnect.writeTransactionDetails(null, outputType, true);
+			}
+		}
+	}
+}
@@ -0,0 +1,166 @@
+/**
+ *
+ */
+package in.dreambit.erputils.daemon;
+
+import java.util.Arrays;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import in.dreambit.erputils.bank.AccountSnapshot;
+import in.dreambit.erputils.bank.BalanceCache;
+import in.dreambit.erputils.bank.SBBJConnect;
+import in.dreambit.erputils.bank.SessionStore;
+import in.dreambit.erputils.batch.AccountEntry;
+import in.dreambit.erputils.support.LoginThrottle;
+
+/**
+ * Keeps one account warm: holds its connection across refreshes, and reads
+ * its snapshots through the shared {@link BalanceCache}.
+ *
+ * Under a {@link PollScheduler}, a read only fetches when the snapshot is
+ * older than the account's polling interval, and then through the scheduler,
+ * so the fetch counts against the login budget and moves the next poll out.
+ *
+ */
+public class AccountPoller {
+
+	private static final Logger logger = LogManager.getRootLogger();
+
+	private final AccountEntry entry;
+
+	private final SBBJConnect sbbjConnect = new SBBJConnect();
+
+	private final BalanceCache cache;
+
+	private volatile String lastError;
+
+	private volatile long lastAttempt;
+
+	private volatile PollScheduler scheduler;
+
+	public AccountPoller(AccountEntry entry, SessionStore sessionStore, BalanceCache cache) {
+		this(entry, sessionStore, cache, null);
+	}
+
+	public AccountPoller(AccountEntry entry, SessionStore sessionStore, BalanceCache cache,
+			LoginThrottle loginThrottle) {
+		this.entry = entry;
+		this.cache = cache;
+		sbbjConnect.setSessionStore(sessionStore);
+		sbbjConnect.setLoginThrottle(loginThrottle);
+	}
+
+	/**
+	 * Fetches the statement again, or joins the fetch already running. Failures
+	 * are recorded rather than thrown, so the previous snapshot keeps being
+	 * served.
+	 *
+	 * @return whether the refresh succeeded
+	 */
+	public boolean refresh() {
+		try {
+			cache.refresh(entry.getId(), this::fetch);
+			return true;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return the cached snapshot, fetched first if it is missing or too old
+	 *         to serve, null if that fetch failed, or was refused by the
+	 *         scheduler and the snapshot is past stale
+	 */
+	public AccountSnapshot current() {
+		PollScheduler scheduler = this.scheduler;
+		if (scheduler != null) {
+			return current(scheduler);
+		}
+		try {
+			return cache.get(entry.getId(), this::fetch);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	private AccountSnapshot current(PollScheduler scheduler) {
+		AccountSnapshot snapshot = cache.peek(entry.getId());
+		long freshMillis = Math.max(cache.getTtlMillis(), scheduler.getMaxAgeMillis(this));
+		long age = snapshot == null ? Long.MAX_VALUE : System.currentTimeMillis() - snapshot.getFetchedAt();
+		if (age < freshMillis) {
+			return snapshot;
+		}
+		if (scheduler.refreshForRead(this)) {
+			return cache.peek(entry.getId());
+		}
+		// out of budget or being polled right now
+		return age < freshMillis + cache.getStaleMillis() ? snapshot : null;
+	}
+
+	/**
+	 * @param scheduler
+	 *            the scheduler polling this account, which reads then fetch
+	 *            through
+	 */
+	void setScheduler(PollScheduler scheduler) {
+		this.scheduler = scheduler;
+	}
+
+	private synchronized AccountSnapshot fetch() throws Exception {
+		lastAttempt = System.currentTimeMillis();
+		char[] password = null;
+		try {
+			password = entry.resolvePassword();
+			sbbjConnect.refresh(entry.getType(), entry.getUsername(), password);
+			lastError = null;
+			logger.debug("Refreshed account {}", entry.getId());
+			return sbbjConnect.snapshot();
+		} catch (Exception e) {
+			logger.error("ERROR while refreshing {}: ", entry.getId(), e);
+			lastError = e.getMessage() != null ? e.getMessage() : e.toString();
+			throw e;
+		} finally {
+			if (password != null) {
+				Arrays.fill(password, '\0');
+			}
+		}
+	}
+
+	public synchronized void logout() {
+		try {
+			sbbjConnect.logout(entry.getType());
+		} catch (Exception e) {
+			logger.error("ERROR while logging out {}: ", entry.getId(), e);
+		}
+	}
+
+	/**
+	 * @return the entry
+	 */
+	public AccountEntry getEntry() {
+		return entry;
+	}
+
+	/**
+	 * @return the last successful snapshot, null before the first one
+	 */
+	public AccountSnapshot getSnapshot() {
+		return cache.peek(entry.getId());
+	}
+
+	/**
+	 * @return the error of the last refresh, null if it succeeded
+	 */
+	public String getLastError() {
+		return lastError;
+	}
+
+	/**
+	 * @return when the last refresh started, in epoch milliseconds
+	 */
+	public long getLastAttempt() {
+		return lastAttempt;
+	}
+}
@@ -0,0 +1,241 @@
+/**
+ *
+ */
+package in.dreambit.erputils.daemon;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import in.dreambit.erputils.bank.AccountSnapshot;
+import in.dreambit.erputils.bank.BalanceCache;
+import in.dreambit.erputils.bank.SessionStore;
+import in.dreambit.erputils.batch.AccountEntry;
+import in.dreambit.erputils.batch.AccountManifest;
+import in.dreambit.erputils.metrics.PhaseMetrics;
+import in.dreambit.erputils.metrics.PrometheusExporter;
+import in.dreambit.erputils.support.LoginThrottle;
+
+/**
+ * Long running process that keeps the accounts of an {@link AccountManifest}
+ * logged in, refreshes each at an interval adapting to how often it changes,
+ * staggered by a {@link PollScheduler} with logins paced per bank host, and
+ * serves the cached snapshot over a local HTTP/JSON endpoint:
+ *
+ * <pre>
+ * GET  /accounts                    status of every account
+ * GET  /accounts/{id}               key details and transactions
+ * GET  /accounts/{id}/keyDetails
+ * GET  /accounts/{id}/transactions
+ * POST /accounts/{id}/refresh       refresh now and return the snapshot
+ * GET  /metrics                     login phase latencies, Prometheus text
+ * </pre>
+ *
+ * Reads past <code>cacheTtlSeconds</code> are answered from the stale
+ * snapshot while it is revalidated, and concurrent reads share one fetch.
+ *
+ */
+public class BalanceDaemon {
+
+	private static final Logger logger = LogManager.getRootLogger();
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	private static final String CONTEXT = "/accounts";
+
+	private final AccountManifest manifest;
+
+	private final Map<String, AccountPoller> pollers = new LinkedHashMap<>();
+
+	private PollScheduler scheduler;
+
+	private ExecutorService handlers;
+
+	private HttpServer server;
+
+	public BalanceDaemon(AccountManifest manifest) {
+		this.manifest = manifest;
+		SessionStore sessionStore = manifest.getSessionDir() == null ? null
+				: new SessionStore(Paths.get(manifest.getSessionDir()));
+		BalanceCache cache = new BalanceCache(manifest.getCacheTtlSeconds(), manifest.getStaleSeconds(),
+				TimeUnit.SECONDS);
+		LoginThrottle loginThrottle = manifest.newLoginThrottle();
+		for (AccountEntry entry : manifest.getAccounts()) {
+			pollers.put(entry.getId(), new AccountPoller(entry, sessionStore, cache, loginThrottle));
+		}
+	}
+
+	public synchronized void start() throws IOException {
+		scheduler = new PollScheduler(pollers.values(), manifest.getConcurrency(),
+				manifest.getLoginBudgetPerHour());
+		scheduler.start();
+
+		handlers = Executors.newFixedThreadPool(4);
+		server = HttpServer.create(new InetSocketAddress(manifest.getBindAddress(), manifest.getPort()), 0);
+		server.createContext(CONTEXT, this::handle);
+		server.createContext("/metrics", BalanceDaemon::metrics);
+		server.setExecutor(handlers);
+		server.start();
+		logger.info("Daemon listening on {} for {} accounts", server.getAddress(), pollers.size());
+	}
+
+	public synchronized void stop() {
+		if (server != null) {
+			server.stop(1);
+			handlers.shutdownNow();
+		}
+		if (scheduler != null) {
+			scheduler.stop();
+		}
+		if (manifest.isLogout()) {
+			for (AccountPoller poller : pollers.values()) {
+				poller.logout();
+			}
+		}
+		logger.info("Daemon stopped");
+	}
+
+	/**
+	 * @return the port the daemon listens on
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			String path = exchange.getRequestURI().getPath().substring(CONTEXT.length());
+			String method = exchange.getRequestMethod();
+
+			// the context also matches paths that merely start with it
+			if (!path.isEmpty() && !path.startsWith("/")) {
+				send(exchange, 404, error("Not found: " + exchange.getRequestURI().getPath()));
+				return;
+			}
+
+			if (path.isEmpty() || "/".equals(path)) {
+				List<Map<String, Object>> statuses = new ArrayList<>();
+				for (AccountPoller poller : pollers.values()) {
+					statuses.add(status(poller));
+				}
+				send(exchange, 200, statuses);
+				return;
+			}
+
+			String[] parts = path.substring(1).split("/", 2);
+			AccountPoller poller = pollers.get(parts[0]);
+			String resource = parts.length > 1 ? parts[1] : "";
+			if (poller == null) {
+				send(exchange, 404, error("Unknown account: " + parts[0]));
+				return;
+			}
+
+			if ("refresh".equals(resource)) {
+				if (!"POST".equals(method)) {
+					send(exchange, 405, error("Use POST to refresh"));
+					return;
+				}
+				if (!poller.refresh()) {
+					send(exchange, 502, status(poller));
+					return;
+				}
+			} else if (!"GET".equals(method)) {
+				send(exchange, 405, error("Use GET"));
+				return;
+			}
+
+			AccountSnapshot snapshot = "refresh".equals(resource) ? poller.getSnapshot() : poller.current();
+			if (snapshot == null) {
+				send(exchange, 503, status(poller));
+				return;
+			}
+
+			switch (resource) {
+			case "":
+			case "refresh":
+				send(exchange, 200, snapshot);
+				break;
+			case "keyDetails":
+				send(exchange, 200, snapshot.getKeyDetails());
+				break;
+			case "transactions":
+				send(exchange, 200, snapshot.getTransactions());
+				break;
+			default:
+				send(exchange, 404, error("Unknown resource: " + resource));
+				break;
+			}
+		} catch (Exception e) {
+			logger.error("ERROR while serving {}: ", exchange.getRequestURI(), e);
+			if (exchange.getResponseCode() == -1) {
+				send(exchange, 500, error(e.getMessage()));
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private static Map<String, Object> status(AccountPoller poller) {
+		Map<String, Object> status = new LinkedHashMap<>();
+		AccountSnapshot snapshot = poller.getSnapshot();
+		status.put("id", poller.getEntry().getId());
+		status.put("type", poller.getEntry().getType());
+		status.put("accountNumber", snapshot != null ? snapshot.getAccountNumber() : null);
+		status.put("fetchedAt", snapshot != null ? snapshot.getFetchedAt() : null);
+		status.put("lastAttempt", poller.getLastAttempt());
+		status.put("error", poller.getLastError());
+		return status;
+	}
+
+	private static void metrics(HttpExchange exchange) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", PrometheusExporter.CONTENT_TYPE);
+		exchange.sendResponseHeaders(200, 0);
+		try (Writer out = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)) {
+			PrometheusExporter.write(PhaseMetrics.getDefault(), out);
+		}
+	}
+
+	private static Map<String, Object> error(String message) {
+		Map<String, Object> error = new LinkedHashMap<>();
+		error.put("error", message);
+		return error;
+	}
+
+	private static void send(HttpExchange exchange, int status, Object body) throws IOException {
+		byte[] bytes = mapper.writeValueAsBytes(body);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("Usage: BalanceDaemon <manifest>");
+			System.exit(1);
+		}
+
+		final BalanceDaemon daemon = new BalanceDaemon(AccountManifest.load(args[0]));
+		Runtime.getRuntime().addShutdownHook(new Thread(daemon::stop));
+		daemon.start();
+	}
+}
@@ -0,0 +1,280 @@
+/**
+ *
+ */
+package in.dreambit.erputils.daemon;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import in.dreambit.erputils.bank.AccountSnapshot;
+
+/**
+ * Refreshes every account without bunching them up, at an interval that
+ * follows how often the account changes. The first refreshes are spread with
+ * jitter across <code>refreshSeconds</code>, and each next one is due a
+ * jittered interval after the last finished. The interval halves, down to
+ * <code>minRefreshSeconds</code>, whenever the key details or statement rows
+ * changed, and doubles, up to <code>maxRefreshSeconds</code>, whenever they
+ * did not.
+ *
+ * Of the accounts due at once, the ones with the oldest snapshot run first,
+ * at most <code>concurrency</code> at a time and no more than the login
+ * budget per hour across all accounts. Reads that find a snapshot older than
+ * the account's interval refresh it through {@link #refreshForRead}, charged
+ * to the same budget.
+ *
+ */
+public class PollScheduler {
+
+	private static final Logger logger = LogManager.getRootLogger();
+
+	/**
+	 * How often due accounts are looked for
+	 */
+	private static final long TICK_MILLIS = 200;
+
+	/**
+	 * Fraction of the period the next refresh is moved by at most
+	 */
+	private static final double JITTER = 0.1;
+
+	/**
+	 * Oldest snapshot first, accounts without one before all others
+	 */
+	static final Comparator<AccountPoller> STALEST_FIRST = Comparator.comparingLong(PollScheduler::fetchedAt);
+
+	private final List<Slot> slots = new ArrayList<>();
+
+	private final int concurrency;
+
+	private final Budget budget;
+
+	private final Random random = new Random();
+
+	private int running;
+
+	private ScheduledExecutorService ticker;
+
+	private ExecutorService workers;
+
+	public PollScheduler(Collection<AccountPoller> pollers, int concurrency) {
+		this(pollers, concurrency, 0);
+	}
+
+	/**
+	 * @param budgetPerHour
+	 *            refreshes per hour across all accounts, 0 for no limit
+	 */
+	public PollScheduler(Collection<AccountPoller> pollers, int concurrency, int budgetPerHour) {
+		this.concurrency = Math.max(1, concurrency);
+		this.budget = new Budget(budgetPerHour, TimeUnit.HOURS.toMillis(1));
+		List<AccountPoller> ordered = new ArrayList<>(pollers);
+		ordered.sort(STALEST_FIRST);
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < ordered.size(); i++) {
+			Slot slot = new Slot(ordered.get(i));
+			slot.poller.setScheduler(this);
+			// stalest accounts take the early positions of the window
+			slot.nextDue = now + (long) ((i + random.nextDouble()) * slot.intervalMillis / ordered.size());
+			slots.add(slot);
+		}
+	}
+
+	public synchronized void start() {
+		workers = Executors.newFixedThreadPool(concurrency);
+		ticker = Executors.newSingleThreadScheduledExecutor();
+		ticker.scheduleWithFixedDelay(this::dispatch, 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	public synchronized void stop() {
+		if (ticker != null) {
+			ticker.shutdownNow();
+			workers.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return when the account is due next, in epoch milliseconds
+	 */
+	synchronized long getNextDue(AccountPoller poller) {
+		return slot(poller).nextDue;
+	}
+
+	/**
+	 * @return the current refresh interval of the account, in milliseconds
+	 */
+	synchronized long getIntervalMillis(AccountPoller poller) {
+		return slot(poller).intervalMillis;
+	}
+
+	/**
+	 * @return the age a snapshot of the account reaches before its next poll
+	 *         at the latest, in milliseconds
+	 */
+	synchronized long getMaxAgeMillis(AccountPoller poller) {
+		return (long) (slot(poller).intervalMillis * (1 + JITTER));
+	}
+
+	/**
+	 * Refreshes the account for a read, if the login budget allows and it is
+	 * not being polled already. The next poll is then due an interval later.
+	 *
+	 * @return whether the account was refreshed
+	 */
+	boolean refreshForRead(AccountPoller poller) {
+		Slot slot;
+		synchronized (this) {
+			slot = slot(poller);
+			if (slot.running || !budget.tryTake(System.currentTimeMillis())) {
+				logger.debug("Not refreshing {} for a read, polled already or out of budget",
+						poller.getEntry().getId());
+				return false;
+			}
+			slot.running = true;
+			running++;
+		}
+		return poll(slot);
+	}
+
+	private Slot slot(AccountPoller poller) {
+		for (Slot slot : slots) {
+			if (slot.poller == poller) {
+				return slot;
+			}
+		}
+		throw new IllegalArgumentException("Unknown account: " + poller.getEntry().getId());
+	}
+
+	private synchronized void dispatch() {
+		long now = System.currentTimeMillis();
+		List<Slot> due = new ArrayList<>();
+		for (Slot slot : slots) {
+			if (!slot.running && slot.nextDue <= now) {
+				due.add(slot);
+			}
+		}
+		due.sort((a, b) -> STALEST_FIRST.compare(a.poller, b.poller));
+		for (Slot slot : due) {
+			if (running >= concurrency || !budget.tryTake(now)) {
+				break;
+			}
+			slot.running = true;
+			running++;
+			workers.execute(() -> poll(slot));
+		}
+	}
+
+	/**
+	 * @return whether the refresh succeeded
+	 */
+	private boolean poll(Slot slot) {
+		AccountSnapshot before = slot.poller.getSnapshot();
+		boolean refreshed = false;
+		try {
+			refreshed = slot.poller.refresh();
+		} catch (RuntimeException e) {
+			logger.error("ERROR while polling {}: ", slot.poller.getEntry().getId(), e);
+		} finally {
+			synchronized (this) {
+				if (refreshed) {
+					slot.intervalMillis = nextInterval(slot.intervalMillis, slot.minMillis, slot.maxMillis, before,
+							slot.poller.getSnapshot());
+				}
+				double jitter = (random.nextDouble() * 2 - 1) * JITTER;
+				slot.nextDue = System.currentTimeMillis() + (long) (slot.intervalMillis * (1 + jitter));
+				slot.running = false;
+				running--;
+			}
+		}
+		return refreshed;
+	}
+
+	/**
+	 * @return the interval after a refresh from the before to the after
+	 *         snapshot, unchanged after the first one
+	 */
+	static long nextInterval(long intervalMillis, long minMillis, long maxMillis, AccountSnapshot before,
+			AccountSnapshot after) {
+		if (before == null || after == null) {
+			return intervalMillis;
+		}
+		if (after.sameContent(before)) {
+			return Math.min(maxMillis, intervalMillis * 2);
+		}
+		return Math.max(minMillis, intervalMillis / 2);
+	}
+
+	private static long fetchedAt(AccountPoller poller) {
+		AccountSnapshot snapshot = poller.getSnapshot();
+		return snapshot != null ? snapshot.getFetchedAt() : Long.MIN_VALUE;
+	}
+
+	private static final class Slot {
+
+		private final AccountPoller poller;
+
+		private final long minMillis;
+
+		private final long maxMillis;
+
+		private long intervalMillis;
+
+		private long nextDue;
+
+		private boolean running;
+
+		private Slot(AccountPoller poller) {
+			this.poller = poller;
+			this.minMillis = TimeUnit.SECONDS.toMillis(Math.max(1, poller.getEntry().getMinRefreshSeconds()));
+			this.maxMillis = Math.max(minMillis, TimeUnit.SECONDS.toMillis(poller.getEntry().getMaxRefreshSeconds()));
+			long refreshMillis = TimeUnit.SECONDS.toMillis(poller.getEntry().getRefreshSeconds());
+			this.intervalMillis = Math.max(minMillis, Math.min(maxMillis, refreshMillis));
+		}
+	}
+
+	/**
+	 * Refreshes allowed in a sliding window.
+	 */
+	static final class Budget {
+
+		private final int limit;
+
+		private final long windowMillis;
+
+		private final ArrayDeque<Long> taken = new ArrayDeque<>();
+
+		Budget(int limit, long windowMillis) {
+			this.limit = limit;
+			this.windowMillis = windowMillis;
+		}
+
+		/**
+		 * @return whether a refresh fits the budget, which it is then charged
+		 *         to
+		 */
+		boolean tryTake(long now) {
+			if (limit <= 0) {
+				return true;
+			}
+			while (!taken.isEmpty() && taken.peekFirst() <= now - windowMillis) {
+				taken.pollFirst();
+			}
+			if (taken.size() >= limit) {
+				return false;
+			}
+			taken.addLast(now);
+			return true;
+		}
+	}
+}
@@ -0,0 +1,49 @@
+/**
+ *
+ */
+package in.dreambit.erputils.export;
+
+/**
+ * Layout of the binary transaction export, read by
+ * {@link BinaryExportReader} and written by {@link BinaryExportWriter}.
+ *
+ * <pre>
+ * int     magic "SBX1"
+ * short   version
+ * varint  column count, then per column: name (varint length, UTF-8) and type byte
+ * string  account number
+ * varint  row count
+ * varint  dictionary size, then each narration as a string
+ * rows    per column in schema order:
+ *           date       zigzag varint, days since the previous row (epoch day 0 before the first)
+ *           narration  varint dictionary index
+ *           reference  string
+ *           amounts    zigzag varint paise, for debit, credit and balance
+ * </pre>
+ *
+ * Strings are a varint byte length followed by UTF-8. Multi byte fixed fields
+ * are big endian.
+ *
+ */
+public final class BinaryExport {
+
+	public static final int MAGIC = 0x53425831; // "SBX1"
+
+	public static final short VERSION = 1;
+
+	static final byte TYPE_DELTA_DATE = 1;
+
+	static final byte TYPE_DICTIONARY = 2;
+
+	static final byte TYPE_STRING = 3;
+
+	static final byte TYPE_AMOUNT = 4;
+
+	static final String[] COLUMNS = { "epoch_day", "narration", "reference", "debit", "credit", "balance" };
+
+	static final byte[] TYPES = { TYPE_DELTA_DATE, TYPE_DICTIONARY, TYPE_STRING, TYPE_AMOUNT, TYPE_AMOUNT,
+			TYPE_AMOUNT };
+
+	private BinaryExport() {
+	}
+}
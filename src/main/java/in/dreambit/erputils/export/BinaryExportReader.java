@@ -0,0 +1,220 @@
+/**
+ *
+ */
+package in.dreambit.erputils.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import in.dreambit.erputils.bank.Transaction;
+
+/**
+ * Reads a {@link BinaryExport} file through a read-only memory mapping.
+ *
+ * The header and the narration dictionary are decoded on open; rows are then
+ * decoded by a {@link Cursor} straight from the mapping into primitive
+ * fields, so iterating allocates nothing per row. References are only turned
+ * into strings when asked for.
+ *
+ */
+public class BinaryExportReader implements Closeable {
+
+	private final FileChannel channel;
+
+	private final MappedByteBuffer mapping;
+
+	private final String accountNumber;
+
+	private final int rowCount;
+
+	private final String[] dictionary;
+
+	private final int rowsOffset;
+
+	public BinaryExportReader(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Export exceeds 2 GB : " + file);
+			}
+			mapping = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			ByteBuffer header = mapping.duplicate();
+			if (header.remaining() < 6 || header.getInt() != BinaryExport.MAGIC) {
+				throw new IOException("Not a transaction export : " + file);
+			}
+			short version = header.getShort();
+			if (version != BinaryExport.VERSION) {
+				throw new IOException("Unsupported export version " + version + " : " + file);
+			}
+			readSchema(header);
+			accountNumber = getString(header);
+			rowCount = Varint.getLength(header);
+			dictionary = new String[Varint.getLength(header)];
+			for (int i = 0; i < dictionary.length; i++) {
+				dictionary[i] = getString(header);
+			}
+			rowsOffset = header.position();
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			if (e instanceof BufferUnderflowException) {
+				throw new IOException("Truncated export : " + file, e);
+			}
+			throw e;
+		}
+	}
+
+	private static void readSchema(ByteBuffer header) throws IOException {
+		int columns = Varint.getLength(header);
+		if (columns != BinaryExport.COLUMNS.length) {
+			throw new IOException("Unexpected export schema of " + columns + " columns");
+		}
+		for (int i = 0; i < columns; i++) {
+			String name = getString(header);
+			byte type = header.get();
+			if (!BinaryExport.COLUMNS[i].equals(name) || BinaryExport.TYPES[i] != type) {
+				throw new IOException("Unexpected export column " + name + " of type " + type);
+			}
+		}
+	}
+
+	private static String getString(ByteBuffer buffer) throws IOException {
+		byte[] bytes = new byte[Varint.getLength(buffer)];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	public String getAccountNumber() {
+		return accountNumber;
+	}
+
+	public int size() {
+		return rowCount;
+	}
+
+	/**
+	 * @return the narration with the dictionary index
+	 */
+	public String narration(int index) {
+		return dictionary[index];
+	}
+
+	/**
+	 * @return a cursor before the first row
+	 */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	/**
+	 * Forward only position over the rows; the getters describe the current
+	 * row.
+	 */
+	public class Cursor {
+
+		private final ByteBuffer rows = mapping.duplicate();
+
+		private int row;
+
+		private long epochDay;
+
+		private int narrationIndex;
+
+		private int referenceOffset;
+
+		private int referenceLength;
+
+		private long debit;
+
+		private long credit;
+
+		private long balance;
+
+		Cursor() {
+			rows.position(rowsOffset);
+		}
+
+		/**
+		 * Moves to the next row.
+		 *
+		 * @return false past the last row
+		 */
+		public boolean next() throws IOException {
+			if (row == rowCount) {
+				return false;
+			}
+			try {
+				epochDay += Varint.getSigned(rows);
+				narrationIndex = Varint.getLength(rows);
+				if (narrationIndex >= dictionary.length) {
+					throw new IOException("Narration index out of range at row " + row);
+				}
+				referenceLength = Varint.getLength(rows);
+				referenceOffset = rows.position();
+				rows.position(referenceOffset + referenceLength);
+				debit = Varint.getSigned(rows);
+				credit = Varint.getSigned(rows);
+				balance = Varint.getSigned(rows);
+			} catch (BufferUnderflowException | IllegalArgumentException e) {
+				throw new IOException("Truncated export at row " + row, e);
+			}
+			row++;
+			return true;
+		}
+
+		public long getEpochDay() {
+			return epochDay;
+		}
+
+		public int getNarrationIndex() {
+			return narrationIndex;
+		}
+
+		public String getNarration() {
+			return dictionary[narrationIndex];
+		}
+
+		/**
+		 * @return the reference, decoded on each call
+		 */
+		public String getReference() {
+			byte[] bytes = new byte[referenceLength];
+			ByteBuffer source = mapping.duplicate();
+			source.position(referenceOffset);
+			source.get(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		public long getDebit() {
+			return debit;
+		}
+
+		public long getCredit() {
+			return credit;
+		}
+
+		public long getBalance() {
+			return balance;
+		}
+
+		/**
+		 * @return the current row as a {@link Transaction}, allocated on each
+		 *         call
+		 */
+		public Transaction toTransaction() {
+			return new Transaction(epochDay, getNarration(), getReference(), debit, credit, balance);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
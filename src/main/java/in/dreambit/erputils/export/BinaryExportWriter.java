@@ -0,0 +1,122 @@
+/**
+ *
+ */
+package in.dreambit.erputils.export;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import in.dreambit.erputils.bank.Transaction;
+
+/**
+ * Writes a transaction history in the {@link BinaryExport} layout through a
+ * file channel, encoding the rows into one reused buffer.
+ *
+ */
+public final class BinaryExportWriter {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private BinaryExportWriter() {
+	}
+
+	public static void write(Path file, String accountNumber, List<Transaction> transactions) throws IOException {
+		List<String> dictionary = new ArrayList<>();
+		Map<String, Integer> ids = new HashMap<>();
+		for (Transaction transaction : transactions) {
+			ids.computeIfAbsent(text(transaction.getNarration()), narration -> {
+				dictionary.add(narration);
+				return dictionary.size() - 1;
+			});
+		}
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			Output out = new Output(channel);
+
+			out.ensure(6 + Varint.MAX_LENGTH);
+			out.buffer.putInt(BinaryExport.MAGIC);
+			out.buffer.putShort(BinaryExport.VERSION);
+			Varint.putUnsigned(out.buffer, BinaryExport.COLUMNS.length);
+			for (int i = 0; i < BinaryExport.COLUMNS.length; i++) {
+				out.putString(BinaryExport.COLUMNS[i]);
+				out.ensure(1);
+				out.buffer.put(BinaryExport.TYPES[i]);
+			}
+			out.putString(text(accountNumber));
+
+			out.ensure(2 * Varint.MAX_LENGTH);
+			Varint.putUnsigned(out.buffer, transactions.size());
+			Varint.putUnsigned(out.buffer, dictionary.size());
+			for (String narration : dictionary) {
+				out.putString(narration);
+			}
+
+			long previousDay = 0;
+			for (Transaction transaction : transactions) {
+				out.ensure(5 * Varint.MAX_LENGTH);
+				Varint.putSigned(out.buffer, transaction.getEpochDay() - previousDay);
+				Varint.putUnsigned(out.buffer, ids.get(text(transaction.getNarration())));
+				out.putString(text(transaction.getReference()));
+				out.ensure(3 * Varint.MAX_LENGTH);
+				Varint.putSigned(out.buffer, transaction.getDebit());
+				Varint.putSigned(out.buffer, transaction.getCredit());
+				Varint.putSigned(out.buffer, transaction.getBalance());
+				previousDay = transaction.getEpochDay();
+			}
+			out.flush();
+		}
+	}
+
+	private static String text(String value) {
+		return value == null ? "" : value;
+	}
+
+	/**
+	 * Buffer in front of the channel, drained whenever the next field might
+	 * not fit.
+	 */
+	private static final class Output {
+
+		private final FileChannel channel;
+
+		private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+		Output(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		void ensure(int bytes) throws IOException {
+			if (buffer.remaining() >= bytes) {
+				return;
+			}
+			flush();
+			if (buffer.capacity() < bytes) {
+				buffer = ByteBuffer.allocate(bytes);
+			}
+		}
+
+		void putString(String value) throws IOException {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			ensure(Varint.MAX_LENGTH + bytes.length);
+			Varint.putUnsigned(buffer, bytes.length);
+			buffer.put(bytes);
+		}
+
+		void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+}
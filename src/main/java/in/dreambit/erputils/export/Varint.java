@@ -0,0 +1,62 @@
+/**
+ *
+ */
+package in.dreambit.erputils.export;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * LEB128 variable length integers: seven bits per byte, low bits first, the
+ * high bit set on every byte but the last. Signed values are zigzag encoded
+ * so small negatives stay short.
+ *
+ */
+final class Varint {
+
+	/** Longest encoding of a 64 bit value */
+	static final int MAX_LENGTH = 10;
+
+	private Varint() {
+	}
+
+	static void putUnsigned(ByteBuffer buffer, long value) {
+		while ((value & ~0x7FL) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	static void putSigned(ByteBuffer buffer, long value) {
+		putUnsigned(buffer, (value << 1) ^ (value >> 63));
+	}
+
+	static long getUnsigned(ByteBuffer buffer) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint at offset " + buffer.position());
+	}
+
+	static long getSigned(ByteBuffer buffer) throws IOException {
+		long value = getUnsigned(buffer);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * @return the value as a non negative int
+	 */
+	static int getLength(ByteBuffer buffer) throws IOException {
+		long value = getUnsigned(buffer);
+		if (value > Integer.MAX_VALUE) {
+			throw new IOException("Length out of range at offset " + buffer.position());
+		}
+		return (int) value;
+	}
+}
@@ -0,0 +1,43 @@
+/**
+ *
+ */
+package in.dreambit.erputils.fake;
+
+import in.dreambit.erputils.support.LogRedactor;
+import in.dreambit.erputils.support.TransportListener;
+import in.dreambit.erputils.support.TransportResponse;
+
+/**
+ * Captures the exchanges of an {@link in.dreambit.erputils.support.HttpTransport}
+ * into a {@link Recording}, e.g. a real login to replay later against
+ * <code>FakeSbbjServer</code>. Password hashes, the login SHA key and session
+ * cookies are masked before they are kept, so a recording cannot be used to
+ * recover credentials.
+ *
+ */
+public class ExchangeRecorder implements TransportListener {
+
+	private final Recording recording = new Recording();
+
+	@Override
+	public void exchanged(String method, String url, TransportResponse response) {
+		RecordedExchange exchange = new RecordedExchange();
+		exchange.setMethod(method);
+		exchange.setUrl(LogRedactor.redact(url));
+		exchange.setStatus(response.statusCode());
+		String location = response.header("Location");
+		exchange.setLocation(location == null ? null : LogRedactor.redact(location));
+		exchange.setBody(LogRedactor.redact(response.body()));
+
+		synchronized (recording) {
+			recording.getExchanges().add(exchange);
+		}
+	}
+
+	/**
+	 * @return the exchanges recorded so far
+	 */
+	public Recording getRecording() {
+		return recording;
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ *
+ */
+package in.dreambit.erputils.fake;
+
+/**
+ * One request and its response, as kept in a {@link Recording}. Cookies are
+ * not recorded.
+ *
+ */
+public class RecordedExchange {
+
+	private String method;
+
+	private String url;
+
+	private int status;
+
+	private String location;
+
+	private String body;
+
+	/**
+	 * @return the method
+	 */
+	public String getMethod() {
+		return method;
+	}
+
+	/**
+	 * @param method
+	 *            the method to set
+	 */
+	public void setMethod(String method) {
+		this.method = method;
+	}
+
+	/**
+	 * @return the request URL
+	 */
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * @param url
+	 *            the url to set
+	 */
+	public void setUrl(String url) {
+		this.url = url;
+	}
+
+	/**
+	 * @return the response status
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * @param status
+	 *            the status to set
+	 */
+	public void setStatus(int status) {
+		this.status = status;
+	}
+
+	/**
+	 * @return the Location header of a redirect, null otherwise
+	 */
+	public String getLocation() {
+		return location;
+	}
+
+	/**
+	 * @param location
+	 *            the location to set
+	 */
+	public void setLocation(String location) {
+		this.location = location;
+	}
+
+	/**
+	 * @return the response body
+	 */
+	public String getBody() {
+		return body;
+	}
+
+	/**
+	 * @param body
+	 *            the body to set
+	 */
+	public void setBody(String body) {
+		this.body = body;
+	}
+}
@@ -0,0 +1,47 @@
+/**
+ *
+ */
+package in.dreambit.erputils.fake;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Exchanges captured by an {@link ExchangeRecorder}, replayable by
+ * <code>FakeSbbjServer</code>. Recordings of the live bank hold account data and
+ * have to be stored accordingly.
+ *
+ */
+public class Recording {
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	private List<RecordedExchange> exchanges = new ArrayList<>();
+
+	public static Recording load(String filePath) throws IOException {
+		return mapper.readValue(new File(filePath), Recording.class);
+	}
+
+	public void save(String filePath) throws IOException {
+		mapper.writerWithDefaultPrettyPrinter().writeValue(new File(filePath), this);
+	}
+
+	/**
+	 * @return the exchanges, in the order they were made
+	 */
+	public List<RecordedExchange> getExchanges() {
+		return exchanges;
+	}
+
+	/**
+	 * @param exchanges
+	 *            the exchanges to set
+	 */
+	public void setExchanges(List<RecordedExchange> exchanges) {
+		this.exchanges = exchanges;
+	}
+}
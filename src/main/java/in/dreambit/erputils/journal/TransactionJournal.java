@@ -0,0 +1,365 @@
+/**
+ *
+ */
+package in.dreambit.erputils.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import in.dreambit.erputils.bank.Transaction;
+
+/**
+ * Append-only journal of the transactions of one account, written through a
+ * memory mapped file.
+ *
+ * The file starts with a magic header followed by records of
+ * <code>[length][payload][crc32]</code>. The mapping grows ahead of the data
+ * and the unused tail is zero filled, so a zero length marks the end. On open
+ * the records are scanned once to rebuild the fingerprint set used for dedup
+ * and a sparse date index; a torn or corrupt record at the tail, left by a
+ * crash during an append, ends the scan and is wiped so the next append
+ * overwrites it.
+ *
+ * Range reads seek through the sparse index and decode only the records they
+ * return, so the history is never loaded into heap as a whole.
+ *
+ */
+public class TransactionJournal implements Closeable {
+
+	private static final Logger logger = LogManager.getRootLogger();
+
+	private static final int MAGIC = 0x53424a31; // "SBJ1"
+
+	private static final int HEADER_SIZE = 4;
+
+	/** Record framing: the length prefix and the trailing checksum */
+	private static final int FRAME_SIZE = 8;
+
+	/** Fixed part of the payload: epoch day, debit, credit and balance */
+	private static final int FIXED_PAYLOAD = 32;
+
+	private static final int INDEX_INTERVAL = 64;
+
+	private static final long MIN_MAPPING = 1 << 20;
+
+	private final FileChannel channel;
+
+	private final FileLock lock;
+
+	private MappedByteBuffer buffer;
+
+	private int end;
+
+	private int count;
+
+	private boolean ordered = true;
+
+	private long maxEpochDay = Long.MIN_VALUE;
+
+	private final Set<Long> fingerprints = new HashSet<>();
+
+	/**
+	 * Sparse index, one entry per {@link #INDEX_INTERVAL} records: the offset
+	 * of the record and the latest date among all records before it.
+	 */
+	private final List<long[]> index = new ArrayList<>();
+
+	/**
+	 * Opens the journal, creating it if needed.
+	 *
+	 * @throws IOException
+	 *             if the journal is not readable or held by another process
+	 */
+	public TransactionJournal(Path file) throws IOException {
+		Path parent = file.toAbsolutePath().getParent();
+		if (parent != null) {
+			Files.createDirectories(parent);
+		}
+
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		lock = channel.tryLock();
+		if (lock == null) {
+			channel.close();
+			throw new IOException("Journal is in use by another process : " + file);
+		}
+
+		try {
+			long size = channel.size();
+			map(Math.max(size, MIN_MAPPING));
+			if (size == 0) {
+				buffer.putInt(0, MAGIC);
+			} else if (buffer.getInt(0) != MAGIC) {
+				throw new IOException("Not a transaction journal : " + file);
+			}
+			recover(file);
+		} catch (IOException | RuntimeException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Opens the journal of an account in the directory.
+	 */
+	public static TransactionJournal forAccount(Path directory, String accountKey) throws IOException {
+		return new TransactionJournal(directory.resolve(accountKey.replaceAll("[^A-Za-z0-9_.-]", "_") + ".journal"));
+	}
+
+	/**
+	 * Scans the records, rebuilding the dedup set and the index, and wipes a
+	 * torn tail.
+	 */
+	private void recover(Path file) {
+		int position = HEADER_SIZE;
+		while (true) {
+			int length = readLength(position);
+			if (length == 0) {
+				break;
+			}
+			if (length < 0 || !checksumMatches(position, length)) {
+				logger.warn("Truncating torn journal tail at offset {} of {}", position, file);
+				zero(position);
+				break;
+			}
+
+			indexRecord(position, readEpochDay(position), read(position).fingerprint());
+			position += FRAME_SIZE + length;
+		}
+		end = position;
+		logger.debug("Opened journal {} with {} records", file, count);
+	}
+
+	/**
+	 * @return the record length at the position, -1 if it cannot be a record
+	 */
+	private int readLength(int position) {
+		if (position + 4 > buffer.capacity()) {
+			return 0;
+		}
+		int length = buffer.getInt(position);
+		if (length != 0 && (length < FIXED_PAYLOAD + 8 || position + FRAME_SIZE + (long) length > buffer.capacity())) {
+			return -1;
+		}
+		return length;
+	}
+
+	private boolean checksumMatches(int position, int length) {
+		return crc(position + 4, length) == buffer.getInt(position + 4 + length);
+	}
+
+	private int crc(int offset, int length) {
+		ByteBuffer payload = buffer.duplicate();
+		payload.position(offset).limit(offset + length);
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Zero fills the mapping from the offset on, nothing past the end of the
+	 * data is ever valid.
+	 */
+	private void zero(int offset) {
+		ByteBuffer tail = buffer.duplicate();
+		tail.position(offset);
+		byte[] zeros = new byte[8192];
+		while (tail.hasRemaining()) {
+			tail.put(zeros, 0, Math.min(zeros.length, tail.remaining()));
+		}
+		buffer.force();
+	}
+
+	private void indexRecord(int position, long epochDay, long fingerprint) {
+		if (count % INDEX_INTERVAL == 0) {
+			index.add(new long[] { position, maxEpochDay });
+		}
+		if (epochDay < maxEpochDay) {
+			ordered = false;
+		}
+		maxEpochDay = Math.max(maxEpochDay, epochDay);
+		fingerprints.add(fingerprint);
+		count++;
+	}
+
+	private void map(long capacity) throws IOException {
+		if (capacity > Integer.MAX_VALUE) {
+			throw new IOException("Journal exceeds 2 GB");
+		}
+		buffer = channel.map(MapMode.READ_WRITE, 0, capacity);
+	}
+
+	/**
+	 * Appends the transaction unless a row with the same fingerprint is already
+	 * in the journal.
+	 *
+	 * @return whether the transaction was appended
+	 */
+	public synchronized boolean append(Transaction transaction) throws IOException {
+		long fingerprint = transaction.fingerprint();
+		if (fingerprints.contains(fingerprint)) {
+			return false;
+		}
+
+		byte[] narration = bytes(transaction.getNarration());
+		byte[] reference = bytes(transaction.getReference());
+		int length = FIXED_PAYLOAD + 8 + narration.length + reference.length;
+		int needed = end + FRAME_SIZE + length + 4;
+		if (needed > buffer.capacity()) {
+			map(Math.max((long) buffer.capacity() * 2, needed));
+		}
+
+		int position = end + 4;
+		buffer.putLong(position, transaction.getEpochDay());
+		buffer.putLong(position + 8, transaction.getDebit());
+		buffer.putLong(position + 16, transaction.getCredit());
+		buffer.putLong(position + 24, transaction.getBalance());
+		position += FIXED_PAYLOAD;
+		position = putString(position, narration);
+		position = putString(position, reference);
+		buffer.putInt(position, crc(end + 4, length));
+		// the length goes in last, so the record is invisible until complete
+		buffer.putInt(end, length);
+
+		indexRecord(end, transaction.getEpochDay(), fingerprint);
+		end += FRAME_SIZE + length;
+		return true;
+	}
+
+	/**
+	 * Appends every transaction not yet in the journal and flushes them to
+	 * disk.
+	 *
+	 * @return the number of transactions appended
+	 */
+	public synchronized int appendAll(List<Transaction> transactions) throws IOException {
+		int appended = 0;
+		for (Transaction transaction : transactions) {
+			if (append(transaction)) {
+				appended++;
+			}
+		}
+		if (appended > 0) {
+			buffer.force();
+		}
+		return appended;
+	}
+
+	/**
+	 * Passes every transaction dated between the two epoch days, both
+	 * inclusive, to the consumer in journal order.
+	 */
+	public synchronized void scan(long fromEpochDay, long toEpochDay, Consumer<Transaction> consumer) {
+		int position = HEADER_SIZE;
+		for (long[] entry : index) {
+			if (entry[1] >= fromEpochDay) {
+				break;
+			}
+			position = (int) entry[0];
+		}
+
+		while (position < end) {
+			int length = buffer.getInt(position);
+			long epochDay = readEpochDay(position);
+			if (ordered && epochDay > toEpochDay) {
+				break;
+			}
+			if (epochDay >= fromEpochDay && epochDay <= toEpochDay) {
+				consumer.accept(read(position));
+			}
+			position += FRAME_SIZE + length;
+		}
+	}
+
+	/**
+	 * @return the transactions dated between the two epoch days, both inclusive
+	 */
+	public List<Transaction> read(long fromEpochDay, long toEpochDay) {
+		List<Transaction> transactions = new ArrayList<>();
+		scan(fromEpochDay, toEpochDay, transactions::add);
+		return transactions;
+	}
+
+	private long readEpochDay(int position) {
+		return buffer.getLong(position + 4);
+	}
+
+	private Transaction read(int position) {
+		int offset = position + 4;
+		long epochDay = buffer.getLong(offset);
+		long debit = buffer.getLong(offset + 8);
+		long credit = buffer.getLong(offset + 16);
+		long balance = buffer.getLong(offset + 24);
+		offset += FIXED_PAYLOAD;
+		String narration = getString(offset);
+		offset += 4 + buffer.getInt(offset);
+		String reference = getString(offset);
+		return new Transaction(epochDay, narration, reference, debit, credit, balance);
+	}
+
+	private int putString(int offset, byte[] value) {
+		buffer.putInt(offset, value.length);
+		ByteBuffer target = buffer.duplicate();
+		target.position(offset + 4);
+		target.put(value);
+		return offset + 4 + value.length;
+	}
+
+	private String getString(int offset) {
+		byte[] value = new byte[buffer.getInt(offset)];
+		ByteBuffer source = buffer.duplicate();
+		source.position(offset + 4);
+		source.get(value);
+		return new String(value, StandardCharsets.UTF_8);
+	}
+
+	private static byte[] bytes(String value) {
+		return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return the number of transactions in the journal
+	 */
+	public synchronized int size() {
+		return count;
+	}
+
+	/**
+	 * @return whether a transaction with the same fingerprint is journalled
+	 */
+	public synchronized boolean contains(Transaction transaction) {
+		return fingerprints.contains(transaction.fingerprint());
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			if (buffer != null) {
+				buffer.force();
+			}
+			if (lock != null && lock.isValid()) {
+				lock.release();
+			}
+		} finally {
+			channel.close();
+		}
+	}
+}
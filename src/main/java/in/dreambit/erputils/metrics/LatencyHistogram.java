@@ -0,0 +1,99 @@
+/**
+ *
+ */
+package in.dreambit.erputils.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed bucket latency histogram, cumulative in the Prometheus sense when
+ * exported. Recording is lock free.
+ *
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Upper bounds of the buckets, in seconds
+	 */
+	public static final double[] BOUNDS = { 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30 };
+
+	private static final long[] BOUND_NANOS = new long[BOUNDS.length];
+
+	static {
+		for (int i = 0; i < BOUNDS.length; i++) {
+			BOUND_NANOS[i] = (long) (BOUNDS[i] * 1e9);
+		}
+	}
+
+	/**
+	 * One counter per bound plus the overflow bucket
+	 */
+	private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+
+	private final LongAdder count = new LongAdder();
+
+	private final LongAdder sumNanos = new LongAdder();
+
+	private final LongAdder bytes = new LongAdder();
+
+	public LatencyHistogram() {
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	public void record(long nanos, long responseBytes) {
+		int bucket = 0;
+		while (bucket < BOUND_NANOS.length && nanos > BOUND_NANOS[bucket]) {
+			bucket++;
+		}
+		buckets[bucket].increment();
+		count.increment();
+		sumNanos.add(nanos);
+		bytes.add(responseBytes);
+	}
+
+	/**
+	 * @return the number of samples at or below each bound, then the total
+	 */
+	public long[] cumulativeCounts() {
+		long[] cumulative = new long[buckets.length];
+		long running = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			running += buckets[i].sum();
+			cumulative[i] = running;
+		}
+		return cumulative;
+	}
+
+	/**
+	 * @return the upper bound, in seconds, of the bucket holding the
+	 *         percentile, infinite if it is the overflow bucket
+	 */
+	public double percentile(double percentile) {
+		long[] cumulative = cumulativeCounts();
+		long total = cumulative[cumulative.length - 1];
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(percentile / 100 * total);
+		for (int i = 0; i < BOUNDS.length; i++) {
+			if (cumulative[i] >= rank) {
+				return BOUNDS[i];
+			}
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public double getSumSeconds() {
+		return sumNanos.sum() / 1e9;
+	}
+
+	public long getBytes() {
+		return bytes.sum();
+	}
+}
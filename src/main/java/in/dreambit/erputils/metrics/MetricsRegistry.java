@@ -0,0 +1,34 @@
+/**
+ *
+ */
+package in.dreambit.erputils.metrics;
+
+import in.dreambit.erputils.bank.AccountType;
+
+/**
+ * Receiver of phase timings, see {@link PhaseMetrics} for the in-memory one.
+ *
+ */
+public interface MetricsRegistry {
+
+	MetricsRegistry NONE = (type, phase, outcome, nanos, bytes) -> {
+	};
+
+	/**
+	 * @param outcome
+	 *            <code>ok</code>, or a short tag for how the phase failed
+	 * @param bytes
+	 *            response bytes read during the phase
+	 */
+	void record(AccountType type, Phase phase, String outcome, long nanos, long bytes);
+
+	/**
+	 * @return a registry passing every timing to both registries
+	 */
+	static MetricsRegistry both(MetricsRegistry first, MetricsRegistry second) {
+		return (type, phase, outcome, nanos, bytes) -> {
+			first.record(type, phase, outcome, nanos, bytes);
+			second.record(type, phase, outcome, nanos, bytes);
+		};
+	}
+}
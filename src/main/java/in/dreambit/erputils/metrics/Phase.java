@@ -0,0 +1,52 @@
+/**
+ *
+ */
+package in.dreambit.erputils.metrics;
+
+import java.util.Locale;
+
+/**
+ * Timed phase of a bank session.
+ *
+ */
+public enum Phase {
+
+	/**
+	 * Login page GET, including the JSESSIONID fallback and SHA key lookup
+	 */
+	PRE_LOGIN,
+
+	/**
+	 * Password encoding for the login form
+	 */
+	ENCRYPTION,
+
+	/**
+	 * Login form submit, up to the redirect it answers with
+	 */
+	LOGIN_SUBMIT,
+
+	/**
+	 * Request following the login redirect, or the password change bypass
+	 */
+	REDIRECT,
+
+	/**
+	 * Home page parsing and account number lookup
+	 */
+	HOME_PAGE,
+
+	/**
+	 * Account statement request and parsing
+	 */
+	QUICKLOOK,
+
+	LOGOUT;
+
+	/**
+	 * @return the phase as a metric label
+	 */
+	public String label() {
+		return name().toLowerCase(Locale.ENGLISH);
+	}
+}
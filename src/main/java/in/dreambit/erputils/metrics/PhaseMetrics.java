@@ -0,0 +1,100 @@
+/**
+ *
+ */
+package in.dreambit.erputils.metrics;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import in.dreambit.erputils.bank.AccountType;
+
+/**
+ * In-memory registry keeping one {@link LatencyHistogram} per account type,
+ * phase and outcome. Exported with {@link PrometheusExporter}.
+ *
+ */
+public class PhaseMetrics implements MetricsRegistry {
+
+	private static final PhaseMetrics defaultMetrics = new PhaseMetrics();
+
+	/**
+	 * Labels of one histogram
+	 */
+	public static final class Key implements Comparable<Key> {
+
+		private final String type;
+
+		private final Phase phase;
+
+		private final String outcome;
+
+		Key(String type, Phase phase, String outcome) {
+			this.type = type;
+			this.phase = phase;
+			this.outcome = outcome;
+		}
+
+		public String getType() {
+			return type;
+		}
+
+		public Phase getPhase() {
+			return phase;
+		}
+
+		public String getOutcome() {
+			return outcome;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) other;
+			return type.equals(key.type) && phase == key.phase && outcome.equals(key.outcome);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(type, phase, outcome);
+		}
+
+		@Override
+		public int compareTo(Key other) {
+			int compared = type.compareTo(other.type);
+			if (compared == 0) {
+				compared = phase.compareTo(other.phase);
+			}
+			return compared != 0 ? compared : outcome.compareTo(other.outcome);
+		}
+	}
+
+	private final ConcurrentHashMap<Key, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+	/**
+	 * @return the process wide registry bank connections report to by default
+	 */
+	public static PhaseMetrics getDefault() {
+		return defaultMetrics;
+	}
+
+	@Override
+	public void record(AccountType type, Phase phase, String outcome, long nanos, long bytes) {
+		Key key = new Key(String.valueOf(type), phase, outcome);
+		histograms.computeIfAbsent(key, k -> new LatencyHistogram()).record(nanos, bytes);
+	}
+
+	/**
+	 * @return the histograms, ordered by type, phase and outcome
+	 */
+	public Map<Key, LatencyHistogram> histograms() {
+		return new TreeMap<>(histograms);
+	}
+
+	public void clear() {
+		histograms.clear();
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ *
+ */
+package in.dreambit.erputils.metrics;
+
+import java.net.SocketTimeoutException;
+
+import org.apache.http.conn.ConnectTimeoutException;
+import org.jsoup.HttpStatusException;
+
+import in.dreambit.erputils.bank.AccountType;
+
+/**
+ * Times the consecutive phases of one bank session: starting a phase ends the
+ * running one as successful, a failure is charged to the running phase. Not
+ * thread safe, one per connection.
+ *
+ */
+public class PhaseRecorder {
+
+	private MetricsRegistry registry;
+
+	private AccountType type;
+
+	private Phase phase;
+
+	private long started;
+
+	private long bytes;
+
+	public PhaseRecorder(MetricsRegistry registry) {
+		this.registry = registry;
+	}
+
+	public void setRegistry(MetricsRegistry registry) {
+		this.registry = registry;
+	}
+
+	public void begin(AccountType type, Phase phase) {
+		end("ok");
+		this.type = type;
+		this.phase = phase;
+		this.bytes = 0;
+		this.started = System.nanoTime();
+	}
+
+	/**
+	 * @return the running phase, null between phases
+	 */
+	public Phase getPhase() {
+		return phase;
+	}
+
+	/**
+	 * Adds response bytes to the running phase.
+	 */
+	public void bytes(long count) {
+		bytes += count;
+	}
+
+	/**
+	 * Ends the running phase as successful.
+	 */
+	public void end() {
+		end("ok");
+	}
+
+	/**
+	 * Ends the running phase as failed, a no-op if it was already charged.
+	 */
+	public void fail(Throwable e) {
+		end(outcome(e));
+	}
+
+	private void end(String outcome) {
+		if (phase == null) {
+			return;
+		}
+		registry.record(type, phase, outcome, System.nanoTime() - started, bytes);
+		phase = null;
+	}
+
+	/**
+	 * @return a bounded tag for the failure
+	 */
+	static String outcome(Throwable e) {
+		if (e instanceof HttpStatusException) {
+			return "http_" + ((HttpStatusException) e).getStatusCode();
+		}
+		if (e instanceof SocketTimeoutException || e instanceof ConnectTimeoutException) {
+			return "timeout";
+		}
+		if (e instanceof java.io.IOException) {
+			return "io_error";
+		}
+		return "error";
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ *
+ */
+package in.dreambit.erputils.metrics;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes {@link PhaseMetrics} in the Prometheus text exposition format, for a
+ * scrape endpoint or a node exporter textfile.
+ *
+ */
+public class PrometheusExporter {
+
+	public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	private static final String DURATION = "sbbj_phase_duration_seconds";
+
+	private static final String BYTES = "sbbj_phase_response_bytes_total";
+
+	public static void write(PhaseMetrics metrics, Writer out) throws IOException {
+		Map<PhaseMetrics.Key, LatencyHistogram> histograms = metrics.histograms();
+
+		out.write("# HELP " + DURATION + " Duration of bank session phases.\n");
+		out.write("# TYPE " + DURATION + " histogram\n");
+		for (Map.Entry<PhaseMetrics.Key, LatencyHistogram> entry : histograms.entrySet()) {
+			String labels = labels(entry.getKey());
+			LatencyHistogram histogram = entry.getValue();
+			long[] cumulative = histogram.cumulativeCounts();
+			for (int i = 0; i < LatencyHistogram.BOUNDS.length; i++) {
+				out.write(DURATION + "_bucket{" + labels + ",le=\"" + format(LatencyHistogram.BOUNDS[i]) + "\"} "
+						+ cumulative[i] + "\n");
+			}
+			out.write(DURATION + "_bucket{" + labels + ",le=\"+Inf\"} " + cumulative[cumulative.length - 1] + "\n");
+			out.write(DURATION + "_sum{" + labels + "} " + format(histogram.getSumSeconds()) + "\n");
+			out.write(DURATION + "_count{" + labels + "} " + histogram.getCount() + "\n");
+		}
+
+		out.write("# HELP " + BYTES + " Response bytes read during bank session phases.\n");
+		out.write("# TYPE " + BYTES + " counter\n");
+		for (Map.Entry<PhaseMetrics.Key, LatencyHistogram> entry : histograms.entrySet()) {
+			out.write(BYTES + "{" + labels(entry.getKey()) + "} " + entry.getValue().getBytes() + "\n");
+		}
+		out.flush();
+	}
+
+	public static String scrape(PhaseMetrics metrics) {
+		StringWriter out = new StringWriter();
+		try {
+			write(metrics, out);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Writes the metrics to a file, replacing it atomically so a collector
+	 * never reads it half written.
+	 */
+	public static void writeFile(PhaseMetrics metrics, Path file) throws IOException {
+		Path directory = file.toAbsolutePath().getParent();
+		Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+		try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+			write(metrics, out);
+		}
+		try {
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static String labels(PhaseMetrics.Key key) {
+		return "type=\"" + key.getType() + "\",phase=\"" + key.getPhase().label() + "\",outcome=\""
+				+ key.getOutcome() + "\"";
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%s", value);
+	}
+}
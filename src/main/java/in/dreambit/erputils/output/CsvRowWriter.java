@@ -0,0 +1,68 @@
+/**
+ *
+ */
+package in.dreambit.erputils.output;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Rows as RFC 4180 CSV records: values holding a comma, quote or line break
+ * are quoted, with quotes doubled, and records end in CRLF.
+ *
+ */
+public class CsvRowWriter implements RowWriter {
+
+	private final Writer out;
+
+	public CsvRowWriter(OutputStream out) {
+		this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public void write(List<String> row) throws IOException {
+		for (int i = 0; i < row.size(); i++) {
+			if (i > 0) {
+				out.write(',');
+			}
+			writeValue(row.get(i));
+		}
+		out.write("\r\n");
+	}
+
+	private void writeValue(String value) throws IOException {
+		if (value == null) {
+			return;
+		}
+		boolean quote = false;
+		for (int i = 0; i < value.length() && !quote; i++) {
+			char c = value.charAt(i);
+			quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+		}
+		if (!quote) {
+			out.write(value);
+			return;
+		}
+		out.write('"');
+		int start = 0;
+		for (int i = 0; i < value.length(); i++) {
+			if (value.charAt(i) == '"') {
+				out.write(value, start, i + 1 - start);
+				out.write('"');
+				start = i + 1;
+			}
+		}
+		out.write(value, start, value.length() - start);
+		out.write('"');
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
@@ -0,0 +1,52 @@
+/**
+ *
+ */
+package in.dreambit.erputils.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Rows as JSON arrays through a streaming {@link JsonGenerator}, either
+ * wrapped in one enclosing array or as newline delimited values.
+ *
+ */
+public class JsonRowWriter implements RowWriter {
+
+	private final JsonGenerator generator;
+
+	private final boolean delimited;
+
+	private boolean empty = true;
+
+	public JsonRowWriter(OutputStream out, boolean delimited) throws IOException {
+		this.generator = OutputWriters.generator(out, delimited);
+		this.delimited = delimited;
+		if (!delimited) {
+			generator.writeStartArray();
+		}
+	}
+
+	@Override
+	public void write(List<String> row) throws IOException {
+		empty = false;
+		generator.writeStartArray();
+		for (String value : row) {
+			generator.writeString(value);
+		}
+		generator.writeEndArray();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!delimited) {
+			generator.writeEndArray();
+		} else if (!empty) {
+			generator.writeRaw('\n');
+		}
+		generator.close();
+	}
+}
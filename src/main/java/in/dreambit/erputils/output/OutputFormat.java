@@ -0,0 +1,48 @@
+/**
+ *
+ */
+package in.dreambit.erputils.output;
+
+import java.util.Locale;
+
+/**
+ * Output type of the key details and transaction files, as given to
+ * <code>-output</code>.
+ *
+ */
+public enum OutputFormat {
+
+	/**
+	 * One JSON document: an object of key details, an array of row arrays
+	 */
+	JSON,
+
+	/**
+	 * Fixed width columns
+	 */
+	TEXT,
+
+	/**
+	 * One JSON value per line, a row array per transaction
+	 */
+	NDJSON,
+
+	/**
+	 * RFC 4180 comma separated values
+	 */
+	CSV;
+
+	/**
+	 * @return the format for an output type name, or null if there is none
+	 */
+	public static OutputFormat forName(String name) {
+		if (name == null) {
+			return null;
+		}
+		try {
+			return valueOf(name.toUpperCase(Locale.ENGLISH));
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+}
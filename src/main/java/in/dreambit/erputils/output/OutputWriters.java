@@ -0,0 +1,126 @@
+/**
+ *
+ */
+package in.dreambit.erputils.output;
+
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Streams key details and statement rows in each {@link OutputFormat}, over
+ * one shared mapper.
+ *
+ */
+public final class OutputWriters {
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	private OutputWriters() {
+	}
+
+	/**
+	 * @return the mapper shared by the writers, thread safe once configured
+	 */
+	public static ObjectMapper mapper() {
+		return mapper;
+	}
+
+	static JsonGenerator generator(OutputStream out, boolean delimited) throws IOException {
+		JsonGenerator generator = mapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+		if (delimited) {
+			generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+		}
+		return generator;
+	}
+
+	/**
+	 * @return a writer streaming rows to <code>out</code>, closing it when
+	 *         closed
+	 */
+	public static RowWriter rowWriter(OutputFormat format, OutputStream out) throws IOException {
+		switch (format) {
+		case JSON:
+			return new JsonRowWriter(out, false);
+		case NDJSON:
+			return new JsonRowWriter(out, true);
+		case CSV:
+			return new CsvRowWriter(out);
+		default:
+			return new TextRowWriter(out);
+		}
+	}
+
+	public static void writeTransactions(List<List<String>> rows, OutputFormat format, OutputStream out)
+			throws IOException {
+		try (RowWriter writer = rowWriter(format, out)) {
+			for (List<String> row : rows) {
+				writer.write(row);
+			}
+		}
+	}
+
+	/**
+	 * Writes key details as one JSON object, a <code>key,value</code> CSV
+	 * record per detail, or aligned text lines. Closes <code>out</code>.
+	 */
+	public static void writeKeyDetails(Map<String, String> keyDetails, OutputFormat format, OutputStream out)
+			throws IOException {
+		switch (format) {
+		case JSON:
+		case NDJSON:
+			try (JsonGenerator generator = generator(out, false)) {
+				generator.writeStartObject();
+				for (Map.Entry<String, String> detail : keyDetails.entrySet()) {
+					generator.writeStringField(detail.getKey(), detail.getValue());
+				}
+				generator.writeEndObject();
+				if (format == OutputFormat.NDJSON) {
+					generator.writeRaw('\n');
+				}
+			}
+			break;
+		case CSV:
+			try (RowWriter writer = new CsvRowWriter(out)) {
+				for (Map.Entry<String, String> detail : keyDetails.entrySet()) {
+					writer.write(Arrays.asList(detail.getKey(), detail.getValue()));
+				}
+			}
+			break;
+		default:
+			try (Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+				TextRowWriter.writeKeyDetails(writer, keyDetails.entrySet());
+			}
+			break;
+		}
+	}
+
+	/**
+	 * @return standard out for a writer to close, flushed instead of closed
+	 */
+	public static OutputStream console() {
+		return new FilterOutputStream(System.out) {
+			@Override
+			public void write(byte[] bytes, int offset, int length) throws IOException {
+				out.write(bytes, offset, length);
+			}
+
+			@Override
+			public void close() throws IOException {
+				flush();
+			}
+		};
+	}
+}
@@ -0,0 +1,18 @@
+/**
+ *
+ */
+package in.dreambit.erputils.output;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes statement rows one at a time, so a whole history never has to be
+ * formatted in memory. Closing finishes the document and flushes it.
+ *
+ */
+public interface RowWriter extends Closeable {
+
+	void write(List<String> row) throws IOException;
+}
@@ -0,0 +1,80 @@
+/**
+ *
+ */
+package in.dreambit.erputils.output;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rows as tab separated columns, each value right aligned and cut to
+ * {@value #WIDTH} characters, the same as <code>%40.40s\t</code> but padded in
+ * place rather than formatted per cell. Rows of less than
+ * {@value #MIN_COLUMNS} cells, such as the balance footer, are skipped.
+ *
+ */
+public class TextRowWriter implements RowWriter {
+
+	private static final int WIDTH = 40;
+
+	private static final int MIN_COLUMNS = 5;
+
+	private static final String LINE_SEPARATOR = System.lineSeparator();
+
+	private final Writer out;
+
+	public TextRowWriter(OutputStream out) {
+		this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public void write(List<String> row) throws IOException {
+		if (row.size() < MIN_COLUMNS) {
+			return;
+		}
+		for (String value : row) {
+			pad(out, value, WIDTH, WIDTH);
+			out.write('\t');
+		}
+		out.write(LINE_SEPARATOR);
+	}
+
+	/**
+	 * Writes the value right aligned in <code>width</code> characters, cut to
+	 * <code>precision</code> characters when positive.
+	 */
+	static void pad(Writer out, String value, int width, int precision) throws IOException {
+		if (value == null) {
+			value = "null";
+		}
+		int length = precision > 0 ? Math.min(value.length(), precision) : value.length();
+		for (int i = length; i < width; i++) {
+			out.write(' ');
+		}
+		out.write(value, 0, length);
+	}
+
+	/**
+	 * Writes key details as <code>%20s: %20s</code> lines.
+	 */
+	static void writeKeyDetails(Writer out, Iterable<Map.Entry<String, String>> details)
+			throws IOException {
+		for (Map.Entry<String, String> detail : details) {
+			pad(out, detail.getKey(), 20, 0);
+			out.write(": ");
+			pad(out, detail.getValue(), 20, 0);
+			out.write(LINE_SEPARATOR);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
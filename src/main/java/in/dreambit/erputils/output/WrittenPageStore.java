@@ -0,0 +1,73 @@
+/**
+ *
+ */
+package in.dreambit.erputils.output;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * On-disk record of the statement page each output file of an account last
+ * received, one JSON file per account mapping output to page fingerprint. Lets
+ * a later run recognise that a file already holds the page it fetched.
+ *
+ */
+public class WrittenPageStore {
+
+	private static final Logger logger = LogManager.getRootLogger();
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	private final Path directory;
+
+	public WrittenPageStore(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * @return page fingerprint by output, empty if nothing was recorded or the
+	 *         record is unreadable
+	 */
+	public Map<String, String> load(String accountKey) {
+		Path file = fileFor(accountKey);
+		if (!Files.exists(file)) {
+			return new HashMap<>();
+		}
+		try {
+			return mapper.readValue(file.toFile(), new TypeReference<HashMap<String, String>>() {
+			});
+		} catch (IOException e) {
+			logger.warn("Unable to read written pages: {}", file, e);
+			return new HashMap<>();
+		}
+	}
+
+	public void save(String accountKey, Map<String, String> fingerprints) throws IOException {
+		Files.createDirectories(directory);
+		Path file = fileFor(accountKey);
+		Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+		mapper.writeValue(temp.toFile(), fingerprints);
+
+		try {
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+		logger.debug("Stored written pages for account : {}", accountKey);
+	}
+
+	private Path fileFor(String accountKey) {
+		return directory.resolve(accountKey.replaceAll("[^A-Za-z0-9_.-]", "_") + ".pages.json");
+	}
+}
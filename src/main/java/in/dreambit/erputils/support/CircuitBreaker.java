@@ -0,0 +1,100 @@
+/**
+ *
+ */
+package in.dreambit.erputils.support;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Circuit breaker of one bank host. After <code>failureThreshold</code>
+ * consecutive failures it opens and requests fail fast for
+ * <code>openMillis</code>; then a single trial request is let through, which
+ * closes it on success or opens it again on failure.
+ *
+ */
+public class CircuitBreaker {
+
+	private static final Logger logger = LogManager.getRootLogger();
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final String host;
+
+	private final int failureThreshold;
+
+	private final long openMillis;
+
+	private State state = State.CLOSED;
+
+	private int failures;
+
+	private long openedAt;
+
+	private boolean trialInFlight;
+
+	public CircuitBreaker(String host, int failureThreshold, long openMillis) {
+		this.host = host;
+		this.failureThreshold = failureThreshold;
+		this.openMillis = openMillis;
+	}
+
+	/**
+	 * Lets a request through, or fails it fast.
+	 *
+	 * @throws CircuitOpenException
+	 *             if the breaker is open, or half open with its trial request
+	 *             still running
+	 */
+	public synchronized void acquire() throws CircuitOpenException {
+		if (state == State.OPEN) {
+			long remaining = openedAt + openMillis - System.currentTimeMillis();
+			if (remaining > 0) {
+				throw new CircuitOpenException(host, remaining);
+			}
+			state = State.HALF_OPEN;
+			trialInFlight = false;
+		}
+		if (state == State.HALF_OPEN) {
+			if (trialInFlight) {
+				throw new CircuitOpenException(host, 0);
+			}
+			trialInFlight = true;
+		}
+	}
+
+	public synchronized void onSuccess() {
+		if (state != State.CLOSED) {
+			logger.info("Circuit for {} closed", host);
+		}
+		state = State.CLOSED;
+		failures = 0;
+		trialInFlight = false;
+	}
+
+	public synchronized void onFailure() {
+		failures++;
+		if (state == State.HALF_OPEN || failures >= failureThreshold) {
+			if (state != State.OPEN) {
+				logger.warn("Circuit for {} opened after {} failures", host, failures);
+			}
+			state = State.OPEN;
+			openedAt = System.currentTimeMillis();
+			trialInFlight = false;
+		}
+	}
+
+	/**
+	 * Ends a request that says nothing about the health of the host, such as
+	 * an interrupted one.
+	 */
+	public synchronized void release() {
+		trialInFlight = false;
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+}
@@ -0,0 +1,20 @@
+/**
+ *
+ */
+package in.dreambit.erputils.support;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of sending a request while the circuit breaker of its host
+ * is open.
+ *
+ */
+public class CircuitOpenException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	public CircuitOpenException(String host, long retryInMillis) {
+		super("Circuit open for " + host + ", retry in " + Math.max(1, retryInMillis / 1000) + "s");
+	}
+}
@@ -0,0 +1,58 @@
+/**
+ *
+ */
+package in.dreambit.erputils.support;
+
+/**
+ * Point in time by which a whole fetch has to be done, measured on the
+ * monotonic clock from when the deadline was created.
+ *
+ */
+public final class Deadline {
+
+	/**
+	 * No deadline at all
+	 */
+	public static final Deadline NONE = new Deadline(-1);
+
+	private final long start = System.nanoTime();
+
+	private final long budgetMillis;
+
+	private Deadline(long budgetMillis) {
+		this.budgetMillis = budgetMillis;
+	}
+
+	/**
+	 * @return a deadline the given milliseconds from now
+	 */
+	public static Deadline after(long budgetMillis) {
+		return new Deadline(Math.max(0, budgetMillis));
+	}
+
+	/**
+	 * @return the milliseconds left, {@link Long#MAX_VALUE} without a
+	 *         deadline
+	 */
+	public long remainingMillis() {
+		if (budgetMillis < 0) {
+			return Long.MAX_VALUE;
+		}
+		return budgetMillis - elapsedMillis();
+	}
+
+	public boolean isExpired() {
+		return remainingMillis() <= 0;
+	}
+
+	public long elapsedMillis() {
+		return (System.nanoTime() - start) / 1000000;
+	}
+
+	/**
+	 * @return the whole budget, -1 without a deadline
+	 */
+	public long getBudgetMillis() {
+		return budgetMillis;
+	}
+}
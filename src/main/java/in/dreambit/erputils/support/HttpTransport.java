@@ -0,0 +1,320 @@
+/**
+ *
+ */
+package in.dreambit.erputils.support;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.config.CookieSpecs;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.cookie.Cookie;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.cookie.BasicClientCookie;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.ssl.SSLContexts;
+import org.apache.http.util.EntityUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jsoup.HttpStatusException;
+
+/**
+ * Keep-alive HTTP transport shared by all bank connections.
+ *
+ * Connections are pooled per route, and a single SSL socket factory is used so
+ * the JSSE session cache can resume TLS sessions instead of doing a full
+ * handshake for every request. Requests are built Jsoup style through
+ * {@link #connect(String)}.
+ *
+ * Failed idempotent requests are replayed under the {@link RetryPolicy}, and
+ * every host has a {@link CircuitBreaker} so that while a bank host is down
+ * requests fail fast instead of each waiting out its timeout.
+ *
+ */
+public class HttpTransport {
+
+	/**
+	 * Keep-alive used when the server does not advertise one
+	 */
+	private static final long DEFAULT_KEEP_ALIVE = 30000; // 30 seconds
+
+	private static final Logger logger = LogManager.getRootLogger();
+
+	private static volatile HttpTransport defaultTransport;
+
+	private final PoolingHttpClientConnectionManager connectionManager;
+
+	private final CloseableHttpClient client;
+
+	private volatile TransportListener listener;
+
+	private volatile RetryPolicy retryPolicy = RetryPolicy.defaults();
+
+	private volatile int breakerThreshold = 5;
+
+	private volatile long breakerOpenMillis = 30000;
+
+	private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+	public HttpTransport(int maxTotal, int maxPerRoute) {
+		Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory> create()
+				.register("http", PlainConnectionSocketFactory.getSocketFactory())
+				.register("https", new SSLConnectionSocketFactory(SSLContexts.createSystemDefault()))
+				.build();
+
+		connectionManager = new PoolingHttpClientConnectionManager(registry);
+		connectionManager.setMaxTotal(maxTotal);
+		connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+		connectionManager.setValidateAfterInactivity(2000);
+
+		client = HttpClients.custom().setConnectionManager(connectionManager)
+				.setKeepAliveStrategy(keepAliveStrategy()).disableAutomaticRetries()
+				.evictExpiredConnections()
+				.evictIdleConnections(DEFAULT_KEEP_ALIVE, TimeUnit.MILLISECONDS).build();
+	}
+
+	/**
+	 * @return the process wide transport
+	 */
+	public static HttpTransport getDefault() {
+		if (defaultTransport == null) {
+			synchronized (HttpTransport.class) {
+				if (defaultTransport == null) {
+					defaultTransport = new HttpTransport(32, 4);
+				}
+			}
+		}
+		return defaultTransport;
+	}
+
+	public TransportRequest connect(String url) {
+		return new TransportRequest(this, url);
+	}
+
+	/**
+	 * @param listener
+	 *            listener told of every exchange, null for none
+	 */
+	public void setListener(TransportListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * @param retryPolicy
+	 *            policy for failed idempotent requests,
+	 *            {@link RetryPolicy#NONE} to never retry
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
+
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+
+	/**
+	 * Replaces the circuit breakers of all hosts.
+	 *
+	 * @param failureThreshold
+	 *            consecutive failures that open a breaker
+	 * @param openMillis
+	 *            how long an open breaker fails requests before a trial
+	 */
+	public void setCircuitBreaker(int failureThreshold, long openMillis) {
+		this.breakerThreshold = failureThreshold;
+		this.breakerOpenMillis = openMillis;
+		breakers.clear();
+	}
+
+	/**
+	 * @return the circuit breaker of the host, i.e. the authority of the URL
+	 */
+	public CircuitBreaker getCircuitBreaker(String url) {
+		String host;
+		try {
+			host = new URI(url).getAuthority();
+		} catch (URISyntaxException e) {
+			host = null;
+		}
+		return breakers.computeIfAbsent(host == null ? url : host,
+				key -> new CircuitBreaker(key, breakerThreshold, breakerOpenMillis));
+	}
+
+	public void close() throws IOException {
+		client.close();
+	}
+
+	TransportResponse execute(TransportRequest request) throws IOException {
+		CircuitBreaker breaker = getCircuitBreaker(request.url());
+		RetryPolicy policy = retryPolicy;
+		int attempts = request.isIdempotent() ? policy.getMaxAttempts() : 1;
+
+		for (int attempt = 1;; attempt++) {
+			breaker.acquire();
+			try {
+				TransportResponse response = send(request);
+				breaker.onSuccess();
+				return response;
+			} catch (IOException e) {
+				boolean retryable = policy.isRetryable(e);
+				if (retryable) {
+					breaker.onFailure();
+				} else if (e instanceof HttpStatusException) {
+					// the host answered, it is the request that failed
+					breaker.onSuccess();
+				} else {
+					breaker.release();
+				}
+				if (!retryable || attempt >= attempts || !policy.backOff(attempt, request.deadline())) {
+					throw e;
+				}
+				logger.info("Retrying {} after attempt {} failed: {}", request.url(), attempt, e.getMessage());
+			}
+		}
+	}
+
+	private TransportResponse send(TransportRequest request) throws IOException {
+		HttpRequestBase httpRequest = toHttpRequest(request);
+		URI uri = httpRequest.getURI();
+
+		BasicCookieStore cookieStore = new BasicCookieStore();
+		for (Map.Entry<String, String> cookie : request.cookies().entrySet()) {
+			BasicClientCookie clientCookie = new BasicClientCookie(cookie.getKey(), cookie.getValue());
+			clientCookie.setDomain(uri.getHost());
+			clientCookie.setPath("/");
+			cookieStore.addCookie(clientCookie);
+		}
+
+		HttpClientContext context = HttpClientContext.create();
+		context.setCookieStore(cookieStore);
+
+		try (CloseableHttpResponse response = client.execute(httpRequest, context)) {
+			int statusCode = response.getStatusLine().getStatusCode();
+			HttpEntity entity = response.getEntity();
+			byte[] body = entity == null ? new byte[0] : EntityUtils.toByteArray(entity);
+			ContentType contentType = entity == null ? null : ContentType.get(entity);
+
+			String finalUrl = uri.toString();
+			List<URI> redirects = context.getRedirectLocations();
+			if (redirects != null && !redirects.isEmpty()) {
+				finalUrl = redirects.get(redirects.size() - 1).toString();
+			}
+
+			Map<String, String> cookies = new HashMap<>();
+			for (Cookie cookie : cookieStore.getCookies()) {
+				cookies.put(cookie.getName(), cookie.getValue());
+			}
+
+			TransportResponse transportResponse = new TransportResponse(finalUrl, statusCode,
+					response.getAllHeaders(), cookies, body,
+					contentType == null || contentType.getCharset() == null ? null : contentType.getCharset());
+
+			TransportListener current = listener;
+			if (current != null) {
+				current.exchanged(httpRequest.getMethod(), uri.toString(), transportResponse);
+			}
+
+			if (statusCode < 200 || statusCode >= 400) {
+				throw new HttpStatusException("HTTP error fetching URL", statusCode, finalUrl);
+			}
+			return transportResponse;
+		} catch (IOException e) {
+			logger.debug("Request failed: {} {}", httpRequest.getMethod(), request.url(), e);
+			throw e;
+		}
+	}
+
+	private HttpRequestBase toHttpRequest(TransportRequest request) throws IOException {
+		List<NameValuePair> params = new ArrayList<>();
+		for (Map.Entry<String, String> param : request.data().entrySet()) {
+			params.add(new BasicNameValuePair(param.getKey(), param.getValue()));
+		}
+
+		HttpRequestBase httpRequest;
+		try {
+			if (request.isPost()) {
+				HttpPost post = new HttpPost(request.url());
+				post.setEntity(new UrlEncodedFormEntity(params, StandardCharsets.UTF_8));
+				httpRequest = post;
+			} else {
+				httpRequest = new HttpGet(new URIBuilder(request.url()).addParameters(params).build());
+			}
+		} catch (URISyntaxException e) {
+			throw new IOException("Malformed URL: " + request.url(), e);
+		}
+
+		// never wait past the deadline of the fetch
+		int timeout = (int) Math.max(1, Math.min(request.timeout(), request.deadline().remainingMillis()));
+		httpRequest.setConfig(RequestConfig.custom().setConnectTimeout(timeout).setSocketTimeout(timeout)
+				.setConnectionRequestTimeout(timeout)
+				.setRedirectsEnabled(request.followRedirects()).setCookieSpec(CookieSpecs.STANDARD).build());
+
+		if (request.userAgent() != null) {
+			httpRequest.setHeader("User-Agent", request.userAgent());
+		}
+		if (request.referrer() != null) {
+			httpRequest.setHeader("Referer", request.referrer());
+		}
+		return httpRequest;
+	}
+
+	private static ConnectionKeepAliveStrategy keepAliveStrategy() {
+		return (HttpResponse response, HttpContext context) -> {
+			BasicHeaderElementIterator iterator = new BasicHeaderElementIterator(
+					response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+			while (iterator.hasNext()) {
+				HeaderElement element = iterator.nextElement();
+				if ("timeout".equalsIgnoreCase(element.getName()) && element.getValue() != null) {
+					try {
+						return Long.parseLong(element.getValue()) * 1000;
+					} catch (NumberFormatException e) {
+						break;
+					}
+				}
+			}
+			return DEFAULT_KEEP_ALIVE;
+		};
+	}
+
+	static String firstHeader(Header[] headers, String name) {
+		for (Header header : headers) {
+			if (header.getName().equalsIgnoreCase(name)) {
+				return header.getValue();
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ *
+ */
+package in.dreambit.erputils.support;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps credentials and bulky pages out of the log. Response bodies are
+ * sampled, cut to a size limit and have password fields, SHA keys and session
+ * cookies masked; single secrets are masked whole.
+ *
+ * The limit and the sampling rate come from the system properties
+ * <code>sbbj.log.bodyLimit</code> (characters, 2048 by default) and
+ * <code>sbbj.log.bodySample</code> (every n-th body, 1 by default).
+ *
+ */
+public final class LogRedactor {
+
+	public static final String BODY_LIMIT_PROPERTY = "sbbj.log.bodyLimit";
+
+	public static final String BODY_SAMPLE_PROPERTY = "sbbj.log.bodySample";
+
+	private static final String MASK = "****";
+
+	/**
+	 * Credential fields as form data, cookies or JSON
+	 */
+	private static final Pattern FIELDS = Pattern.compile(
+			"(?i)(?<keep>\\b(?:(?:sha)?password|keyString|JSESSIONID)[\"']?\\s*[=:]\\s*[\"']?)(?<secret>[^\"'&;\\s<>]+)");
+
+	/**
+	 * SHA key handed to the login script
+	 */
+	private static final Pattern SHA_KEY = Pattern.compile("(?<keep>submitLoginSha\\(\\s*[\"'])(?<secret>[^\"']+)");
+
+	private static final int bodyLimit = Integer.getInteger(BODY_LIMIT_PROPERTY, 2048);
+
+	private static final int bodySample = Math.max(1, Integer.getInteger(BODY_SAMPLE_PROPERTY, 1));
+
+	private static final AtomicLong bodies = new AtomicLong();
+
+	private LogRedactor() {
+	}
+
+	/**
+	 * @return whether this body is one of the sampled ones
+	 */
+	public static boolean sampleBody() {
+		return bodies.getAndIncrement() % bodySample == 0;
+	}
+
+	/**
+	 * @return the body cut to the size limit, with credentials masked
+	 */
+	public static String body(String body) {
+		if (body == null) {
+			return null;
+		}
+		String head = body.length() > bodyLimit ? body.substring(0, bodyLimit) : body;
+		String redacted = redact(head);
+		if (head.length() < body.length()) {
+			return redacted + "... [" + (body.length() - head.length()) + " more chars]";
+		}
+		return redacted;
+	}
+
+	/**
+	 * @return the text with the values of credential fields masked
+	 */
+	public static String redact(String text) {
+		return redact(SHA_KEY, redact(FIELDS, text));
+	}
+
+	private static String redact(Pattern pattern, String text) {
+		Matcher matcher = pattern.matcher(text);
+		if (!matcher.find()) {
+			return text;
+		}
+		StringBuffer redacted = new StringBuffer(text.length());
+		do {
+			matcher.appendReplacement(redacted, Matcher.quoteReplacement(matcher.group("keep") + MASK));
+		} while (matcher.find());
+		return matcher.appendTail(redacted).toString();
+	}
+
+	/**
+	 * @return a stand-in for a secret, telling only whether it is set
+	 */
+	public static String mask(String secret) {
+		return secret == null || secret.isEmpty() ? String.valueOf(secret) : MASK;
+	}
+}
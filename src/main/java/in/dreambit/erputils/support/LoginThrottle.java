@@ -0,0 +1,103 @@
+/**
+ *
+ */
+package in.dreambit.erputils.support;
+
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket rate limit of logins, one bucket per bank host. A bucket holds
+ * up to <code>burst</code> logins and refills at <code>loginsPerSecond</code>;
+ * a login finding it empty waits for its turn, so logins bunched up by the
+ * callers still reach the bank evenly spaced.
+ *
+ */
+public class LoginThrottle {
+
+	private final double loginsPerSecond;
+
+	private final int burst;
+
+	private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+	public LoginThrottle(double loginsPerSecond, int burst) {
+		if (loginsPerSecond <= 0 || burst < 1) {
+			throw new IllegalArgumentException("Rate and burst of the login throttle must be positive");
+		}
+		this.loginsPerSecond = loginsPerSecond;
+		this.burst = burst;
+	}
+
+	/**
+	 * Waits until a login to the host of the URL is allowed.
+	 */
+	public void acquire(String url) throws InterruptedIOException {
+		acquire(url, Deadline.NONE);
+	}
+
+	/**
+	 * Waits until a login to the host of the URL is allowed, unless that is
+	 * only after the deadline.
+	 *
+	 * @return false, without waiting or taking a login, if the turn comes after
+	 *         the deadline
+	 */
+	public boolean acquire(String url, Deadline deadline) throws InterruptedIOException {
+		long remaining = deadline.remainingMillis();
+		long waitNanos = bucket(url).reserve(
+				remaining == Long.MAX_VALUE ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(Math.max(0, remaining)));
+		if (waitNanos < 0) {
+			return false;
+		}
+		if (waitNanos > 0) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(waitNanos);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for a login turn");
+			}
+		}
+		return true;
+	}
+
+	private Bucket bucket(String url) {
+		String host;
+		try {
+			host = new URI(url).getAuthority();
+		} catch (URISyntaxException e) {
+			host = null;
+		}
+		return buckets.computeIfAbsent(host == null ? url : host, key -> new Bucket());
+	}
+
+	/**
+	 * Bucket of one host. Tokens go negative for logins waiting their turn.
+	 */
+	private final class Bucket {
+
+		private double tokens = burst;
+
+		private long refilledAt = System.nanoTime();
+
+		/**
+		 * @return nanoseconds until the reserved login may start, -1 if that is
+		 *         more than the given maximum and nothing was reserved
+		 */
+		synchronized long reserve(long maxWaitNanos) {
+			long now = System.nanoTime();
+			tokens = Math.min(burst, tokens + (now - refilledAt) / 1e9 * loginsPerSecond);
+			refilledAt = now;
+			long waitNanos = tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / loginsPerSecond * 1e9);
+			if (waitNanos > maxWaitNanos) {
+				return -1;
+			}
+			tokens--;
+			return waitNanos;
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/**
+ *
+ */
+package in.dreambit.erputils.support;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.http.conn.ConnectTimeoutException;
+import org.jsoup.HttpStatusException;
+
+/**
+ * How often and how far apart a failed idempotent request is replayed.
+ *
+ * The delay before attempt <code>n + 1</code> is drawn uniformly between zero
+ * and <code>min(maxDelay, baseDelay * 2^(n - 1))</code> ("full jitter"), so
+ * clients that failed together do not retry in lock step. Connection failures,
+ * timeouts and 429 or 5xx answers are retried; other HTTP errors are final.
+ *
+ */
+public class RetryPolicy {
+
+	/**
+	 * Single attempt, no retries
+	 */
+	public static final RetryPolicy NONE = new RetryPolicy(1, 0, 0);
+
+	private final int maxAttempts;
+
+	private final long baseDelayMillis;
+
+	private final long maxDelayMillis;
+
+	/**
+	 * @param maxAttempts
+	 *            attempts including the first one
+	 */
+	public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+		this.maxAttempts = Math.max(1, maxAttempts);
+		this.baseDelayMillis = baseDelayMillis;
+		this.maxDelayMillis = maxDelayMillis;
+	}
+
+	/**
+	 * @return three attempts, backing off from 250 ms up to 4 seconds
+	 */
+	public static RetryPolicy defaults() {
+		return new RetryPolicy(3, 250, 4000);
+	}
+
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	/**
+	 * @return whether another attempt may follow the given failed attempt
+	 */
+	public boolean canRetry(int attempt) {
+		return attempt < maxAttempts;
+	}
+
+	/**
+	 * @return whether the failure may clear up on its own
+	 */
+	public boolean isRetryable(IOException e) {
+		if (e instanceof HttpStatusException) {
+			int status = ((HttpStatusException) e).getStatusCode();
+			return status == 429 || status >= 500;
+		}
+		if (e instanceof CircuitOpenException) {
+			return false;
+		}
+		if (e instanceof InterruptedIOException) {
+			// timeouts are interrupted IO too, but only an interrupt means stop
+			return e instanceof SocketTimeoutException || e instanceof ConnectTimeoutException;
+		}
+		return true;
+	}
+
+	/**
+	 * @return a jittered delay before the attempt after the given one
+	 */
+	public long delayMillis(int attempt) {
+		long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 30));
+		return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+	}
+
+	/**
+	 * Waits out the backoff after the given failed attempt.
+	 */
+	public void backOff(int attempt) throws InterruptedIOException {
+		backOff(attempt, Deadline.NONE);
+	}
+
+	/**
+	 * Waits out the backoff after the given failed attempt, unless the next
+	 * attempt could not start before the deadline.
+	 *
+	 * @return false, without waiting, if there is no time for another attempt
+	 */
+	public boolean backOff(int attempt, Deadline deadline) throws InterruptedIOException {
+		long delay = delayMillis(attempt);
+		if (delay >= deadline.remainingMillis()) {
+			return false;
+		}
+		try {
+			Thread.sleep(delay);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while backing off");
+		}
+		return true;
+	}
+}
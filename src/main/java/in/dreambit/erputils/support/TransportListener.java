@@ -0,0 +1,16 @@
+/**
+ *
+ */
+package in.dreambit.erputils.support;
+
+/**
+ * Observer of the exchanges made through an {@link HttpTransport}.
+ *
+ */
+public interface TransportListener {
+
+	/**
+	 * Called after every response that was read, whatever its status.
+	 */
+	void exchanged(String method, String url, TransportResponse response);
+}
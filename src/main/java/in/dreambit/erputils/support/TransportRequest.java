@@ -0,0 +1,154 @@
+/**
+ *
+ */
+package in.dreambit.erputils.support;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Request builder of {@link HttpTransport}, shaped after
+ * <code>org.jsoup.Connection</code> so call sites read the same.
+ *
+ */
+public class TransportRequest {
+
+	private final HttpTransport transport;
+
+	private final String url;
+
+	private final Map<String, String> data = new LinkedHashMap<>();
+
+	private final Map<String, String> cookies = new LinkedHashMap<>();
+
+	private String userAgent;
+
+	private String referrer;
+
+	private int timeout = 3000;
+
+	private boolean followRedirects = true;
+
+	private boolean post;
+
+	private Boolean idempotent;
+
+	private Deadline deadline = Deadline.NONE;
+
+	TransportRequest(HttpTransport transport, String url) {
+		this.transport = transport;
+		this.url = url;
+	}
+
+	public TransportRequest data(String key, String value) {
+		data.put(key, value);
+		return this;
+	}
+
+	public TransportRequest data(Map<String, String> data) {
+		this.data.putAll(data);
+		return this;
+	}
+
+	public TransportRequest cookies(Map<String, String> cookies) {
+		this.cookies.putAll(cookies);
+		return this;
+	}
+
+	public TransportRequest userAgent(String userAgent) {
+		this.userAgent = userAgent;
+		return this;
+	}
+
+	public TransportRequest referrer(String referrer) {
+		this.referrer = referrer;
+		return this;
+	}
+
+	/**
+	 * @param millis
+	 *            connect, read and pool lease timeout
+	 */
+	public TransportRequest timeout(int millis) {
+		this.timeout = millis;
+		return this;
+	}
+
+	public TransportRequest followRedirects(boolean followRedirects) {
+		this.followRedirects = followRedirects;
+		return this;
+	}
+
+	/**
+	 * Sends the data as a form POST instead of a GET query string
+	 */
+	public TransportRequest post() {
+		this.post = true;
+		return this;
+	}
+
+	/**
+	 * @param idempotent
+	 *            whether the request may be replayed after a failure, by
+	 *            default true for a GET and false for a POST
+	 */
+	public TransportRequest idempotent(boolean idempotent) {
+		this.idempotent = idempotent;
+		return this;
+	}
+
+	/**
+	 * @param deadline
+	 *            deadline of the whole fetch, which cuts the timeout and the
+	 *            retries of this request short
+	 */
+	public TransportRequest deadline(Deadline deadline) {
+		this.deadline = deadline;
+		return this;
+	}
+
+	public TransportResponse execute() throws IOException {
+		return transport.execute(this);
+	}
+
+	String url() {
+		return url;
+	}
+
+	Map<String, String> data() {
+		return data;
+	}
+
+	Map<String, String> cookies() {
+		return cookies;
+	}
+
+	String userAgent() {
+		return userAgent;
+	}
+
+	String referrer() {
+		return referrer;
+	}
+
+	int timeout() {
+		return timeout;
+	}
+
+	Deadline deadline() {
+		return deadline;
+	}
+
+	boolean followRedirects() {
+		return followRedirects;
+	}
+
+	boolean isPost() {
+		return post;
+	}
+
+	boolean isIdempotent() {
+		return idempotent != null ? idempotent : !post;
+	}
+}
@@ -0,0 +1,111 @@
+/**
+ *
+ */
+package in.dreambit.erputils.support;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.Header;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+/**
+ * Fully read response of {@link HttpTransport}. The body is buffered so the
+ * pooled connection is released before the caller parses it.
+ *
+ */
+public class TransportResponse {
+
+	private final String url;
+
+	private final int statusCode;
+
+	private final Header[] headers;
+
+	private final Map<String, String> cookies;
+
+	private final byte[] body;
+
+	private final Charset charset;
+
+	private String bodyText;
+
+	TransportResponse(String url, int statusCode, Header[] headers, Map<String, String> cookies, byte[] body,
+			Charset charset) {
+		this.url = url;
+		this.statusCode = statusCode;
+		this.headers = headers;
+		this.cookies = cookies;
+		this.body = body;
+		this.charset = charset;
+	}
+
+	/**
+	 * @return the URL of the final response, after any redirects
+	 */
+	public String url() {
+		return url;
+	}
+
+	public int statusCode() {
+		return statusCode;
+	}
+
+	public String header(String name) {
+		return HttpTransport.firstHeader(headers, name);
+	}
+
+	/**
+	 * @return all values of the header, as sent by the server
+	 */
+	public List<String> headers(String name) {
+		List<String> values = new ArrayList<>();
+		for (Header header : headers) {
+			if (header.getName().equalsIgnoreCase(name)) {
+				values.add(header.getValue());
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * @return the session cookies after this response, sent and received
+	 */
+	public Map<String, String> cookies() {
+		return cookies;
+	}
+
+	public String body() {
+		if (bodyText == null) {
+			bodyText = new String(body, charset == null ? StandardCharsets.UTF_8 : charset);
+		}
+		return bodyText;
+	}
+
+	public byte[] bodyAsBytes() {
+		return body;
+	}
+
+	/**
+	 * @return a reader over the buffered body, in the declared charset or UTF-8
+	 */
+	public Reader bodyReader() {
+		return new InputStreamReader(new ByteArrayInputStream(body), charset == null ? StandardCharsets.UTF_8 : charset);
+	}
+
+	/**
+	 * Parses the body with Jsoup, which falls back to the meta charset when the
+	 * response did not declare one.
+	 */
+	public Document parse() throws IOException {
+		return Jsoup.parse(new ByteArrayInputStream(body), charset == null ? null : charset.name(), url);
+	}
+}
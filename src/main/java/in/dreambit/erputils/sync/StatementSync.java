@@ -0,0 +1,122 @@
+/**
+ *
+ */
+package in.dreambit.erputils.sync;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import in.dreambit.erputils.bank.Transaction;
+
+/**
+ * Incremental sync of the statement page against a per-account
+ * {@link Watermark}, so only rows newer than the previous poll are emitted.
+ *
+ * Rows are matched on their fingerprint. The running balance is used to
+ * detect gaps: the balance before the oldest new row has to equal the balance
+ * recorded by the watermark, otherwise more rows arrived than the page holds
+ * and some were missed.
+ *
+ * The watermark only moves on {@link #commit(String, SyncResult)}, to be called
+ * once the new rows were written out, so rows of a failed run are synced again.
+ *
+ */
+public class StatementSync {
+
+	private static final Logger logger = LogManager.getRootLogger();
+
+	private final WatermarkStore store;
+
+	public StatementSync(WatermarkStore store) {
+		this.store = store;
+	}
+
+	/**
+	 * Finds the rows newer than the stored watermark, leaving it as it is.
+	 */
+	public SyncResult sync(String accountKey, List<Transaction> page) throws IOException {
+		List<Transaction> rows = chronological(page);
+		Watermark previous = store.load(accountKey);
+
+		if (rows.isEmpty()) {
+			return new SyncResult(Collections.<Transaction> emptyList(), previous == null, false, null);
+		}
+
+		List<Transaction> fresh;
+		boolean gap = false;
+
+		if (previous == null) {
+			fresh = rows;
+		} else {
+			Set<Long> seen = new HashSet<>(previous.getSeenRowHashes());
+			int lastKnown = -1;
+			for (int i = 0; i < rows.size(); i++) {
+				if (seen.contains(rows.get(i).fingerprint())) {
+					lastKnown = i;
+				}
+			}
+
+			if (lastKnown >= 0) {
+				fresh = new ArrayList<>(rows.subList(lastKnown + 1, rows.size()));
+			} else {
+				fresh = new ArrayList<>();
+				for (Transaction row : rows) {
+					if (row.getEpochDay() >= previous.getLastEpochDay()) {
+						fresh.add(row);
+					}
+				}
+			}
+
+			if (!fresh.isEmpty()) {
+				Transaction oldest = fresh.get(0);
+				long openingBalance = oldest.getBalance() + oldest.getDebit() - oldest.getCredit();
+				gap = openingBalance != previous.getLastBalance();
+			}
+		}
+
+		if (gap) {
+			logger.warn("Statement gap for account {}: rows between the last sync and {} were not on the page",
+					accountKey, fresh.get(0).getDate());
+		}
+		logger.debug("Statement sync for account {}: {} new of {} rows", accountKey, fresh.size(), rows.size());
+
+		Transaction newest = rows.get(rows.size() - 1);
+		Watermark watermark = new Watermark();
+		watermark.setLastEpochDay(newest.getEpochDay());
+		watermark.setLastBalance(newest.getBalance());
+		watermark.setLastRowHash(newest.fingerprint());
+		for (Transaction row : rows) {
+			watermark.getSeenRowHashes().add(row.fingerprint());
+		}
+
+		return new SyncResult(fresh, previous == null, gap, watermark);
+	}
+
+	/**
+	 * Moves the account watermark past the rows of the result, once they were
+	 * written out.
+	 */
+	public void commit(String accountKey, SyncResult result) throws IOException {
+		if (result.getWatermark() != null) {
+			store.save(accountKey, result.getWatermark());
+		}
+	}
+
+	/**
+	 * @return the rows oldest first, whichever order the page lists them in
+	 */
+	private static List<Transaction> chronological(List<Transaction> page) {
+		List<Transaction> rows = new ArrayList<>(page);
+		if (rows.size() > 1 && rows.get(0).getEpochDay() > rows.get(rows.size() - 1).getEpochDay()) {
+			Collections.reverse(rows);
+		}
+		return rows;
+	}
+}
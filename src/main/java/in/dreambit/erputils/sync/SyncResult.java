@@ -0,0 +1,59 @@
+/**
+ *
+ */
+package in.dreambit.erputils.sync;
+
+import java.util.List;
+
+import in.dreambit.erputils.bank.Transaction;
+
+/**
+ * Outcome of one incremental statement sync.
+ *
+ */
+public class SyncResult {
+
+	private final List<Transaction> newTransactions;
+
+	private final boolean initial;
+
+	private final boolean gapDetected;
+
+	private final Watermark watermark;
+
+	public SyncResult(List<Transaction> newTransactions, boolean initial, boolean gapDetected, Watermark watermark) {
+		this.newTransactions = newTransactions;
+		this.initial = initial;
+		this.gapDetected = gapDetected;
+		this.watermark = watermark;
+	}
+
+	/**
+	 * @return the rows newer than the previous watermark, oldest first
+	 */
+	public List<Transaction> getNewTransactions() {
+		return newTransactions;
+	}
+
+	/**
+	 * @return whether there was no watermark yet, every row then counts as new
+	 */
+	public boolean isInitial() {
+		return initial;
+	}
+
+	/**
+	 * @return whether rows may have been missed because more arrived since the
+	 *         last sync than the page shows
+	 */
+	public boolean isGapDetected() {
+		return gapDetected;
+	}
+
+	/**
+	 * @return the watermark to store on commit, or null if the page was empty
+	 */
+	Watermark getWatermark() {
+		return watermark;
+	}
+}
@@ -0,0 +1,83 @@
+/**
+ *
+ */
+package in.dreambit.erputils.sync;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Position of the last statement sync of an account: the newest row seen and
+ * the fingerprints of every row on the last page.
+ *
+ */
+public class Watermark {
+
+	private long lastEpochDay;
+
+	private long lastBalance;
+
+	private long lastRowHash;
+
+	private List<Long> seenRowHashes = new ArrayList<>();
+
+	/**
+	 * @return the date of the newest row seen, as an epoch day
+	 */
+	public long getLastEpochDay() {
+		return lastEpochDay;
+	}
+
+	/**
+	 * @param lastEpochDay
+	 *            the lastEpochDay to set
+	 */
+	public void setLastEpochDay(long lastEpochDay) {
+		this.lastEpochDay = lastEpochDay;
+	}
+
+	/**
+	 * @return the balance after the newest row seen, in paise
+	 */
+	public long getLastBalance() {
+		return lastBalance;
+	}
+
+	/**
+	 * @param lastBalance
+	 *            the lastBalance to set
+	 */
+	public void setLastBalance(long lastBalance) {
+		this.lastBalance = lastBalance;
+	}
+
+	/**
+	 * @return the fingerprint of the newest row seen
+	 */
+	public long getLastRowHash() {
+		return lastRowHash;
+	}
+
+	/**
+	 * @param lastRowHash
+	 *            the lastRowHash to set
+	 */
+	public void setLastRowHash(long lastRowHash) {
+		this.lastRowHash = lastRowHash;
+	}
+
+	/**
+	 * @return the fingerprints of all rows on the last page
+	 */
+	public List<Long> getSeenRowHashes() {
+		return seenRowHashes;
+	}
+
+	/**
+	 * @param seenRowHashes
+	 *            the seenRowHashes to set
+	 */
+	public void setSeenRowHashes(List<Long> seenRowHashes) {
+		this.seenRowHashes = seenRowHashes;
+	}
+}
@@ -0,0 +1,61 @@
+/**
+ *
+ */
+package in.dreambit.erputils.sync;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * On-disk store of sync watermarks, one JSON file per account.
+ *
+ */
+public class WatermarkStore {
+
+	private static final Logger logger = LogManager.getRootLogger();
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	private final Path directory;
+
+	public WatermarkStore(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * @return the watermark, or null if the account was never synced
+	 */
+	public Watermark load(String accountKey) throws IOException {
+		Path file = fileFor(accountKey);
+		if (!Files.exists(file)) {
+			return null;
+		}
+		return mapper.readValue(file.toFile(), Watermark.class);
+	}
+
+	public void save(String accountKey, Watermark watermark) throws IOException {
+		Files.createDirectories(directory);
+		Path file = fileFor(accountKey);
+		Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+		mapper.writeValue(temp.toFile(), watermark);
+
+		try {
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+		logger.debug("Stored watermark for account : {}", accountKey);
+	}
+
+	private Path fileFor(String accountKey) {
+		return directory.resolve(accountKey.replaceAll("[^A-Za-z0-9_.-]", "_") + ".watermark.json");
+	}
+}
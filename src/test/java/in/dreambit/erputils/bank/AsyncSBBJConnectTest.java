@@ -0,0 +1,94 @@
+package in.dreambit.erputils.bank;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import in.dreambit.erputils.fake.FakeSbbjServer;
+import in.dreambit.erputils.metrics.MetricsRegistry;
+import in.dreambit.erputils.support.HttpTransport;
+import junit.framework.TestCase;
+
+/**
+ * Stages of {@link AsyncSBBJConnect} against {@link FakeSbbjServer}.
+ */
+public class AsyncSBBJConnectTest extends TestCase {
+
+	private FakeSbbjServer server;
+
+	private HttpTransport transport;
+
+	private ExecutorService executor;
+
+	private AsyncSBBJConnect connect;
+
+	@Override
+	protected void setUp() throws Exception {
+		server = new FakeSbbjServer(0);
+		server.addUser("corp01", "Secret@123", "61012345678", "10372");
+		server.addUser("retail01", "Secret@123", "51098765432", "10475").setPasswordExpiring(true);
+		server.start();
+		transport = new HttpTransport(8, 8);
+		executor = Executors.newFixedThreadPool(2);
+		connect = new AsyncSBBJConnect(transport, executor, server.corpBaseUrl(), server.retailBaseUrl());
+		connect.setMetrics(MetricsRegistry.NONE);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		executor.shutdownNow();
+		transport.close();
+		server.stop();
+	}
+
+	private void awaitLogout(String username) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (server.isLoggedIn(username) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertFalse(server.isLoggedIn(username));
+	}
+
+	public void testFetchAndLogout() throws Exception {
+		AccountSnapshot corporate = connect.fetch(AccountType.CURRENT, "corp01", "Secret@123".toCharArray())
+				.get(5, TimeUnit.SECONDS);
+		AccountSnapshot personal = connect.fetch(AccountType.SAVINGS, "retail01", "Secret@123".toCharArray())
+				.get(5, TimeUnit.SECONDS);
+
+		assertEquals("61012345678", corporate.getAccountNumber());
+		assertEquals(10, corporate.getTransactions().size());
+		assertEquals("51098765432", personal.getAccountNumber());
+		awaitLogout("corp01");
+		awaitLogout("retail01");
+	}
+
+	public void testFailedLogin() throws Exception {
+		try {
+			connect.fetch(AccountType.CURRENT, "corp01", "wrong".toCharArray()).get(5, TimeUnit.SECONDS);
+			fail("Expected invalid credentials");
+		} catch (ExecutionException e) {
+			assertEquals("Username / Password did not match", e.getCause().getMessage());
+		}
+	}
+
+	public void testCancelledFetchStillLogsOut() throws Exception {
+		server.setLatencyMillis(100);
+		CompletableFuture<AccountSnapshot> future = connect.fetch(AccountType.CURRENT, "corp01",
+				"Secret@123".toCharArray());
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!server.isLoggedIn("corp01") && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertTrue(future.cancel(false));
+		try {
+			future.get();
+			fail("Expected the fetch to be cancelled");
+		} catch (CancellationException e) {
+			// expected
+		}
+		awaitLogout("corp01");
+	}
+}
@@ -0,0 +1,80 @@
+package in.dreambit.erputils.bank;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for {@link BalanceCache}.
+ */
+public class BalanceCacheTest extends TestCase {
+
+	private static AccountSnapshot snapshot(int n) {
+		return new AccountSnapshot(String.valueOf(n), Collections.<String, String> emptyMap(),
+				Collections.<List<String>> emptyList(), System.currentTimeMillis());
+	}
+
+	public void testConcurrentMissesShareOneFetch() throws Exception {
+		final BalanceCache cache = new BalanceCache(1, 1, TimeUnit.MINUTES);
+		final AtomicInteger fetches = new AtomicInteger();
+		final CountDownLatch start = new CountDownLatch(1);
+		final Callable<AccountSnapshot> loader = () -> {
+			Thread.sleep(200);
+			return snapshot(fetches.incrementAndGet());
+		};
+
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<AccountSnapshot>> results = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				results.add(pool.submit(() -> {
+					start.await();
+					return cache.get("SAVINGS:user", loader);
+				}));
+			}
+			start.countDown();
+			for (Future<AccountSnapshot> result : results) {
+				assertEquals("1", result.get().getAccountNumber());
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		assertEquals(1, fetches.get());
+	}
+
+	public void testStaleWhileRevalidate() throws Exception {
+		BalanceCache cache = new BalanceCache(50, 60000, TimeUnit.MILLISECONDS, Runnable::run);
+		final AtomicInteger fetches = new AtomicInteger();
+		Callable<AccountSnapshot> loader = () -> snapshot(fetches.incrementAndGet());
+
+		assertEquals("1", cache.get("k", loader).getAccountNumber());
+		assertEquals("1", cache.get("k", loader).getAccountNumber());
+		Thread.sleep(80);
+		// stale value served, the revalidation ran on the (inline) executor
+		assertEquals("1", cache.get("k", loader).getAccountNumber());
+		assertEquals("2", cache.peek("k").getAccountNumber());
+	}
+
+	public void testFailedFetchIsNotCached() throws Exception {
+		BalanceCache cache = new BalanceCache(1, 1, TimeUnit.MINUTES);
+		try {
+			cache.get("k", () -> {
+				throw new IllegalStateException("Account already logged in by other device");
+			});
+			fail("Expected the fetch error");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		assertNull(cache.peek("k"));
+		assertEquals("7", cache.get("k", () -> snapshot(7)).getAccountNumber());
+	}
+}
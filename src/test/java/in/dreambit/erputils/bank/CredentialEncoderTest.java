@@ -0,0 +1,99 @@
+package in.dreambit.erputils.bank;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import javax.script.Invocable;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks {@link CredentialEncoder} against outputs of the bundled SBBJ scripts.
+ *
+ * <code>/sbbj/credential-corpus.json</code> was produced by running
+ * <code>encryptLoginPassword</code> and <code>encryptSha2LoginPassword</code>
+ * from <code>/sbbj/js</code> over the listed triples. When the JVM still ships a
+ * JavaScript engine the scripts are evaluated live as well.
+ */
+public class CredentialEncoderTest extends TestCase {
+
+	private JsonNode corpus;
+
+	@Override
+	protected void setUp() throws Exception {
+		try (InputStream stream = getClass().getResourceAsStream("/sbbj/credential-corpus.json")) {
+			corpus = new ObjectMapper().readTree(stream);
+		}
+		assertTrue(corpus.size() > 100);
+	}
+
+	public void testMd5MatchesCorpus() {
+		for (JsonNode entry : corpus) {
+			assertEquals(entry.toString(), entry.get("md5").asText(), CredentialEncoder.encryptLoginPassword(
+					entry.get("key").asText(), entry.get("username").asText(), password(entry)));
+		}
+	}
+
+	public void testSha512MatchesCorpus() {
+		for (JsonNode entry : corpus) {
+			assertEquals(entry.toString(), entry.get("sha512").asText(), CredentialEncoder.encryptSha2LoginPassword(
+					entry.get("key").asText(), entry.get("username").asText(), password(entry)));
+		}
+	}
+
+	public void testPasswordIsNotModified() {
+		char[] password = "secret".toCharArray();
+		CredentialEncoder.encryptLoginPassword("key", "user", password);
+		CredentialEncoder.encryptSha2LoginPassword("key", "user", password);
+		assertEquals("secret", new String(password));
+	}
+
+	public void testLoneSurrogateRejectedBySha() {
+		try {
+			CredentialEncoder.encryptSha2LoginPassword("key", "user", new char[] { 'a', '\uD800' });
+			fail("Expected lone surrogate to be rejected");
+		} catch (IllegalArgumentException e) {
+			// encodeURIComponent throws URIError for the same input
+		}
+	}
+
+	public void testMatchesScriptEngineWhenAvailable() throws Exception {
+		ScriptEngine md5Engine = loadScript("/sbbj/js/md5.js");
+		ScriptEngine shaEngine = loadScript("/sbbj/js/sha512.js");
+		if (md5Engine == null || shaEngine == null) {
+			return;
+		}
+
+		for (JsonNode entry : corpus) {
+			String key = entry.get("key").asText();
+			String username = entry.get("username").asText();
+			String password = entry.get("password").asText();
+
+			assertEquals(((Invocable) md5Engine).invokeFunction("encryptLoginPassword", key, username, password),
+					CredentialEncoder.encryptLoginPassword(key, username, password.toCharArray()));
+			assertEquals(((Invocable) shaEngine).invokeFunction("encryptSha2LoginPassword", key, username, password),
+					CredentialEncoder.encryptSha2LoginPassword(key, username, password.toCharArray()));
+		}
+	}
+
+	private static char[] password(JsonNode entry) {
+		return entry.get("password").asText().toCharArray();
+	}
+
+	private static ScriptEngine loadScript(String path) throws Exception {
+		ScriptEngine engine = new ScriptEngineManager().getEngineByName("JavaScript");
+		if (engine == null) {
+			return null;
+		}
+		try (InputStream stream = CredentialEncoderTest.class.getResourceAsStream(path)) {
+			engine.eval(new InputStreamReader(stream, StandardCharsets.UTF_8));
+		}
+		return engine;
+	}
+}
@@ -0,0 +1,103 @@
+package in.dreambit.erputils.bank;
+
+import in.dreambit.erputils.fake.FakeSbbjServer;
+import in.dreambit.erputils.metrics.MetricsRegistry;
+import in.dreambit.erputils.metrics.Phase;
+import in.dreambit.erputils.support.Deadline;
+import in.dreambit.erputils.support.HttpTransport;
+import junit.framework.TestCase;
+
+/**
+ * Fetch deadlines and adaptive phase timeouts of {@link SBBJConnect}.
+ */
+public class DeadlineTest extends TestCase {
+
+	private FakeSbbjServer server;
+
+	private HttpTransport transport;
+
+	@Override
+	protected void setUp() throws Exception {
+		server = new FakeSbbjServer(0);
+		server.addUser("corp01", "Secret@123", "61012345678", "10372");
+		server.start();
+		transport = new HttpTransport(8, 8);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		transport.close();
+		server.stop();
+	}
+
+	private SBBJConnect connection(PhaseTimeouts timeouts) {
+		SBBJConnect sbbjConnect = new SBBJConnect(transport, server.corpBaseUrl(), server.retailBaseUrl());
+		sbbjConnect.setMetrics(MetricsRegistry.NONE);
+		sbbjConnect.setTimeouts(timeouts);
+		return sbbjConnect;
+	}
+
+	public void testTimeoutsFollowLatency() {
+		PhaseTimeouts timeouts = new PhaseTimeouts(10000, 1000, 30000);
+		assertEquals(10000, timeouts.timeoutMillis(AccountType.CURRENT, Phase.QUICKLOOK));
+
+		for (int i = 0; i < 20; i++) {
+			timeouts.record(AccountType.CURRENT, Phase.QUICKLOOK, "ok", 2000000000L, 0);
+			timeouts.record(AccountType.CURRENT, Phase.PRE_LOGIN, "ok", 50000000L, 0);
+			timeouts.record(AccountType.CURRENT, Phase.LOGOUT, "timeout", 90000000000L, 0);
+		}
+		assertEquals(8000, timeouts.timeoutMillis(AccountType.CURRENT, Phase.QUICKLOOK));
+		assertEquals(1000, timeouts.timeoutMillis(AccountType.CURRENT, Phase.PRE_LOGIN));
+		assertEquals(30000, timeouts.timeoutMillis(AccountType.CURRENT, Phase.LOGOUT));
+		assertEquals(10000, timeouts.timeoutMillis(AccountType.SAVINGS, Phase.QUICKLOOK));
+	}
+
+	public void testTimeoutsGrowBackAfterTimeouts() {
+		PhaseTimeouts timeouts = new PhaseTimeouts(10000, 1000, 30000);
+		for (int i = 0; i < 64; i++) {
+			timeouts.record(AccountType.CURRENT, Phase.QUICKLOOK, "ok", 100000000L, 0);
+		}
+		assertEquals(1000, timeouts.timeoutMillis(AccountType.CURRENT, Phase.QUICKLOOK));
+
+		// the bank turned slower than the learned timeout, every request times out
+		timeouts.record(AccountType.CURRENT, Phase.QUICKLOOK, "timeout", 1000000000L, 0);
+		assertEquals(4000, timeouts.timeoutMillis(AccountType.CURRENT, Phase.QUICKLOOK));
+		timeouts.record(AccountType.CURRENT, Phase.QUICKLOOK, "timeout", 4000000000L, 0);
+		assertEquals(16000, timeouts.timeoutMillis(AccountType.CURRENT, Phase.QUICKLOOK));
+		timeouts.record(AccountType.CURRENT, Phase.QUICKLOOK, "timeout", 16000000000L, 0);
+		assertEquals(30000, timeouts.timeoutMillis(AccountType.CURRENT, Phase.QUICKLOOK));
+	}
+
+	public void testFetchWithinDeadline() throws Exception {
+		PhaseTimeouts timeouts = new PhaseTimeouts(10000, 1000, 30000);
+		SBBJConnect sbbjConnect = connection(timeouts);
+		sbbjConnect.connect(AccountType.CURRENT, "corp01", "Secret@123".toCharArray(), Deadline.after(10000));
+		assertEquals("61012345678", sbbjConnect.getAccountNumber());
+		sbbjConnect.logout(AccountType.CURRENT);
+	}
+
+	public void testExpiredDeadlineFailsBeforeSending() throws Exception {
+		try {
+			connection(new PhaseTimeouts(10000, 1000, 30000)).connect(AccountType.CURRENT, "corp01",
+					"Secret@123".toCharArray(), Deadline.after(0));
+			fail("Expected the deadline to be exceeded");
+		} catch (DeadlineExceededException e) {
+			assertEquals(Phase.PRE_LOGIN, e.getPhase());
+		}
+		assertFalse(server.isLoggedIn("corp01"));
+	}
+
+	public void testSlowBankAbortsWithinBudget() throws Exception {
+		server.setLatencyMillis(300);
+		long start = System.nanoTime();
+		try {
+			connection(new PhaseTimeouts(10000, 1000, 30000)).connect(AccountType.CURRENT, "corp01",
+					"Secret@123".toCharArray(), Deadline.after(500));
+			fail("Expected the deadline to be exceeded");
+		} catch (DeadlineExceededException e) {
+			assertEquals(Phase.LOGIN_SUBMIT, e.getPhase());
+			assertTrue(e.getMessage(), e.getMessage().contains("login_submit"));
+		}
+		assertTrue((System.nanoTime() - start) / 1000000 < 2000);
+	}
+}
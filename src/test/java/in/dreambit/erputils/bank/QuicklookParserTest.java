@@ -0,0 +1,102 @@
+package in.dreambit.erputils.bank;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that the streaming quicklook parser yields exactly what the DOM parser
+ * does on captured page layouts.
+ */
+public class QuicklookParserTest extends TestCase {
+
+	public void testCorporatePageMatchesDom() throws IOException {
+		QuicklookPage page = assertEquivalent("corporate.html");
+
+		assertEquals(5, page.getKeyDetails().size());
+		assertEquals("M/S DREAMBIT TECHNOLOGIES & CO.", page.getKeyDetails().get("Account Name"));
+		assertEquals("JAIPUR MAIN (10372)", page.getKeyDetails().get("Branch"));
+		assertEquals(4, page.getRows().size());
+		assertEquals(Arrays.asList("02-Sep-2016", "TO CLEARING CHQ 000123", "000123", "25,000.00", "",
+				"1,48,456.78 <span class=\"cr\">Cr</span>"), page.getRows().get(1));
+	}
+
+	public void testRetailPageWithImpliedTagsMatchesDom() throws IOException {
+		QuicklookPage page = assertEquivalent("retail.html");
+
+		assertEquals(3, page.getKeyDetails().size());
+		assertEquals(3, page.getRows().size());
+		assertEquals("9,876.00 CR", page.getRows().get(0).get(5));
+	}
+
+	public void testMissingAccountTableRejectedByBoth() throws IOException {
+		try {
+			QuicklookParser.parse(dom("session-expired.html"));
+			fail("DOM parser accepted a page without tblAcct");
+		} catch (RuntimeException e) {
+			// expected
+		}
+		try (Reader reader = reader("session-expired.html")) {
+			QuicklookParser.parse(reader);
+			fail("Streaming parser accepted a page without tblAcct");
+		} catch (RuntimeException e) {
+			// expected
+		}
+	}
+
+	public void testFingerprintCoversDetailsAndTable() throws Exception {
+		String page = new String(bytes("corporate.html"), StandardCharsets.UTF_8);
+		String fingerprint = QuicklookParser.fingerprint(page.getBytes(StandardCharsets.UTF_8));
+		assertNotNull(fingerprint);
+		assertEquals(fingerprint, QuicklookParser.fingerprint(bytes("corporate.html")));
+
+		String footer = page.replace("Copyright &copy; SBBJ", "Copyright &copy; SBBJ 2016");
+		assertEquals(fingerprint, QuicklookParser.fingerprint(footer.getBytes(StandardCharsets.UTF_8)));
+		String balance = page.replace("1,23,456.78&nbsp;CR", "1,23,457.78&nbsp;CR");
+		assertFalse(fingerprint.equals(QuicklookParser.fingerprint(balance.getBytes(StandardCharsets.UTF_8))));
+		String row = page.replace("<td>000123</td>", "<td>000124</td>");
+		assertFalse(fingerprint.equals(QuicklookParser.fingerprint(row.getBytes(StandardCharsets.UTF_8))));
+
+		assertNull(QuicklookParser.fingerprint(bytes("session-expired.html")));
+	}
+
+	private static QuicklookPage assertEquivalent(String fixture) throws IOException {
+		QuicklookPage expected = QuicklookParser.parse(dom(fixture));
+		QuicklookPage actual;
+		try (Reader reader = reader(fixture)) {
+			actual = QuicklookParser.parse(reader);
+		}
+
+		assertEquals(expected.getKeyDetails(), actual.getKeyDetails());
+		assertEquals(expected.getRows().size(), actual.getRows().size());
+		for (int i = 0; i < expected.getRows().size(); i++) {
+			assertEquals("Row " + i, expected.getRows().get(i), actual.getRows().get(i));
+		}
+		return actual;
+	}
+
+	private static Document dom(String fixture) throws IOException {
+		try (InputStream stream = QuicklookParserTest.class.getResourceAsStream("/sbbj/quicklook/" + fixture)) {
+			return Jsoup.parse(stream, "UTF-8", "https://corp.sbbjonline.com/saral/quicklook.htm");
+		}
+	}
+
+	private static Reader reader(String fixture) {
+		return new InputStreamReader(QuicklookParserTest.class.getResourceAsStream("/sbbj/quicklook/" + fixture),
+				StandardCharsets.UTF_8);
+	}
+
+	private static byte[] bytes(String fixture) throws Exception {
+		return Files.readAllBytes(Paths.get(QuicklookParserTest.class.getResource("/sbbj/quicklook/" + fixture).toURI()));
+	}
+}
@@ -0,0 +1,103 @@
+package in.dreambit.erputils.bank;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import in.dreambit.erputils.fake.FakeSbbjServer;
+import in.dreambit.erputils.support.HttpTransport;
+import in.dreambit.erputils.support.RetryPolicy;
+import junit.framework.TestCase;
+
+/**
+ * Resuming sessions kept in a {@link SessionStore} against
+ * {@link FakeSbbjServer}.
+ */
+public class SessionStoreTest extends TestCase {
+
+	private static final char[] PASSWORD = "Secret@123".toCharArray();
+
+	private FakeSbbjServer server;
+
+	private HttpTransport transport;
+
+	private SessionStore store;
+
+	@Override
+	protected void setUp() throws Exception {
+		server = new FakeSbbjServer(0);
+		server.addUser("corp01", "Secret@123", "61012345678", "10372");
+		server.start();
+		transport = new HttpTransport(8, 8);
+		transport.setRetryPolicy(RetryPolicy.NONE);
+		store = new SessionStore(Files.createTempDirectory("sessions"));
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		transport.close();
+		server.stop();
+	}
+
+	private SBBJConnect connection() {
+		SBBJConnect sbbjConnect = new SBBJConnect(transport, server.corpBaseUrl(), server.retailBaseUrl());
+		sbbjConnect.setSessionStore(store);
+		return sbbjConnect;
+	}
+
+	public void testSaveLoadRemove() throws Exception {
+		StoredSession session = new StoredSession();
+		session.getCookies().put("JSESSIONID", "ABC");
+		session.setAccountNumber("61012345678");
+		store.save(AccountType.CURRENT, "corp01", session);
+
+		StoredSession loaded = store.load(AccountType.CURRENT, "corp01");
+		assertEquals("ABC", loaded.getCookies().get("JSESSIONID"));
+		assertEquals("61012345678", loaded.getAccountNumber());
+		assertNull(store.load(AccountType.SAVINGS, "corp01"));
+
+		store.remove(AccountType.CURRENT, "corp01");
+		assertNull(store.load(AccountType.CURRENT, "corp01"));
+	}
+
+	public void testStoredSessionResumedWithoutLogin() throws Exception {
+		connection().connect(AccountType.CURRENT, "corp01", PASSWORD);
+		String sessionId = store.load(AccountType.CURRENT, "corp01").getCookies().get("JSESSIONID");
+
+		// a second login would be refused while the first is live
+		SBBJConnect resumed = connection();
+		resumed.connect(AccountType.CURRENT, "corp01", PASSWORD);
+		assertEquals("61012345678", resumed.getAccountNumber());
+		assertEquals(10, resumed.getTransactions().size());
+		assertEquals(sessionId, store.load(AccountType.CURRENT, "corp01").getCookies().get("JSESSIONID"));
+		resumed.logout(AccountType.CURRENT);
+		assertNull(store.load(AccountType.CURRENT, "corp01"));
+	}
+
+	public void testRejectedSessionFallsBackToLogin() throws Exception {
+		connection().connect(AccountType.CURRENT, "corp01", PASSWORD);
+		String sessionId = store.load(AccountType.CURRENT, "corp01").getCookies().get("JSESSIONID");
+		server.expireSessions();
+
+		SBBJConnect sbbjConnect = connection();
+		sbbjConnect.connect(AccountType.CURRENT, "corp01", PASSWORD);
+		assertEquals(10, sbbjConnect.getTransactions().size());
+		assertTrue(server.isLoggedIn("corp01"));
+		String newSessionId = store.load(AccountType.CURRENT, "corp01").getCookies().get("JSESSIONID");
+		assertFalse(sessionId.equals(newSessionId));
+		sbbjConnect.logout(AccountType.CURRENT);
+	}
+
+	public void testFailedProbeKeepsStoredSession() throws Exception {
+		connection().connect(AccountType.CURRENT, "corp01", PASSWORD);
+		SBBJConnect sbbjConnect = connection();
+		server.stop();
+
+		try {
+			sbbjConnect.connect(AccountType.CURRENT, "corp01", PASSWORD);
+			fail("Expected the unreachable bank to fail the connect");
+		} catch (IOException e) {
+			// expected
+		}
+		assertNotNull(store.load(AccountType.CURRENT, "corp01"));
+	}
+}
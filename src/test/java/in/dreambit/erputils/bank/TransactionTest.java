@@ -0,0 +1,84 @@
+package in.dreambit.erputils.bank;
+
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jsoup.Jsoup;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for {@link Transaction} parsing and {@link TransactionBatch}.
+ */
+public class TransactionTest extends TestCase {
+
+	public void testParsePaise() {
+		assertEquals(12345678L, Transaction.parsePaise("1,23,456.78"));
+		assertEquals(12345678L, Transaction.parsePaise("&nbsp;1,23,456.78&nbsp;Cr"));
+		assertEquals(-5000L, Transaction.parsePaise("50.00 Dr"));
+		assertEquals(1500L, Transaction.parsePaise("15"));
+		assertEquals(1550L, Transaction.parsePaise("15.5"));
+		assertEquals(0L, Transaction.parsePaise(""));
+		assertEquals(14845678L, Transaction.parsePaise("1,48,456.78 <span class=\"cr\">Cr</span>"));
+		assertEquals(99900L, Transaction.parsePaise("Rs. 999.00"));
+		assertEquals(50L, Transaction.parsePaise(".50"));
+		assertEquals(50L, Transaction.parsePaise("Rs. 0.50"));
+		assertEquals(50L, Transaction.parsePaise("Rs. .50"));
+		assertEquals(5000L, Transaction.parsePaise("Rs.50"));
+	}
+
+	public void testParseDate() {
+		assertEquals(LocalDate.of(2016, 9, 1).toEpochDay(), Transaction.parseDate("01-Sep-2016"));
+		assertEquals(LocalDate.of(2016, 10, 15).toEpochDay(), Transaction.parseDate("15/10/2016"));
+		assertEquals(LocalDate.of(2016, 10, 15).toEpochDay(), Transaction.parseDate("15-OCT-2016"));
+	}
+
+	public void testFromRows() throws Exception {
+		QuicklookPage page;
+		try (InputStream stream = getClass().getResourceAsStream("/sbbj/quicklook/corporate.html")) {
+			page = QuicklookParser.parse(Jsoup.parse(stream, "UTF-8", ""));
+		}
+
+		List<Transaction> transactions = Transaction.fromRows(page.getRows());
+		assertEquals(4, transactions.size());
+
+		Transaction clearing = transactions.get(1);
+		assertEquals(LocalDate.of(2016, 9, 2), clearing.getDate());
+		assertEquals("TO CLEARING CHQ 000123", clearing.getNarration());
+		assertEquals("000123", clearing.getReference());
+		assertEquals(2500000L, clearing.getDebit());
+		assertEquals(0L, clearing.getCredit());
+		assertEquals(14845678L, clearing.getBalance());
+
+		assertEquals("TXN: 5<6 & 7 \"x\"", transactions.get(2).getReference());
+	}
+
+	public void testShortRowsSkipped() {
+		List<List<String>> rows = Arrays.asList(Arrays.asList("13/10/2016", "NO BALANCE ROW"),
+				Arrays.asList("14/10/2016", "SALARY", "", "11,376.00", "11,376.00 CR"));
+		List<Transaction> transactions = Transaction.fromRows(rows);
+		assertEquals(1, transactions.size());
+		assertEquals("", transactions.get(0).getReference());
+		assertEquals(1137600L, transactions.get(0).getCredit());
+	}
+
+	public void testBatchMatchesRows() {
+		TransactionBatch batch = new TransactionBatch(1);
+		for (int i = 0; i < 100; i++) {
+			batch.add(new Transaction(17000 + i, "N" + i, "R" + i, i * 100, 0, 1000000 - i * 100));
+		}
+
+		assertEquals(100, batch.size());
+		assertEquals(17042, batch.getEpochDay(42));
+		assertEquals("N42", batch.get(42).getNarration());
+		assertEquals(495000L, batch.totalDebit());
+		try {
+			batch.getDebit(100);
+			fail("Expected index check");
+		} catch (IndexOutOfBoundsException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package in.dreambit.erputils.batch;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import in.dreambit.erputils.bank.SBBJConnect;
+import in.dreambit.erputils.fake.FakeSbbjServer;
+import junit.framework.TestCase;
+
+/**
+ * Runs an {@link AccountManifest} through {@link BatchFetcher} against
+ * {@link FakeSbbjServer}.
+ */
+public class BatchFetcherTest extends TestCase {
+
+	private FakeSbbjServer server;
+
+	private Path directory;
+
+	@Override
+	protected void setUp() throws Exception {
+		server = new FakeSbbjServer(0);
+		server.addUser("corp01", "Secret@123", "61012345678", "10372");
+		server.addUser("retail01", "Secret@123", "51098765432", "10475");
+		server.start();
+		System.setProperty(SBBJConnect.CORP_BASE_URL_PROPERTY, server.corpBaseUrl());
+		System.setProperty(SBBJConnect.RETAIL_BASE_URL_PROPERTY, server.retailBaseUrl());
+		directory = Files.createTempDirectory("batch");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		System.clearProperty(SBBJConnect.CORP_BASE_URL_PROPERTY);
+		System.clearProperty(SBBJConnect.RETAIL_BASE_URL_PROPERTY);
+		server.stop();
+	}
+
+	public void testPartialFailure() throws Exception {
+		Path keyFile = directory.resolve("corp-key.json");
+		Path txFile = directory.resolve("corp-tx.json");
+		Path manifestFile = directory.resolve("manifest.json");
+		String manifestJson = "{\"concurrency\": 2, \"loginsPerSecond\": 10, \"accounts\": ["
+				+ "{\"id\": \"corp\", \"type\": \"CURRENT\", \"username\": \"corp01\", \"password\": \"Secret@123\","
+				+ " \"output\": \"json\", \"keyFile\": \"" + keyFile + "\", \"txFile\": \"" + txFile + "\"},"
+				+ "{\"id\": \"retail\", \"type\": \"SAVINGS\", \"username\": \"retail01\", \"password\": \"wrong\","
+				+ " \"output\": \"json\", \"keyFile\": \"" + directory.resolve("retail-key.json") + "\","
+				+ " \"txFile\": \"" + directory.resolve("retail-tx.json") + "\"}]}";
+		Files.write(manifestFile, manifestJson.getBytes(StandardCharsets.UTF_8));
+
+		AccountManifest manifest = AccountManifest.load(manifestFile.toString());
+		assertEquals(2, manifest.getAccounts().size());
+		assertTrue(manifest.isLogout());
+
+		List<AccountResult> results = new BatchFetcher(manifest).run();
+		assertEquals("corp", results.get(0).getAccountId());
+		assertTrue(results.get(0).isSuccess());
+		assertEquals("retail", results.get(1).getAccountId());
+		assertFalse(results.get(1).isSuccess());
+		assertEquals("Username / Password did not match", results.get(1).getError());
+		assertFalse(BatchFetcher.allSucceeded(results));
+
+		assertTrue(new String(Files.readAllBytes(keyFile), StandardCharsets.UTF_8).contains("61012345678"));
+		assertTrue(Files.size(txFile) > 0);
+		assertFalse(Files.exists(directory.resolve("retail-tx.json")));
+		assertFalse(server.isLoggedIn("corp01"));
+
+		ByteArrayOutputStream summary = new ByteArrayOutputStream();
+		BatchFetcher.printSummary(results, new PrintStream(summary, true, "UTF-8"));
+		assertTrue(summary.toString("UTF-8").contains("Accounts: 2, Succeeded: 1, Failed: 1"));
+	}
+}
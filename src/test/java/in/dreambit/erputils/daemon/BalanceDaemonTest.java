@@ -0,0 +1,80 @@
+package in.dreambit.erputils.daemon;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Scanner;
+
+import in.dreambit.erputils.bank.AccountType;
+import in.dreambit.erputils.batch.AccountEntry;
+import in.dreambit.erputils.batch.AccountManifest;
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the routing of {@link BalanceDaemon}.
+ */
+public class BalanceDaemonTest extends TestCase {
+
+	private BalanceDaemon daemon;
+
+	@Override
+	protected void setUp() throws Exception {
+		AccountManifest manifest = new AccountManifest();
+		manifest.setPort(0);
+		daemon = new BalanceDaemon(manifest);
+		daemon.start();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		daemon.stop();
+	}
+
+	private HttpURLConnection open(String path) throws Exception {
+		return open(daemon, path);
+	}
+
+	private static HttpURLConnection open(BalanceDaemon daemon, String path) throws Exception {
+		return (HttpURLConnection) new URL("http://127.0.0.1:" + daemon.getPort() + path).openConnection();
+	}
+
+	public void testAccountList() throws Exception {
+		HttpURLConnection connection = open("/accounts");
+		assertEquals(200, connection.getResponseCode());
+		assertTrue(connection.getContentType().startsWith("application/json"));
+		try (InputStream in = connection.getInputStream(); Scanner scanner = new Scanner(in, "UTF-8")) {
+			assertEquals("[]", scanner.useDelimiter("\\A").next());
+		}
+	}
+
+	public void testUnknownAccount() throws Exception {
+		assertEquals(404, open("/accounts/nobody/keyDetails").getResponseCode());
+	}
+
+	public void testPathOutsideContext() throws Exception {
+		assertEquals(404, open("/accountsX").getResponseCode());
+	}
+
+	public void testFailedRefresh() throws Exception {
+		// no password reference, so every refresh fails before reaching the bank
+		AccountEntry entry = new AccountEntry();
+		entry.setId("broken");
+		entry.setType(AccountType.CURRENT);
+		entry.setUsername("corp01");
+		AccountManifest manifest = new AccountManifest();
+		manifest.setPort(0);
+		manifest.getAccounts().add(entry);
+		BalanceDaemon broken = new BalanceDaemon(manifest);
+		broken.start();
+		try {
+			HttpURLConnection connection = open(broken, "/accounts/broken/refresh");
+			connection.setRequestMethod("POST");
+			assertEquals(502, connection.getResponseCode());
+			try (InputStream in = connection.getErrorStream(); Scanner scanner = new Scanner(in, "UTF-8")) {
+				assertTrue(scanner.useDelimiter("\\A").next().contains("No password reference for account: broken"));
+			}
+		} finally {
+			broken.stop();
+		}
+	}
+}
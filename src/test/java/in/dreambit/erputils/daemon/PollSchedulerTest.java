@@ -0,0 +1,104 @@
+package in.dreambit.erputils.daemon;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import in.dreambit.erputils.bank.AccountSnapshot;
+import in.dreambit.erputils.bank.AccountType;
+import in.dreambit.erputils.bank.BalanceCache;
+import in.dreambit.erputils.batch.AccountEntry;
+import junit.framework.TestCase;
+
+/**
+ * Ordering and staggering of {@link PollScheduler}.
+ */
+public class PollSchedulerTest extends TestCase {
+
+	private final BalanceCache cache = new BalanceCache(1, 1, TimeUnit.MINUTES);
+
+	private AccountPoller poller(String id, long fetchedAt) throws Exception {
+		AccountEntry entry = new AccountEntry();
+		entry.setId(id);
+		entry.setType(AccountType.CURRENT);
+		entry.setRefreshSeconds(60);
+		if (fetchedAt > 0) {
+			cache.refresh(id, () -> new AccountSnapshot(id, Collections.<String, String> emptyMap(),
+					Collections.<List<String>> emptyList(), fetchedAt));
+		}
+		return new AccountPoller(entry, null, cache);
+	}
+
+	public void testStalestAccountsFirst() throws Exception {
+		long now = System.currentTimeMillis();
+		AccountPoller fresh = poller("fresh", now);
+		AccountPoller old = poller("old", now - 3600000);
+		AccountPoller never = poller("never", 0);
+
+		PollScheduler scheduler = new PollScheduler(Arrays.asList(fresh, old, never), 2);
+		long neverDue = scheduler.getNextDue(never);
+		long oldDue = scheduler.getNextDue(old);
+		long freshDue = scheduler.getNextDue(fresh);
+
+		assertTrue(neverDue < oldDue);
+		assertTrue(oldDue < freshDue);
+		// spread over the 60 second refresh period, a third of it each
+		assertTrue(neverDue < now + 21000);
+		assertTrue(oldDue >= now + 19000 && oldDue < now + 41000);
+		assertTrue(freshDue >= now + 39000 && freshDue < now + 61000);
+	}
+
+	private static AccountSnapshot snapshot(String balance) {
+		HashMap<String, String> keyDetails = new HashMap<>();
+		keyDetails.put("Available Balance", balance);
+		return new AccountSnapshot("61012345678", keyDetails, Collections.<List<String>> emptyList(),
+				System.currentTimeMillis());
+	}
+
+	public void testIntervalFollowsChanges() {
+		AccountSnapshot first = snapshot("100.00");
+		AccountSnapshot same = snapshot("100.00");
+		AccountSnapshot changed = snapshot("250.00");
+
+		assertEquals(300000, PollScheduler.nextInterval(300000, 60000, 3600000, null, first));
+		assertEquals(600000, PollScheduler.nextInterval(300000, 60000, 3600000, first, same));
+		assertEquals(3600000, PollScheduler.nextInterval(2400000, 60000, 3600000, first, same));
+		assertEquals(150000, PollScheduler.nextInterval(300000, 60000, 3600000, same, changed));
+		assertEquals(60000, PollScheduler.nextInterval(100000, 60000, 3600000, same, changed));
+	}
+
+	public void testReadsFetchThroughBudget() throws Exception {
+		long now = System.currentTimeMillis();
+		AccountPoller fresh = poller("fresh", now);
+		AccountPoller old = poller("old", now - 3600000);
+		AccountPoller never = poller("never", 0);
+		new PollScheduler(Arrays.asList(fresh, old, never), 2, 1);
+
+		assertNotNull(fresh.current());
+		assertEquals(0, fresh.getLastAttempt());
+
+		// takes the one login of the hour, and fails without a password
+		assertNull(old.current());
+		assertTrue(old.getLastAttempt() > 0);
+
+		assertNull(never.current());
+		assertEquals(0, never.getLastAttempt());
+	}
+
+	public void testBudgetSlidesOverWindow() {
+		PollScheduler.Budget budget = new PollScheduler.Budget(2, 1000);
+		assertTrue(budget.tryTake(0));
+		assertTrue(budget.tryTake(100));
+		assertFalse(budget.tryTake(500));
+		assertTrue(budget.tryTake(1000));
+		assertFalse(budget.tryTake(1050));
+		assertTrue(budget.tryTake(1100));
+
+		PollScheduler.Budget unlimited = new PollScheduler.Budget(0, 1000);
+		for (int i = 0; i < 100; i++) {
+			assertTrue(unlimited.tryTake(i));
+		}
+	}
+}
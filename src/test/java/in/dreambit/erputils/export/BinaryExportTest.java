@@ -0,0 +1,113 @@
+package in.dreambit.erputils.export;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import in.dreambit.erputils.bank.Transaction;
+import junit.framework.TestCase;
+
+/**
+ * Round trip of {@link BinaryExportWriter} and {@link BinaryExportReader}.
+ */
+public class BinaryExportTest extends TestCase {
+
+	private static final String[] NARRATIONS = { "NEFT/ACME TRADERS", "CASH DEPOSIT", "CHQ CLEARING",
+			"SMS CHARGES", "IMPS/रमेश कुमार" };
+
+	private Path directory;
+
+	@Override
+	protected void setUp() throws Exception {
+		directory = Files.createTempDirectory("export");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		for (File file : directory.toFile().listFiles()) {
+			file.delete();
+		}
+		Files.delete(directory);
+	}
+
+	/**
+	 * @return statement rows as read from the quicklook page
+	 */
+	static List<List<String>> rows(int count) {
+		List<List<String>> rows = new ArrayList<>(count);
+		long balance = 5000000;
+		for (int i = 0; i < count; i++) {
+			long amount = 1000 + (i * 7919L) % 2500000;
+			boolean debit = i % 3 != 0;
+			balance += debit ? -amount : amount;
+			String day = String.format("%02d-Sep-2016", 1 + i % 30);
+			rows.add(Arrays.asList(day, NARRATIONS[i % NARRATIONS.length], i % 4 == 0 ? "" : "REF" + i,
+					debit ? rupees(amount) : "", debit ? "" : rupees(amount),
+					rupees(Math.abs(balance)) + (balance < 0 ? " Dr" : "")));
+		}
+		return rows;
+	}
+
+	private static String rupees(long paise) {
+		return String.format("%,d.%02d", paise / 100, paise % 100);
+	}
+
+	public void testRoundTrip() throws IOException {
+		List<Transaction> transactions = Transaction.fromRows(rows(500));
+		assertEquals(500, transactions.size());
+		Path file = directory.resolve("tx.sbx");
+		BinaryExportWriter.write(file, "61012345678", transactions);
+
+		try (BinaryExportReader reader = new BinaryExportReader(file)) {
+			assertEquals("61012345678", reader.getAccountNumber());
+			assertEquals(500, reader.size());
+			BinaryExportReader.Cursor cursor = reader.cursor();
+			for (Transaction expected : transactions) {
+				assertTrue(cursor.next());
+				assertEquals(expected.toString(), cursor.toTransaction().toString());
+				assertEquals(expected.fingerprint(), cursor.toTransaction().fingerprint());
+			}
+			assertFalse(cursor.next());
+		}
+	}
+
+	public void testSmallerThanJson() throws IOException {
+		List<List<String>> rows = rows(2000);
+		Path json = directory.resolve("tx.json");
+		new ObjectMapper().writeValue(json.toFile(), rows);
+		Path binary = directory.resolve("tx.sbx");
+		BinaryExportWriter.write(binary, "61012345678", Transaction.fromRows(rows));
+
+		assertTrue(Files.size(binary) * 4 < Files.size(json));
+	}
+
+	public void testRejectsOtherFiles() throws IOException {
+		Path file = directory.resolve("other.sbx");
+		Files.write(file, "[[\"01-Sep-2016\"]]".getBytes("UTF-8"));
+		try {
+			new BinaryExportReader(file).close();
+			fail("Expected a format error");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().startsWith("Not a transaction export"));
+		}
+
+		BinaryExportWriter.write(file, "1", Transaction.fromRows(rows(3)));
+		byte[] bytes = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 2));
+		try (BinaryExportReader reader = new BinaryExportReader(file)) {
+			BinaryExportReader.Cursor cursor = reader.cursor();
+			assertTrue(cursor.next());
+			assertTrue(cursor.next());
+			cursor.next();
+			fail("Expected the truncated row to be reported");
+		} catch (IOException e) {
+			assertEquals("Truncated export at row 2", e.getMessage());
+		}
+	}
+}
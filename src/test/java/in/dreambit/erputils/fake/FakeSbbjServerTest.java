@@ -0,0 +1,209 @@
+package in.dreambit.erputils.fake;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import in.dreambit.erputils.bank.AccountSnapshot;
+import in.dreambit.erputils.bank.AccountType;
+import in.dreambit.erputils.bank.SBBJConnect;
+import in.dreambit.erputils.output.WrittenPageStore;
+import in.dreambit.erputils.support.HttpTransport;
+import junit.framework.TestCase;
+
+/**
+ * Login flow of {@link SBBJConnect} against {@link FakeSbbjServer}.
+ */
+public class FakeSbbjServerTest extends TestCase {
+
+	private FakeSbbjServer server;
+
+	private HttpTransport transport;
+
+	@Override
+	protected void setUp() throws Exception {
+		server = new FakeSbbjServer(0);
+		server.addUser("corp01", "Secret@123", "61012345678", "10372");
+		server.addUser("retail01", "Secret@123", "51098765432", "10475").setPasswordExpiring(true);
+		server.start();
+		transport = new HttpTransport(8, 8);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		transport.close();
+		server.stop();
+	}
+
+	private SBBJConnect connection() {
+		return new SBBJConnect(transport, server.corpBaseUrl(), server.retailBaseUrl());
+	}
+
+	public void testCorporateLogin() throws Exception {
+		SBBJConnect sbbjConnect = connection();
+		sbbjConnect.connect(AccountType.CURRENT, "corp01", "Secret@123".toCharArray());
+
+		assertEquals("61012345678", sbbjConnect.getAccountNumber());
+		assertEquals("61012345678", sbbjConnect.getKeyDetails().get("Account Number"));
+		assertEquals(10, sbbjConnect.getTransactions().size());
+		sbbjConnect.logout(AccountType.CURRENT);
+	}
+
+	public void testUnchangedStatementNotParsedAgain() throws Exception {
+		SBBJConnect sbbjConnect = connection();
+		sbbjConnect.connect(AccountType.CURRENT, "corp01", "Secret@123".toCharArray());
+		assertFalse(sbbjConnect.isUnchanged());
+
+		sbbjConnect.refresh(AccountType.CURRENT, "corp01", "Secret@123".toCharArray());
+		assertTrue(sbbjConnect.isUnchanged());
+		assertEquals(10, sbbjConnect.getTransactions().size());
+		assertEquals("61012345678", sbbjConnect.getKeyDetails().get("Account Number"));
+		sbbjConnect.logout(AccountType.CURRENT);
+	}
+
+	public void testUnchangedStatementNotWrittenAgainByLaterRun() throws Exception {
+		WrittenPageStore pages = new WrittenPageStore(Files.createTempDirectory("pages"));
+		File txFile = File.createTempFile("sbbj-tx", ".json");
+		try {
+			SBBJConnect first = connection();
+			first.setWrittenPageStore(pages);
+			first.connect(AccountType.CURRENT, "corp01", "Secret@123".toCharArray());
+			first.writeTransactionDetails(txFile.getPath(), "json", false);
+			first.logout(AccountType.CURRENT);
+			assertTrue(txFile.setLastModified(1000));
+
+			// a new process, with nothing of the first run in memory
+			SBBJConnect second = connection();
+			second.setWrittenPageStore(pages);
+			second.connect(AccountType.CURRENT, "corp01", "Secret@123".toCharArray());
+			assertTrue(second.isUnchanged());
+			second.writeTransactionDetails(txFile.getPath(), "json", false);
+			assertEquals(1000, txFile.lastModified());
+
+			// read on demand, and written where the file does not hold the page
+			assertEquals(10, second.getTransactions().size());
+			second.writeTransactionDetails(txFile.getPath(), "csv", false);
+			assertTrue(txFile.lastModified() != 1000);
+			second.logout(AccountType.CURRENT);
+		} finally {
+			txFile.delete();
+		}
+	}
+
+	public void testAllAccountsUnderOneLogin() throws Exception {
+		server.addUser("group01", "Secret@123", "61000000001", "10372").addAccount("61000000002", "10372")
+				.addAccount("61000000003", "10475");
+		SBBJConnect sbbjConnect = connection();
+		sbbjConnect.connect(AccountType.CURRENT, "group01", "Secret@123".toCharArray());
+		assertEquals("61000000003", sbbjConnect.getAccountNumber());
+		assertEquals("10475", sbbjConnect.getLinkedAccounts().get("61000000003"));
+
+		Map<String, AccountSnapshot> snapshots = sbbjConnect.fetchAllAccounts(AccountType.CURRENT);
+		assertEquals(Arrays.asList("61000000001", "61000000002", "61000000003"),
+				Arrays.asList(snapshots.keySet().toArray()));
+		for (Map.Entry<String, AccountSnapshot> snapshot : snapshots.entrySet()) {
+			assertEquals(snapshot.getKey(), snapshot.getValue().getKeyDetails().get("Account Number"));
+			assertEquals(10, snapshot.getValue().getTransactions().size());
+		}
+		assertEquals("61000000003", sbbjConnect.getKeyDetails().get("Account Number"));
+		sbbjConnect.logout(AccountType.CURRENT);
+	}
+
+	public void testAllAccountsLogInAgainOnExpiredSession() throws Exception {
+		server.addUser("group01", "Secret@123", "61000000001", "10372").addAccount("61000000002", "10372");
+		SBBJConnect sbbjConnect = connection();
+		sbbjConnect.connect(AccountType.CURRENT, "group01", "Secret@123".toCharArray());
+		server.expireSessions();
+
+		Map<String, AccountSnapshot> snapshots = sbbjConnect.fetchAllAccounts(AccountType.CURRENT, "group01",
+				"Secret@123".toCharArray());
+		assertEquals(2, snapshots.size());
+		assertEquals(10, snapshots.get("61000000001").getTransactions().size());
+		assertTrue(server.isLoggedIn("group01"));
+		sbbjConnect.logout(AccountType.CURRENT);
+	}
+
+	public void testRejectedSessionCookieTakenFromRawHeader() throws Exception {
+		server.setSessionCookieDomain("onlinesbbj.com");
+		assertNull(transport.connect(server.corpBaseUrl() + "/login.htm").execute().cookies().get("JSESSIONID"));
+
+		SBBJConnect sbbjConnect = connection();
+		sbbjConnect.connect(AccountType.CURRENT, "corp01", "Secret@123".toCharArray());
+		assertTrue(server.isLoggedIn("corp01"));
+		assertEquals(10, sbbjConnect.getTransactions().size());
+		sbbjConnect.logout(AccountType.CURRENT);
+	}
+
+	public void testPasswordChangeRedirect() throws Exception {
+		SBBJConnect sbbjConnect = connection();
+		sbbjConnect.connect(AccountType.SAVINGS, "retail01", "Secret@123".toCharArray());
+		assertEquals("51098765432", sbbjConnect.getAccountNumber());
+		sbbjConnect.logout(AccountType.SAVINGS);
+	}
+
+	public void testRejectedLogins() throws Exception {
+		try {
+			connection().connect(AccountType.CURRENT, "corp01", "wrong".toCharArray());
+			fail("Expected invalid credentials");
+		} catch (RuntimeException e) {
+			assertEquals("Username / Password did not match", e.getMessage());
+		}
+
+		SBBJConnect first = connection();
+		first.connect(AccountType.CURRENT, "corp01", "Secret@123".toCharArray());
+		try {
+			connection().connect(AccountType.CURRENT, "corp01", "Secret@123".toCharArray());
+			fail("Expected the second login to be refused");
+		} catch (RuntimeException e) {
+			assertEquals("Account already logged in by other device", e.getMessage());
+		}
+		first.logout(AccountType.CURRENT);
+		connection().connect(AccountType.CURRENT, "corp01", "Secret@123".toCharArray());
+	}
+
+	public void testRecordingHoldsNoCredentials() throws Exception {
+		ExchangeRecorder recorder = new ExchangeRecorder();
+		transport.setListener(recorder);
+		SBBJConnect sbbjConnect = connection();
+		sbbjConnect.connect(AccountType.CURRENT, "corp01", "Secret@123".toCharArray());
+		transport.setListener(null);
+		sbbjConnect.logout(AccountType.CURRENT);
+
+		File file = File.createTempFile("sbbj-recording", ".json");
+		try {
+			recorder.getRecording().save(file.getPath());
+			String saved = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+			assertTrue(saved.contains("password=****"));
+			assertTrue(saved.contains("shapassword=****"));
+			assertTrue(saved.contains("submitLoginSha('****')"));
+			assertFalse(Pattern.compile("(?i)(password|jsessionid)=(?!\\*{4})").matcher(saved).find());
+			assertFalse(Pattern.compile("submitLoginSha\\('(?!\\*{4})").matcher(saved).find());
+			assertEquals(4, Recording.load(file.getPath()).getExchanges().size());
+		} finally {
+			file.delete();
+		}
+	}
+
+	public void testRecordAndReplay() throws Exception {
+		ExchangeRecorder recorder = new ExchangeRecorder();
+		transport.setListener(recorder);
+		connection().connect(AccountType.CURRENT, "corp01", "Secret@123".toCharArray());
+		transport.setListener(null);
+		assertEquals(4, recorder.getRecording().getExchanges().size());
+
+		FakeSbbjServer replay = new FakeSbbjServer(0);
+		replay.setReplay(recorder.getRecording());
+		replay.start();
+		try {
+			SBBJConnect sbbjConnect = new SBBJConnect(transport, replay.corpBaseUrl(), replay.retailBaseUrl());
+			sbbjConnect.connect(AccountType.CURRENT, "anyone", "any".toCharArray());
+			assertEquals("61012345678", sbbjConnect.getAccountNumber());
+			assertEquals(10, sbbjConnect.getTransactions().size());
+		} finally {
+			replay.stop();
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package in.dreambit.erputils.journal;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import in.dreambit.erputils.bank.Transaction;
+import junit.framework.TestCase;
+
+/**
+ * Unit test for {@link TransactionJournal}.
+ */
+public class TransactionJournalTest extends TestCase {
+
+	private static Transaction tx(int i) {
+		return new Transaction(17000 + i / 3, "NARRATION ₹ " + i, "REF" + i, i * 100, 0, 1000000 - i * 100);
+	}
+
+	public void testAppendDedupAndRangeRead() throws Exception {
+		Path file = Files.createTempDirectory("journal").resolve("SAVINGS-1.journal");
+
+		try (TransactionJournal journal = new TransactionJournal(file)) {
+			for (int i = 0; i < 1000; i++) {
+				assertTrue(journal.append(tx(i)));
+			}
+			assertFalse(journal.append(tx(42)));
+			assertEquals(1000, journal.size());
+		}
+
+		try (TransactionJournal journal = new TransactionJournal(file)) {
+			assertEquals(1000, journal.size());
+			assertTrue(journal.contains(tx(999)));
+
+			List<Transaction> range = journal.read(17100, 17101);
+			assertEquals(6, range.size());
+			assertEquals(tx(300).toString(), range.get(0).toString());
+			assertEquals("NARRATION ₹ 305", range.get(5).getNarration());
+		}
+	}
+
+	public void testTornTailRecovered() throws Exception {
+		Path file = Files.createTempDirectory("journal").resolve("CURRENT-1.journal");
+
+		long tail;
+		try (TransactionJournal journal = new TransactionJournal(file)) {
+			journal.append(tx(1));
+			journal.append(tx(2));
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+			// find the end of the data and leave a half written record there
+			tail = 4;
+			raf.seek(tail);
+			int length;
+			while ((length = raf.readInt()) != 0) {
+				tail += 8 + length;
+				raf.seek(tail);
+			}
+			raf.seek(tail);
+			raf.writeInt(80);
+			raf.writeLong(17005);
+		}
+
+		try (TransactionJournal journal = new TransactionJournal(file)) {
+			assertEquals(2, journal.size());
+			assertTrue(journal.append(tx(3)));
+		}
+		try (TransactionJournal journal = new TransactionJournal(file)) {
+			assertEquals(3, journal.size());
+			assertEquals(3, journal.read(0, Long.MAX_VALUE).size());
+		}
+	}
+}
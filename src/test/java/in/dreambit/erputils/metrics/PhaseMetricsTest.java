@@ -0,0 +1,77 @@
+package in.dreambit.erputils.metrics;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import in.dreambit.erputils.bank.AccountType;
+import in.dreambit.erputils.bank.SBBJConnect;
+import in.dreambit.erputils.fake.FakeSbbjServer;
+import in.dreambit.erputils.support.HttpTransport;
+import junit.framework.TestCase;
+
+/**
+ * Phase timings recorded by {@link SBBJConnect} and their Prometheus export.
+ */
+public class PhaseMetricsTest extends TestCase {
+
+	public void testHistogramBuckets() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(2000000L, 10); // 2 ms
+		histogram.record(40000000L, 10); // 40 ms
+		histogram.record(60000000000L, 10); // a minute, past every bound
+
+		long[] cumulative = histogram.cumulativeCounts();
+		assertEquals(1, cumulative[0]);
+		assertEquals(2, cumulative[3]);
+		assertEquals(2, cumulative[LatencyHistogram.BOUNDS.length - 1]);
+		assertEquals(3, cumulative[LatencyHistogram.BOUNDS.length]);
+		assertEquals(30, histogram.getBytes());
+		assertEquals(0.05, histogram.percentile(50));
+		assertTrue(Double.isInfinite(histogram.percentile(99)));
+	}
+
+	public void testLoginPhasesRecorded() throws Exception {
+		FakeSbbjServer server = new FakeSbbjServer(0);
+		server.addUser("corp01", "Secret@123", "61012345678", "10372");
+		server.start();
+		PhaseMetrics metrics = new PhaseMetrics();
+		HttpTransport transport = new HttpTransport(2, 2);
+		try {
+			SBBJConnect sbbjConnect = new SBBJConnect(transport, server.corpBaseUrl(), server.retailBaseUrl());
+			sbbjConnect.setMetrics(metrics);
+			sbbjConnect.connect(AccountType.CURRENT, "corp01", "Secret@123".toCharArray());
+			sbbjConnect.logout(AccountType.CURRENT);
+
+			try {
+				sbbjConnect.connect(AccountType.CURRENT, "corp01", "wrong".toCharArray());
+				fail("Expected invalid credentials");
+			} catch (RuntimeException e) {
+				// charged to the login submit
+			}
+		} finally {
+			transport.close();
+			server.stop();
+		}
+
+		Set<Phase> phases = EnumSet.noneOf(Phase.class);
+		String failedPhase = null;
+		for (Map.Entry<PhaseMetrics.Key, LatencyHistogram> entry : metrics.histograms().entrySet()) {
+			assertEquals("CURRENT", entry.getKey().getType());
+			if ("ok".equals(entry.getKey().getOutcome())) {
+				phases.add(entry.getKey().getPhase());
+			} else {
+				failedPhase = entry.getKey().getPhase() + " " + entry.getKey().getOutcome();
+			}
+		}
+		assertEquals(EnumSet.allOf(Phase.class), phases);
+		assertEquals("LOGIN_SUBMIT error", failedPhase);
+
+		String text = PrometheusExporter.scrape(metrics);
+		assertTrue(text.contains("# TYPE sbbj_phase_duration_seconds histogram"));
+		assertTrue(text.contains(
+				"sbbj_phase_duration_seconds_count{type=\"CURRENT\",phase=\"pre_login\",outcome=\"ok\"} 2"));
+		assertTrue(text.contains("sbbj_phase_duration_seconds_bucket{type=\"CURRENT\",phase=\"quicklook\","
+				+ "outcome=\"ok\",le=\"+Inf\"} 1"));
+	}
+}
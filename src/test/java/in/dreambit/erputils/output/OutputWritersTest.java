@@ -0,0 +1,67 @@
+package in.dreambit.erputils.output;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import junit.framework.TestCase;
+
+/**
+ * Streamed output of {@link OutputWriters} in each format.
+ */
+public class OutputWritersTest extends TestCase {
+
+	private static final List<List<String>> ROWS = Arrays.asList(
+			Arrays.asList("01-09-2016", "NEFT/ACME, \"Jaipur\"", "REF1", "", "1,200.00", "10,000.00"),
+			Arrays.asList("02-09-2016", "A narration longer than the forty characters of a column", "REF2",
+					"300.00", "", "9,700.00"),
+			Arrays.asList("Balance", "9,700.00"));
+
+	private static String write(OutputFormat format) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		OutputWriters.writeTransactions(ROWS, format, out);
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	public void testJsonMatchesMapper() throws IOException {
+		assertEquals(new ObjectMapper().writeValueAsString(ROWS), write(OutputFormat.JSON));
+
+		Map<String, String> details = new LinkedHashMap<>();
+		details.put("Account Number", "61012345678");
+		details.put("Balance", "9,700.00");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		OutputWriters.writeKeyDetails(details, OutputFormat.JSON, out);
+		assertEquals(new ObjectMapper().writeValueAsString(details),
+				new String(out.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	public void testNdjsonLines() throws IOException {
+		String[] lines = write(OutputFormat.NDJSON).split("\n", -1);
+		assertEquals(4, lines.length);
+		assertEquals("", lines[3]);
+		assertEquals(new ObjectMapper().writeValueAsString(ROWS.get(2)), lines[2]);
+	}
+
+	public void testCsvQuoting() throws IOException {
+		String[] records = write(OutputFormat.CSV).split("\r\n", -1);
+		assertEquals("01-09-2016,\"NEFT/ACME, \"\"Jaipur\"\"\",REF1,,\"1,200.00\",\"10,000.00\"", records[0]);
+		assertEquals("Balance,\"9,700.00\"", records[2]);
+	}
+
+	public void testTextMatchesFormat() throws IOException {
+		StringBuilder expected = new StringBuilder();
+		for (List<String> row : ROWS.subList(0, 2)) {
+			for (String value : row) {
+				expected.append(String.format("%40.40s\t", value));
+			}
+			expected.append(System.lineSeparator());
+		}
+		assertEquals(expected.toString(), write(OutputFormat.TEXT));
+	}
+}
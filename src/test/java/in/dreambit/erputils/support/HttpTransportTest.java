@@ -0,0 +1,125 @@
+package in.dreambit.erputils.support;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jsoup.HttpStatusException;
+
+import com.sun.net.httpserver.HttpServer;
+
+import junit.framework.TestCase;
+
+/**
+ * Retries and circuit breaking of {@link HttpTransport}.
+ */
+public class HttpTransportTest extends TestCase {
+
+	private HttpServer server;
+
+	private HttpTransport transport;
+
+	/**
+	 * Requests to answer with 503 before answering 200
+	 */
+	private final AtomicInteger failuresLeft = new AtomicInteger();
+
+	private final AtomicInteger requests = new AtomicInteger();
+
+	@Override
+	protected void setUp() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", exchange -> {
+			requests.incrementAndGet();
+			byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(failuresLeft.getAndDecrement() > 0 ? 503 : 200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.createContext("/drop", exchange -> {
+			// hang up without a response, like a stale pooled connection
+			requests.incrementAndGet();
+			exchange.close();
+		});
+		server.start();
+		transport = new HttpTransport(2, 2);
+		transport.setRetryPolicy(new RetryPolicy(3, 1, 5));
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		transport.close();
+		server.stop(0);
+	}
+
+	private String url() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + "/page";
+	}
+
+	public void testRetriesIdempotentRequests() throws IOException {
+		failuresLeft.set(2);
+		assertEquals("ok", transport.connect(url()).execute().body());
+		assertEquals(3, requests.get());
+
+		failuresLeft.set(1);
+		requests.set(0);
+		try {
+			transport.connect(url()).idempotent(false).execute();
+			fail("Expected the 503 of a request that may not be replayed");
+		} catch (HttpStatusException e) {
+			assertEquals(503, e.getStatusCode());
+		}
+		assertEquals(1, requests.get());
+	}
+
+	public void testDroppedRequestNotReplayedWhenNotIdempotent() throws Exception {
+		try {
+			transport.connect("http://127.0.0.1:" + server.getAddress().getPort() + "/drop").idempotent(false)
+					.execute();
+			fail("Expected the dropped connection to fail the request");
+		} catch (IOException e) {
+			// expected
+		}
+		assertEquals(1, requests.get());
+	}
+
+	public void testBreakerFailsFastWhileOpen() throws Exception {
+		transport.setRetryPolicy(RetryPolicy.NONE);
+		transport.setCircuitBreaker(2, 200);
+		failuresLeft.set(2);
+		for (int i = 0; i < 2; i++) {
+			try {
+				transport.connect(url()).execute();
+				fail("Expected a 503");
+			} catch (HttpStatusException e) {
+				// expected
+			}
+		}
+		assertEquals(CircuitBreaker.State.OPEN, transport.getCircuitBreaker(url()).getState());
+
+		try {
+			transport.connect(url()).execute();
+			fail("Expected the open breaker to fail fast");
+		} catch (CircuitOpenException e) {
+			assertEquals(2, requests.get());
+		}
+
+		Thread.sleep(250);
+		assertEquals("ok", transport.connect(url()).execute().body());
+		assertEquals(CircuitBreaker.State.CLOSED, transport.getCircuitBreaker(url()).getState());
+	}
+
+	public void testBackoffIsJitteredAndCapped() {
+		RetryPolicy policy = new RetryPolicy(10, 100, 1000);
+		for (int attempt = 1; attempt < 10; attempt++) {
+			long delay = policy.delayMillis(attempt);
+			assertTrue(delay >= 0 && delay <= Math.min(1000, 100L << (attempt - 1)));
+		}
+		assertFalse(policy.isRetryable(new HttpStatusException("Not found", 404, url())));
+		assertTrue(policy.isRetryable(new SocketTimeoutException()));
+	}
+}
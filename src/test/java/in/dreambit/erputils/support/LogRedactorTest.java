@@ -0,0 +1,37 @@
+package in.dreambit.erputils.support;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for {@link LogRedactor}.
+ */
+public class LogRedactorTest extends TestCase {
+
+	public void testCredentialsMasked() {
+		assertEquals("userName=corp01&password=****&shapassword=****",
+				LogRedactor.redact("userName=corp01&password=A1B2C3&shapassword=9f86d081"));
+		assertEquals("Cookie: JSESSIONID=****; Path=/", LogRedactor.redact("Cookie: JSESSIONID=0AB1CD2E; Path=/"));
+		assertEquals("{\"password\":\"****\"}", LogRedactor.redact("{\"password\":\"secret\"}"));
+		assertEquals("onclick=\"return submitLoginSha('****');\"",
+				LogRedactor.redact("onclick=\"return submitLoginSha('6b86b273ff34fce1');\""));
+		assertEquals("Password validity is going to expire",
+				LogRedactor.redact("Password validity is going to expire"));
+	}
+
+	public void testBodyCutToLimit() {
+		StringBuilder page = new StringBuilder("<form>password=hunter2</form>");
+		while (page.length() < 5000) {
+			page.append("<tr><td>row</td></tr>");
+		}
+		String body = LogRedactor.body(page.toString());
+		assertTrue(body.startsWith("<form>password=****</form>"));
+		assertTrue(body, body.endsWith("more chars]"));
+		assertTrue(body.length() < 2100);
+		assertEquals("<p>short</p>", LogRedactor.body("<p>short</p>"));
+	}
+
+	public void testSecretsMaskedWhole() {
+		assertEquals("****", LogRedactor.mask("secret"));
+		assertEquals("null", LogRedactor.mask(null));
+	}
+}
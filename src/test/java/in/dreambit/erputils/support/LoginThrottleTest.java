@@ -0,0 +1,37 @@
+package in.dreambit.erputils.support;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for {@link LoginThrottle}.
+ */
+public class LoginThrottleTest extends TestCase {
+
+	private static final String CORP = "https://corp.sbbjonline.com/saral/login.htm";
+
+	private static final String RETAIL = "https://retail.sbbjonline.com/retail/login.htm";
+
+	public void testPacesLoginsPerHost() throws Exception {
+		LoginThrottle throttle = new LoginThrottle(10, 2);
+		long start = System.nanoTime();
+		for (int i = 0; i < 5; i++) {
+			throttle.acquire(CORP);
+		}
+		long corpMillis = (System.nanoTime() - start) / 1000000;
+		// the burst passes at once, the other three wait 100 ms each
+		assertTrue("Took " + corpMillis + " ms", corpMillis >= 280);
+
+		start = System.nanoTime();
+		throttle.acquire(RETAIL);
+		throttle.acquire(RETAIL);
+		assertTrue((System.nanoTime() - start) / 1000000 < 50);
+	}
+
+	public void testTurnAfterDeadlineIsNotTaken() throws Exception {
+		LoginThrottle throttle = new LoginThrottle(1, 1);
+		assertTrue(throttle.acquire(CORP, Deadline.after(10)));
+		long start = System.nanoTime();
+		assertFalse(throttle.acquire(CORP, Deadline.after(10)));
+		assertTrue((System.nanoTime() - start) / 1000000 < 50);
+	}
+}
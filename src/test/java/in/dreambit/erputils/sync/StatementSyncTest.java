@@ -0,0 +1,72 @@
+package in.dreambit.erputils.sync;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import in.dreambit.erputils.bank.Transaction;
+import junit.framework.TestCase;
+
+/**
+ * Unit test for {@link StatementSync}.
+ */
+public class StatementSyncTest extends TestCase {
+
+	private static Transaction tx(int day, long debit, long credit, long balance) {
+		return new Transaction(17000 + day, "N" + day, "R" + day, debit, credit, balance);
+	}
+
+	public void testIncrementalSync() throws Exception {
+		Path dir = Files.createTempDirectory("watermarks");
+		StatementSync sync = new StatementSync(new WatermarkStore(dir));
+
+		Transaction t1 = tx(1, 0, 10000, 10000);
+		Transaction t2 = tx(2, 2000, 0, 8000);
+		Transaction t3 = tx(3, 0, 500, 8500);
+		Transaction t4 = tx(4, 1500, 0, 7000);
+
+		SyncResult first = sync.sync("SAVINGS-1", Arrays.asList(t2, t1));
+		assertTrue(first.isInitial());
+		assertEquals(Arrays.asList(t1, t2), first.getNewTransactions());
+		sync.commit("SAVINGS-1", first);
+
+		// newest first, as the page lists them, with t1 scrolled off
+		SyncResult second = sync.sync("SAVINGS-1", Arrays.asList(t4, t3, t2));
+		assertFalse(second.isInitial());
+		assertFalse(second.isGapDetected());
+		assertEquals(Arrays.asList(t3, t4), second.getNewTransactions());
+		sync.commit("SAVINGS-1", second);
+
+		assertTrue(sync.sync("SAVINGS-1", Arrays.asList(t4, t3, t2)).getNewTransactions().isEmpty());
+	}
+
+	public void testGapDetected() throws Exception {
+		StatementSync sync = new StatementSync(new WatermarkStore(Files.createTempDirectory("watermarks")));
+		sync.commit("CURRENT-1", sync.sync("CURRENT-1", Arrays.asList(tx(1, 0, 10000, 10000))));
+
+		// the row on day 2 that took the balance to 8000 is no longer on the page
+		List<Transaction> page = Arrays.asList(tx(3, 0, 500, 8500), tx(4, 1500, 0, 7000));
+		SyncResult result = sync.sync("CURRENT-1", page);
+		assertTrue(result.isGapDetected());
+		assertEquals(2, result.getNewTransactions().size());
+	}
+
+	public void testUncommittedRowsSyncedAgain() throws Exception {
+		StatementSync sync = new StatementSync(new WatermarkStore(Files.createTempDirectory("watermarks")));
+		Transaction t1 = tx(1, 0, 10000, 10000);
+		Transaction t2 = tx(2, 2000, 0, 8000);
+		Transaction t3 = tx(3, 0, 500, 8500);
+		sync.commit("SAVINGS-1", sync.sync("SAVINGS-1", Arrays.asList(t1)));
+
+		// writing the rows out failed, so the result is never committed
+		SyncResult failed = sync.sync("SAVINGS-1", Arrays.asList(t3, t2, t1));
+		assertEquals(Arrays.asList(t2, t3), failed.getNewTransactions());
+
+		SyncResult retried = sync.sync("SAVINGS-1", Arrays.asList(t3, t2, t1));
+		assertFalse(retried.isInitial());
+		assertEquals(Arrays.asList(t2, t3), retried.getNewTransactions());
+		sync.commit("SAVINGS-1", retried);
+		assertTrue(sync.sync("SAVINGS-1", Arrays.asList(t3, t2, t1)).getNewTransactions().isEmpty());
+	}
+}